@@ -3,7 +3,7 @@ package plc.compiler;
 public final class AnalysisException extends RuntimeException {
 
     public AnalysisException(String message) {
-        super(message);
+        super(message, null, false, false); //user errors, the stack trace is never useful
     }
 
 }
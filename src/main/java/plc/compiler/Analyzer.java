@@ -1,6 +1,7 @@
 package plc.compiler;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 import java.math.BigInteger;
 import java.util.Optional;
@@ -8,27 +9,51 @@ import java.util.Optional;
 public final class Analyzer implements Ast.Visitor<Ast> {
 
     public Scope scope;
+    private final Diagnostics diagnostics;
 
     public Analyzer(Scope scope) {
+        this(scope, null);
+    }
+
+    /**
+     * Creates an analyzer which reports errors to the given diagnostics and
+     * continues with the next statement instead of throwing.
+     */
+    public Analyzer(Scope scope, Diagnostics diagnostics) {
         this.scope = scope;
+        this.diagnostics = diagnostics;
     }
 
     @Override
     public Ast visit(Ast.Source ast) throws AnalysisException {
         if (ast.getStatements().isEmpty())
             throw new AnalysisException("Source statements empty");
-        return new Ast.Source(ast.getStatements());
+        List<Ast.Statement> statements = new ArrayList<>();
+        for (Ast.Statement statement : ast.getStatements()) {
+            statements.add(visit(statement));
+        }
+        return new Ast.Source(statements);
     }
 
     private Ast.Statement visit(Ast.Statement ast) throws AnalysisException {
-        return (Ast.Statement) visit((Ast) ast);
+        if (diagnostics == null) {
+            return (Ast.Statement) visit((Ast) ast);
+        }
+        Scope current = scope;
+        try {
+            return (Ast.Statement) visit((Ast) ast);
+        } catch (AnalysisException e) {
+            diagnostics.report(Diagnostic.Phase.ANALYSIS, e.getMessage(), diagnostics.getIndex(ast));
+            scope = current;
+            return ast;
+        }
     }
 
     @Override
     public Ast.Statement.Expression visit(Ast.Statement.Expression ast) throws AnalysisException {
         if (ast.getExpression().getClass() != Ast.Expression.Function.class)
             throw new AnalysisException("Expression not function");
-        return new Ast.Statement.Expression(ast.getExpression());
+        return new Ast.Statement.Expression(visit(ast.getExpression()));
     }
 
     @Override
@@ -47,39 +72,45 @@ public final class Analyzer implements Ast.Visitor<Ast> {
 
     @Override
     public Ast.Statement.Assignment visit(Ast.Statement.Assignment ast) throws AnalysisException {
-        checkAssignable(ast.getExpression().getType(), scope.lookup(ast.getName()));
-        return new Ast.Statement.Assignment(ast.getName(), ast.getExpression());
+        Ast.Expression expression = visit(ast.getExpression());
+        checkAssignable(expression.getType(), scope.lookup(ast.getName()));
+        return new Ast.Statement.Assignment(ast.getName(), expression);
     }
 
     @Override
     public Ast.Statement.If visit(Ast.Statement.If ast) throws AnalysisException {
-        if(!ast.getCondition().equals(Stdlib.Type.BOOLEAN))
+        Ast.Expression condition = visit(ast.getCondition());
+        if(!condition.getType().equals(Stdlib.Type.BOOLEAN))
             throw new AnalysisException("if condition not boolean");
         if (ast.getThenStatements().isEmpty())
             throw new AnalysisException("then statements empty");
+        List<Ast.Statement> thenStatements = new ArrayList<>();
         scope = new Scope(scope);
         for (Ast.Statement statement : ast.getThenStatements()) {
-            visit(statement);
+            thenStatements.add(visit(statement));
         }
         scope = scope.getParent();
+        List<Ast.Statement> elseStatements = new ArrayList<>();
         scope = new Scope(scope);
         for (Ast.Statement statement : ast.getElseStatements()) {
-            visit(statement);
+            elseStatements.add(visit(statement));
         }
         scope = scope.getParent();
-        return new Ast.Statement.If(ast.getCondition(), ast.getThenStatements(), ast.getElseStatements());
+        return new Ast.Statement.If(condition, thenStatements, elseStatements);
     }
 
     @Override
     public Ast.Statement.While visit(Ast.Statement.While ast) throws AnalysisException {
-        if (!ast.getCondition().equals(Stdlib.Type.BOOLEAN))
+        Ast.Expression condition = visit(ast.getCondition());
+        if (!condition.getType().equals(Stdlib.Type.BOOLEAN))
             throw new AnalysisException("while condition not boolean");
+        List<Ast.Statement> statements = new ArrayList<>();
         scope = new Scope(scope);
         for (Ast.Statement statement : ast.getStatements()) {
-            visit(statement);
+            statements.add(visit(statement));
         }
         scope = scope.getParent();
-        return new Ast.Statement.While(ast.getCondition(), ast.getStatements());
+        return new Ast.Statement.While(condition, statements);
     }
 
     private Ast.Expression visit(Ast.Expression ast) throws AnalysisException {
@@ -104,7 +135,7 @@ public final class Analyzer implements Ast.Visitor<Ast> {
                 throw new AnalysisException("Out of bounds");
             }
             else{
-                return new Ast.Expression.Literal(((BigDecimal) ast.getValue()).doubleValue());
+                return new Ast.Expression.Literal(Stdlib.Type.DECIMAL, ((BigDecimal) ast.getValue()).doubleValue());
             }
         } else if (ast.getValue() instanceof String) {
             // Can only contain [A-Za-z0-9_!?.+-/* ]
@@ -121,12 +152,27 @@ public final class Analyzer implements Ast.Visitor<Ast> {
 
     @Override
     public Ast.Expression.Group visit(Ast.Expression.Group ast) throws AnalysisException {
-        return new Ast.Expression.Group(visit(ast.getExpression()));
+        Ast.Expression expression = visit(ast.getExpression());
+        return new Ast.Expression.Group(expression.getType(), expression);
     }
 
     @Override
     public Ast.Expression.Binary visit(Ast.Expression.Binary ast) throws AnalysisException {
-            return new Ast.Expression.Binary(ast.getOperator(), ast.getLeft(), ast.getRight());
+        Ast.Expression left = visit(ast.getLeft());
+        Ast.Expression right = visit(ast.getRight());
+        Stdlib.Type type;
+        if (left.getType().equals(Stdlib.Type.VOID) || right.getType().equals(Stdlib.Type.VOID)) {
+            throw new AnalysisException("Binary operand void");
+        } else if (ast.getOperator().equals("==") || ast.getOperator().equals("!=")) {
+            type = Stdlib.Type.BOOLEAN;
+        } else if (ast.getOperator().equals("+") && (left.getType().equals(Stdlib.Type.STRING) || right.getType().equals(Stdlib.Type.STRING))) {
+            type = Stdlib.Type.STRING;
+        } else if (isNumeric(left.getType()) && isNumeric(right.getType())) {
+            type = left.getType().equals(Stdlib.Type.DECIMAL) || right.getType().equals(Stdlib.Type.DECIMAL) ? Stdlib.Type.DECIMAL : Stdlib.Type.INTEGER;
+        } else {
+            throw new AnalysisException("Binary operands not numeric");
+        }
+        return new Ast.Expression.Binary(type, ast.getOperator(), left, right);
     }
 
     @Override
@@ -142,7 +188,15 @@ public final class Analyzer implements Ast.Visitor<Ast> {
             if (paramTypes.get(i).equals(ast.getArguments().get(i)))
                 throw new AnalysisException("function args not of correct type");
         }
-        return new Ast.Expression.Function(function.getJvmName(), ast.getArguments());
+        List<Ast.Expression> arguments = new ArrayList<>();
+        for (Ast.Expression argument : ast.getArguments()) {
+            arguments.add(visit(argument));
+        }
+        return new Ast.Expression.Function(function.getReturnType(), function.getJvmName(), arguments);
+    }
+
+    private static boolean isNumeric(Stdlib.Type type) {
+        return type.equals(Stdlib.Type.INTEGER) || type.equals(Stdlib.Type.DECIMAL);
     }
 
     /**
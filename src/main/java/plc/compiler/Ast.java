@@ -27,6 +27,11 @@ public class Ast {
             return obj instanceof Source && statements.equals(((Source) obj).statements);
         }
 
+        @Override
+        public int hashCode() {
+            return Objects.hash(statements);
+        }
+
         @Override
         public String toString() {
             return "Source{" +
@@ -55,6 +60,11 @@ public class Ast {
                 return obj instanceof Statement.Expression && expression.equals(((Statement.Expression) obj).expression);
             }
 
+            @Override
+            public int hashCode() {
+                return Objects.hash(expression);
+            }
+
             @Override
             public String toString() {
                 return "Expression{" +
@@ -96,6 +106,11 @@ public class Ast {
                         value.equals(((Declaration) obj).value);
             }
 
+            @Override
+            public int hashCode() {
+                return Objects.hash(name, type, value);
+            }
+
             @Override
             public String toString() {
                 return "Declaration{" +
@@ -132,6 +147,11 @@ public class Ast {
                         expression.equals(((Assignment) obj).expression);
             }
 
+            @Override
+            public int hashCode() {
+                return Objects.hash(name, expression);
+            }
+
             @Override
             public String toString() {
                 return "Assignment{" +
@@ -174,6 +194,11 @@ public class Ast {
                         elseStatements.equals(((If) obj).elseStatements);
             }
 
+            @Override
+            public int hashCode() {
+                return Objects.hash(condition, thenStatements, elseStatements);
+            }
+
             @Override
             public String toString() {
                 return "If{" +
@@ -210,6 +235,11 @@ public class Ast {
                         statements.equals(((While) obj).statements);
             }
 
+            @Override
+            public int hashCode() {
+                return Objects.hash(condition, statements);
+            }
+
             @Override
             public String toString() {
                 return "While{" +
@@ -261,6 +291,11 @@ public class Ast {
                         Objects.equals(type, ((Literal) obj).type);
             }
 
+            @Override
+            public int hashCode() {
+                return Objects.hash(value, type);
+            }
+
             @Override
             public String toString() {
                 return "Literal{" +
@@ -295,6 +330,11 @@ public class Ast {
                         Objects.equals(type, ((Group) obj).type);
             }
 
+            @Override
+            public int hashCode() {
+                return Objects.hash(expression, type);
+            }
+
             @Override
             public String toString() {
                 return "Group{" +
@@ -343,6 +383,11 @@ public class Ast {
                         Objects.equals(type, ((Binary) obj).type);
             }
 
+            @Override
+            public int hashCode() {
+                return Objects.hash(operator, left, right, type);
+            }
+
             @Override
             public String toString() {
                 return "Binary{" +
@@ -379,6 +424,11 @@ public class Ast {
                         Objects.equals(type, ((Variable) obj).type);
             }
 
+            @Override
+            public int hashCode() {
+                return Objects.hash(name, type);
+            }
+
             @Override
             public String toString() {
                 return "Variable{" +
@@ -420,6 +470,11 @@ public class Ast {
                         Objects.equals(type, ((Function) obj).type);
             }
 
+            @Override
+            public int hashCode() {
+                return Objects.hash(name, arguments, type);
+            }
+
             @Override
             public String toString() {
                 return "Function{" +
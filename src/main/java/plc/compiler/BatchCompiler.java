@@ -0,0 +1,400 @@
+package plc.compiler;
+
+import javax.lang.model.SourceVersion;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compiles many source files to Java source files, running the whole
+ * pipeline for every file on a work stealing pool of the given parallelism.
+ *
+ * <p>Files are read and written with an {@link AsynchronousFileChannel}
+ * completing on the pool, and at most twice as many files as there are
+ * threads are in flight at once, so memory stays bounded however many
+ * files there are. Errors are collected per file instead of stopping the
+ * batch, even if the compiler itself fails on a file, and the
+ * {@link Result} sums up the diagnostics and the throughput.</p>
+ *
+ * <p>A directory compiles every {@value #EXTENSION} file below it, keeping
+ * their relative paths in the output directory; a file is written directly
+ * into it. Every file becomes a class named after it, and files which would
+ * be written to the same output file are reported instead of compiled.</p>
+ */
+public final class BatchCompiler {
+
+    public static final String EXTENSION = ".plc";
+
+    /**
+     * Identifiers which aren't keywords but can't name a class either.
+     */
+    private static final Set<String> RESTRICTED = Set.of("var", "yield", "record", "sealed", "permits");
+
+    private final Path output;
+    private PassManager.Level level = PassManager.Level.O0;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private CompilationCache cache = null;
+
+    public BatchCompiler(Path output) {
+        this.output = output;
+    }
+
+    public BatchCompiler setLevel(PassManager.Level level) {
+        this.level = level;
+        return this;
+    }
+
+    public BatchCompiler setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Sets the cache to copy the output of unchanged files from, or
+     * {@code null} to always compile them.
+     */
+    public BatchCompiler setCompilationCache(CompilationCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    /**
+     * Compiles the given files and every source file in the given
+     * directories, in order.
+     */
+    public Result compile(List<Path> paths) throws IOException {
+        List<Unit> units = new ArrayList<>();
+        for (Path path : paths) {
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> files = Files.walk(path)) {
+                    for (Path file : files.filter(file -> file.toString().endsWith(EXTENSION) && Files.isRegularFile(file)).sorted().collect(Collectors.toList())) {
+                        units.add(new Unit(file, output.resolve(path.relativize(file)).getParent()));
+                    }
+                }
+            } else {
+                units.add(new Unit(path, output));
+            }
+        }
+        Map<Path, List<Unit>> targets = new LinkedHashMap<>();
+        units.forEach(unit -> targets.computeIfAbsent(unit.directory.resolve(unit.className + ".java"), t -> new ArrayList<>()).add(unit));
+        for (Path directory : units.stream().map(unit -> unit.directory).distinct().collect(Collectors.toList())) {
+            Files.createDirectories(directory);
+        }
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        Semaphore permits = new Semaphore(2 * parallelism);
+        List<CompletableFuture<FileResult>> files = new ArrayList<>();
+        try {
+            for (Unit unit : units) {
+                List<Unit> colliding = targets.get(unit.directory.resolve(unit.className + ".java"));
+                if (colliding.size() > 1) {
+                    String others = colliding.stream().filter(other -> other != unit).map(other -> other.source.toString()).collect(Collectors.joining(", "));
+                    Diagnostic diagnostic = new Diagnostic(Diagnostic.Phase.IO, "The output " + unit.className + ".java is also the output of " + others + ".", -1);
+                    files.add(CompletableFuture.completedFuture(new FileResult(unit.source, Collections.singletonList(diagnostic), 0, 0, false)));
+                    continue;
+                }
+                permits.acquireUninterruptibly();
+                CompletableFuture<FileResult> file = compile(unit, pool);
+                file.whenComplete((result, e) -> permits.release());
+                files.add(file);
+            }
+            return new Result(files.stream().map(CompletableFuture::join).collect(Collectors.toList()), System.nanoTime() - start);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private CompletableFuture<FileResult> compile(Unit unit, ExecutorService executor) {
+        return read(unit.source, executor).thenComposeAsync(bytes -> {
+            String source = new String(bytes, StandardCharsets.UTF_8);
+            String name = unit.className + ".java";
+            String key = cache == null ? null : CompilationCache.key(source, Arrays.asList("-" + level.name(), unit.className));
+            try {
+                if (cache != null && cache.get(key, unit.directory)) {
+                    return CompletableFuture.completedFuture(new FileResult(unit.source, Collections.emptyList(), bytes.length, Files.size(unit.directory.resolve(name)), true));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            Diagnostics diagnostics = new Diagnostics();
+            byte[] code = generate(source, unit.className, level, diagnostics);
+            if (diagnostics.hasErrors()) {
+                return CompletableFuture.completedFuture(new FileResult(unit.source, diagnostics.getDiagnostics(), bytes.length, 0, false));
+            }
+            return write(unit.directory.resolve(name), code, executor).thenApply(written -> {
+                if (cache != null) {
+                    try {
+                        cache.put(key, Collections.singletonMap(name, code));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return new FileResult(unit.source, Collections.emptyList(), bytes.length, code.length, false);
+            });
+        }, executor).exceptionally(e -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            Diagnostic diagnostic = cause instanceof IOException || cause instanceof UncheckedIOException
+                    ? new Diagnostic(Diagnostic.Phase.IO, String.valueOf(cause.getMessage()), -1)
+                    : new Diagnostic(Diagnostic.Phase.INTERNAL, cause.toString(), -1);
+            return new FileResult(unit.source, Collections.singletonList(diagnostic), 0, 0, false);
+        });
+    }
+
+    /**
+     * Runs the pipeline, returning the generated source or {@code null} if
+     * there were errors, which are reported to the diagnostics.
+     */
+    static byte[] generate(String source, String className, PassManager.Level level, Diagnostics diagnostics) {
+        Ast.Source ast;
+        try {
+            ast = Parser.parse(Lexer.lex(source), diagnostics);
+            if (diagnostics.hasErrors()) {
+                return null;
+            }
+            ast = (Ast.Source) new Analyzer(new Scope(null), diagnostics).visit(ast);
+        } catch (ParseException e) {
+            diagnostics.report(Diagnostic.Phase.PARSE, e.getMessage(), e.getIndex());
+            return null;
+        } catch (AnalysisException e) {
+            diagnostics.report(Diagnostic.Phase.ANALYSIS, e.getMessage(), -1);
+            return null;
+        }
+        if (diagnostics.hasErrors()) {
+            return null;
+        }
+        Emitter emitter = new Emitter();
+        new Generator(emitter, className).visit(PassManager.create(level).run(ast));
+        return emitter.toByteArray();
+    }
+
+    private static CompletableFuture<byte[]> read(Path path, ExecutorService executor) {
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        try {
+            AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, EnumSet.of(StandardOpenOption.READ), executor);
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                close(channel);
+                throw new IOException("The file " + path + " is too large.");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            channel.read(buffer, 0, null, new CompletionHandler<Integer, Void>() {
+                @Override
+                public void completed(Integer count, Void attachment) {
+                    if (count < 0 || !buffer.hasRemaining()) {
+                        close(channel);
+                        future.complete(Arrays.copyOf(buffer.array(), buffer.position()));
+                    } else {
+                        channel.read(buffer, buffer.position(), null, this);
+                    }
+                }
+
+                @Override
+                public void failed(Throwable e, Void attachment) {
+                    close(channel);
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private static CompletableFuture<Void> write(Path path, byte[] bytes, ExecutorService executor) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            AsynchronousFileChannel channel = AsynchronousFileChannel.open(path,
+                    EnumSet.of(StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING), executor);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            channel.write(buffer, 0, null, new CompletionHandler<Integer, Void>() {
+                @Override
+                public void completed(Integer count, Void attachment) {
+                    if (!buffer.hasRemaining()) {
+                        close(channel);
+                        future.complete(null);
+                    } else {
+                        channel.write(buffer, buffer.position(), null, this);
+                    }
+                }
+
+                @Override
+                public void failed(Throwable e, Void attachment) {
+                    close(channel);
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private static void close(AsynchronousFileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            //the data has already been read or written
+        }
+    }
+
+    /**
+     * Returns the name of the class for a source file, which is its name
+     * without the extension and with every character that can't be part of
+     * a Java identifier replaced. Names Java doesn't allow for a class, and
+     * the names of {@code java.lang} classes the generated code would no
+     * longer see, get an {@code _} appended.
+     */
+    static String getClassName(Path source) {
+        String name = source.getFileName().toString();
+        if (name.endsWith(EXTENSION)) {
+            name = name.substring(0, name.length() - EXTENSION.length());
+        }
+        StringBuilder className = new StringBuilder();
+        if (name.isEmpty() || !Character.isJavaIdentifierStart(name.charAt(0))) {
+            className.append('_');
+        }
+        for (int i = 0; i < name.length(); i++) {
+            className.append(Character.isJavaIdentifierPart(name.charAt(i)) ? name.charAt(i) : '_');
+        }
+        if (SourceVersion.isKeyword(className) || RESTRICTED.contains(className.toString()) || isJavaLang(className.toString())) {
+            className.append('_');
+        }
+        return className.toString();
+    }
+
+    private static boolean isJavaLang(String className) {
+        try {
+            Class.forName("java.lang." + className, false, null);
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static final class Unit {
+
+        private final Path source;
+        private final Path directory;
+        private final String className;
+
+        private Unit(Path source, Path directory) {
+            this.source = source;
+            this.directory = directory;
+            this.className = getClassName(source);
+        }
+
+    }
+
+    /**
+     * The outcome of compiling a single file.
+     */
+    public static final class FileResult {
+
+        private final Path source;
+        private final List<Diagnostic> diagnostics;
+        private final long read;
+        private final long written;
+        private final boolean cached;
+
+        private FileResult(Path source, List<Diagnostic> diagnostics, long read, long written, boolean cached) {
+            this.source = source;
+            this.diagnostics = diagnostics;
+            this.read = read;
+            this.written = written;
+            this.cached = cached;
+        }
+
+        public Path getSource() {
+            return source;
+        }
+
+        public List<Diagnostic> getDiagnostics() {
+            return diagnostics;
+        }
+
+        public boolean isCached() {
+            return cached;
+        }
+
+    }
+
+    /**
+     * The outcome of a batch, with the files in the order they were given.
+     */
+    public static final class Result {
+
+        private final List<FileResult> files;
+        private final long nanos;
+
+        private Result(List<FileResult> files, long nanos) {
+            this.files = Collections.unmodifiableList(files);
+            this.nanos = nanos;
+        }
+
+        public List<FileResult> getFiles() {
+            return files;
+        }
+
+        /**
+         * Returns the diagnostics of every file which had any.
+         */
+        public Map<Path, List<Diagnostic>> getDiagnostics() {
+            Map<Path, List<Diagnostic>> diagnostics = new LinkedHashMap<>();
+            files.stream().filter(file -> !file.diagnostics.isEmpty()).forEach(file -> diagnostics.put(file.source, file.diagnostics));
+            return diagnostics;
+        }
+
+        public int getFailed() {
+            return (int) files.stream().filter(file -> !file.diagnostics.isEmpty()).count();
+        }
+
+        public int getCached() {
+            return (int) files.stream().filter(file -> file.cached).count();
+        }
+
+        public long getBytesRead() {
+            return files.stream().mapToLong(file -> file.read).sum();
+        }
+
+        public long getBytesWritten() {
+            return files.stream().mapToLong(file -> file.written).sum();
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public double getFilesPerSecond() {
+            return files.size() / (nanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d files (%d failed, %d cached) in %.3fms, %.0f files/s, %.2f MB/s read",
+                    files.size(), getFailed(), getCached(), nanos / 1e6, getFilesPerSecond(), getBytesRead() / 1e6 / (nanos / 1e9));
+        }
+
+    }
+
+}
@@ -0,0 +1,842 @@
+package plc.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates the class file of the program directly, skipping the Java source
+ * written by the {@link Generator} and the {@code javac} run needed to compile
+ * it. The output is the same {@code Main} class with a {@code main} method,
+ * and requires an analyzed AST since every value needs its type.
+ *
+ * <p>Variables are stored in primitive locals based on the JVM name of their
+ * type, in slots which are reused once their scope ends. To satisfy the
+ * verifier, every jump target gets a full frame in the
+ * {@code StackMapTable} describing the variables in scope and the operand
+ * stack there, and variables declared without a value start out with the
+ * default value of their type. Strings are concatenated with
+ * {@code StringConcatFactory}, like {@code javac} does.</p>
+ *
+ * <p>A single {@code WHILE} loop of the {@link Interpreter} can be generated
+ * on its own for the {@link LoopCompiler}, as a static method taking the
+ * arrays of the interpreter's frame.</p>
+ */
+public final class BytecodeGenerator implements Ast.Visitor<Void> {
+
+    private static final int ICONST_0 = 0x03;
+    private static final int IALOAD = 0x2E;
+    private static final int DALOAD = 0x31;
+    private static final int AALOAD = 0x32;
+    private static final int IASTORE = 0x4F;
+    private static final int DASTORE = 0x52;
+    private static final int AASTORE = 0x53;
+    private static final int DCONST_0 = 0x0E;
+    private static final int DCONST_1 = 0x0F;
+    private static final int ACONST_NULL = 0x01;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC = 0x12;
+    private static final int LDC_W = 0x13;
+    private static final int LDC2_W = 0x14;
+    private static final int ILOAD = 0x15;
+    private static final int DLOAD = 0x18;
+    private static final int ALOAD = 0x19;
+    private static final int ISTORE = 0x36;
+    private static final int DSTORE = 0x39;
+    private static final int ASTORE = 0x3A;
+    private static final int POP = 0x57;
+    private static final int POP2 = 0x58;
+    private static final int I2D = 0x87;
+    private static final int DCMPL = 0x97;
+    private static final int IFEQ = 0x99;
+    private static final int IFNE = 0x9A;
+    private static final int IF_ICMPEQ = 0x9F;
+    private static final int IF_ICMPNE = 0xA0;
+    private static final int IF_ACMPEQ = 0xA5;
+    private static final int IF_ACMPNE = 0xA6;
+    private static final int GOTO = 0xA7;
+    private static final int RETURN = 0xB1;
+    private static final int GETSTATIC = 0xB2;
+    private static final int INVOKEVIRTUAL = 0xB6;
+    private static final int INVOKESTATIC = 0xB8;
+    private static final int INVOKEDYNAMIC = 0xBA;
+    private static final int CHECKCAST = 0xC0;
+    private static final int WIDE = 0xC4;
+
+    private static final Map<String, Integer> INTEGER_OPERATORS = new HashMap<>();
+    private static final Map<String, Integer> DECIMAL_OPERATORS = new HashMap<>();
+
+    static {
+        INTEGER_OPERATORS.put("+", 0x60);
+        INTEGER_OPERATORS.put("-", 0x64);
+        INTEGER_OPERATORS.put("*", 0x68);
+        INTEGER_OPERATORS.put("/", 0x6C);
+        INTEGER_OPERATORS.put("<<", 0x78);
+        INTEGER_OPERATORS.put(">>", 0x7A);
+        INTEGER_OPERATORS.put(">>>", 0x7C);
+        DECIMAL_OPERATORS.put("+", 0x63);
+        DECIMAL_OPERATORS.put("-", 0x67);
+        DECIMAL_OPERATORS.put("*", 0x6B);
+        DECIMAL_OPERATORS.put("/", 0x6F);
+    }
+
+    private final OutputStream output;
+    private final String className;
+    private final String methodName;
+    private final String methodDescriptor;
+    private final ConstantPool pool = new ConstantPool();
+    private final Map<String, Integer> bootstraps = new LinkedHashMap<>();
+
+    private byte[] code = new byte[256];
+    private int length = 0;
+    private final List<Frame> frames = new ArrayList<>();
+
+    private final Deque<Map<String, Local>> scopes = new ArrayDeque<>();
+    private final List<String> locals = new ArrayList<>();
+    private final List<String> stack = new ArrayList<>();
+    private int slots = 0;
+    private int maxLocals = 0;
+    private int maxStack = 0;
+
+    public BytecodeGenerator(OutputStream output) {
+        this(output, "Main", "main", "([Ljava/lang/String;)V");
+    }
+
+    private BytecodeGenerator(OutputStream output, String className, String methodName, String methodDescriptor) {
+        this.output = output;
+        this.className = className;
+        this.methodName = methodName;
+        this.methodDescriptor = methodDescriptor;
+    }
+
+    /**
+     * Returns the class file for the program.
+     */
+    public static byte[] generate(Ast.Source ast) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new BytecodeGenerator(output).visit(ast);
+        return output.toByteArray();
+    }
+
+    /**
+     * Returns the class file of the given class, with the loop as the static
+     * method {@code run(int[], double[], Object[])} over the interpreter's
+     * frame. The variables the loop uses are read from their slots into
+     * locals on entry, and written back once the loop exits.
+     */
+    static byte[] generate(String className, Ast.Statement.While ast, List<Interpreter.Slot> variables) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new BytecodeGenerator(output, className.replace('.', '/'), "run", "([I[D[Ljava/lang/Object;)V").visit(ast, variables);
+        return output.toByteArray();
+    }
+
+    private void visit(Ast.Statement.While ast, List<Interpreter.Slot> variables) {
+        scopes.push(new HashMap<>());
+        Local ints = declare("$ints", "[I");
+        Local doubles = declare("$doubles", "[D");
+        Local objects = declare("$objects", "[Ljava/lang/Object;");
+        List<Local> slots = new ArrayList<>();
+        for (Interpreter.Slot variable : variables) {
+            String type = descriptor(variable.type);
+            if (variable.kind == Interpreter.Kind.DOUBLE) {
+                load(doubles);
+                integer(variable.index);
+                emit(DALOAD);
+            } else if (variable.kind == Interpreter.Kind.OBJECT) {
+                load(objects);
+                integer(variable.index);
+                emit(AALOAD);
+                if (!type.equals("Ljava/lang/Object;")) {
+                    emit(CHECKCAST);
+                    emitShort(pool.classRef(type.substring(1, type.length() - 1)));
+                }
+            } else {
+                //booleans are stored as ints, which is also how the JVM holds them
+                load(ints);
+                integer(variable.index);
+                emit(IALOAD);
+            }
+            pop(2);
+            push(type);
+            Local local = declare(variable.name, type);
+            store(local);
+            slots.add(local);
+        }
+        visit((Ast) ast);
+        for (int i = 0; i < variables.size(); i++) {
+            Interpreter.Slot variable = variables.get(i);
+            load(variable.kind == Interpreter.Kind.DOUBLE ? doubles : variable.kind == Interpreter.Kind.OBJECT ? objects : ints);
+            integer(variable.index);
+            load(slots.get(i));
+            emit(variable.kind == Interpreter.Kind.DOUBLE ? DASTORE : variable.kind == Interpreter.Kind.OBJECT ? AASTORE : IASTORE);
+            pop(3);
+        }
+        emit(RETURN);
+        try {
+            write();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Void visit(Ast.Source ast) {
+        scopes.push(new HashMap<>());
+        declare("args", "[Ljava/lang/String;");
+        for (Ast.Statement statement : ast.getStatements()) {
+            visit(statement);
+        }
+        emit(RETURN);
+        try {
+            write();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return null;
+    }
+
+    private void write() throws IOException {
+        int thisClass = pool.classRef(className);
+        int superClass = pool.classRef("java/lang/Object");
+        int mainName = pool.utf8(methodName);
+        int mainDescriptor = pool.utf8(methodDescriptor);
+        int codeName = pool.utf8("Code");
+        byte[] stackMapTable = writeStackMapTable();
+        int stackMapTableName = stackMapTable.length > 0 ? pool.utf8("StackMapTable") : 0;
+        int bootstrapMethodsName = bootstraps.isEmpty() ? 0 : pool.utf8("BootstrapMethods");
+        byte[] bootstrapMethods = writeBootstrapMethods();
+        byte[] bytecode = Arrays.copyOf(code, length);
+        if (bytecode.length > 0xFFFF) {
+            throw new IllegalStateException("The program exceeds the 64KiB limit of a method's bytecode.");
+        }
+
+        DataOutputStream data = new DataOutputStream(output);
+        data.writeInt(0xCAFEBABE);
+        data.writeShort(0);
+        data.writeShort(53); //Java 9, the first to have StringConcatFactory
+        pool.write(data);
+        data.writeShort(0x0031); //public final super
+        data.writeShort(thisClass);
+        data.writeShort(superClass);
+        data.writeShort(0); //interfaces
+        data.writeShort(0); //fields
+        data.writeShort(1); //methods
+        data.writeShort(0x0009); //public static
+        data.writeShort(mainName);
+        data.writeShort(mainDescriptor);
+        data.writeShort(1);
+        data.writeShort(codeName);
+        int attributes = stackMapTable.length > 0 ? 6 + stackMapTable.length : 0;
+        data.writeInt(12 + bytecode.length + attributes);
+        data.writeShort(maxStack);
+        data.writeShort(maxLocals);
+        data.writeInt(bytecode.length);
+        data.write(bytecode);
+        data.writeShort(0); //exception table
+        if (stackMapTable.length > 0) {
+            data.writeShort(1);
+            data.writeShort(stackMapTableName);
+            data.writeInt(stackMapTable.length);
+            data.write(stackMapTable);
+        } else {
+            data.writeShort(0);
+        }
+        if (bootstraps.isEmpty()) {
+            data.writeShort(0);
+        } else {
+            data.writeShort(1);
+            data.writeShort(bootstrapMethodsName);
+            data.writeInt(bootstrapMethods.length);
+            data.write(bootstrapMethods);
+        }
+        data.flush();
+    }
+
+    /**
+     * Writes the frames as full frames, which are larger than the compressed
+     * forms but always valid.
+     */
+    private byte[] writeStackMapTable() throws IOException {
+        if (frames.isEmpty()) {
+            return new byte[0];
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeShort(frames.size());
+        int previous = -1;
+        for (Frame frame : frames) {
+            data.writeByte(255);
+            data.writeShort(frame.position - previous - 1);
+            previous = frame.position;
+            data.writeShort(frame.locals.size());
+            for (String type : frame.locals) {
+                writeVerificationType(data, type);
+            }
+            data.writeShort(frame.stack.size());
+            for (String type : frame.stack) {
+                writeVerificationType(data, type);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private void writeVerificationType(DataOutputStream data, String descriptor) throws IOException {
+        switch (descriptor) {
+            case "I":
+            case "Z":
+                data.writeByte(1);
+                break;
+            case "D":
+                data.writeByte(3);
+                break;
+            default:
+                data.writeByte(7);
+                data.writeShort(pool.classRef(descriptor.startsWith("[") ? descriptor : descriptor.substring(1, descriptor.length() - 1)));
+        }
+    }
+
+    private byte[] writeBootstrapMethods() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        if (!bootstraps.isEmpty()) {
+            int handle = pool.staticMethodHandle("java/lang/invoke/StringConcatFactory", "makeConcatWithConstants",
+                    "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;Ljava/lang/String;[Ljava/lang/Object;)Ljava/lang/invoke/CallSite;");
+            data.writeShort(bootstraps.size());
+            for (String recipe : bootstraps.keySet()) {
+                data.writeShort(handle);
+                data.writeShort(1);
+                data.writeShort(pool.string(recipe));
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private void visit(Ast.Statement ast) {
+        visit((Ast) ast);
+    }
+
+    private void visit(List<Ast.Statement> statements) {
+        scopes.push(new HashMap<>());
+        int size = locals.size();
+        int start = slots;
+        for (Ast.Statement statement : statements) {
+            visit(statement);
+        }
+        scopes.pop();
+        locals.subList(size, locals.size()).clear();
+        slots = start;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Expression ast) {
+        visit(ast.getExpression());
+        String type = descriptor(ast.getExpression().getType());
+        if (!type.equals("V")) {
+            emit(type.equals("D") ? POP2 : POP);
+            pop(1);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Declaration ast) {
+        String type = descriptor(ast.getType());
+        if (ast.getValue().isPresent()) {
+            visit(ast.getValue().get());
+            convert(ast.getValue().get().getType(), type);
+        } else {
+            //the verifier needs every local in a frame to be set
+            emit(type.equals("I") || type.equals("Z") ? ICONST_0 : type.equals("D") ? DCONST_0 : ACONST_NULL);
+            push(type);
+        }
+        Local local = declare(ast.getName(), type);
+        store(local);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Assignment ast) {
+        Local local = lookup(ast.getName());
+        visit(ast.getExpression());
+        convert(ast.getExpression().getType(), local.type);
+        store(local);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.If ast) {
+        Label otherwise = new Label();
+        jump(ast.getCondition(), false, otherwise);
+        visit(ast.getThenStatements());
+        if (ast.getElseStatements().isEmpty()) {
+            bind(otherwise);
+        } else {
+            Label end = new Label();
+            jump(GOTO, end);
+            bind(otherwise);
+            visit(ast.getElseStatements());
+            bind(end);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.While ast) {
+        Label condition = new Label();
+        Label exit = new Label();
+        bind(condition);
+        jump(ast.getCondition(), false, exit);
+        visit(ast.getStatements());
+        jump(GOTO, condition);
+        bind(exit);
+        return null;
+    }
+
+    private void visit(Ast.Expression ast) {
+        visit((Ast) ast);
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Literal ast) {
+        Object value = ast.getValue();
+        if (value instanceof Boolean) {
+            emit(ICONST_0 + ((Boolean) value ? 1 : 0));
+            push("Z");
+        } else if (value instanceof Integer) {
+            integer((Integer) value);
+        } else if (value instanceof Double) {
+            double decimal = (Double) value;
+            if (Double.doubleToRawLongBits(decimal) == 0L) {
+                emit(DCONST_0);
+            } else if (decimal == 1.0) {
+                emit(DCONST_1);
+            } else {
+                emit(LDC2_W);
+                emitShort(pool.doubleValue(decimal));
+            }
+            push("D");
+        } else if (value instanceof String) {
+            ldc(pool.string((String) value));
+            push("Ljava/lang/String;");
+        } else {
+            throw new IllegalStateException("The literal " + value + " has not been analyzed.");
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Group ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Binary ast) {
+        Stdlib.Type type = ast.getType();
+        String operator = ast.getOperator();
+        if (operator.equals("==") || operator.equals("!=")) {
+            Label otherwise = new Label();
+            Label end = new Label();
+            jump(ast, false, otherwise);
+            emit(ICONST_0 + 1);
+            jump(GOTO, end);
+            bind(otherwise);
+            emit(ICONST_0);
+            push("Z");
+            bind(end);
+        } else if (type == Stdlib.Type.STRING) {
+            concatenate(ast);
+        } else if (type == Stdlib.Type.DECIMAL && DECIMAL_OPERATORS.containsKey(operator)) {
+            visit(ast.getLeft());
+            convert(ast.getLeft().getType(), "D");
+            visit(ast.getRight());
+            convert(ast.getRight().getType(), "D");
+            emit(DECIMAL_OPERATORS.get(operator));
+            pop(2);
+            push("D");
+        } else if (type == Stdlib.Type.INTEGER && INTEGER_OPERATORS.containsKey(operator)) {
+            visit(ast.getLeft());
+            visit(ast.getRight());
+            emit(INTEGER_OPERATORS.get(operator));
+            pop(2);
+            push("I");
+        } else {
+            throw new IllegalStateException("The operator " + operator + " is not supported for " + type.getName() + ".");
+        }
+        return null;
+    }
+
+    /**
+     * Concatenates a chain of {@code +} on strings with a single
+     * {@code invokedynamic}. Literals are baked into the recipe, where
+     * {@code \1} marks the place of each argument. A chain of literals alone
+     * is a constant expression, which javac computes and interns, so it is
+     * loaded from the constant pool instead.
+     */
+    private void concatenate(Ast.Expression.Binary ast) {
+        Object constant = constant(ast);
+        if (constant != null) {
+            ldc(pool.string((String) constant));
+            push("Ljava/lang/String;");
+            return;
+        }
+        List<Ast.Expression> operands = new ArrayList<>();
+        Ast.Expression expression = ast;
+        while (expression instanceof Ast.Expression.Binary && ((Ast.Expression.Binary) expression).getOperator().equals("+")
+                && ((Ast.Expression.Binary) expression).getType() == Stdlib.Type.STRING) {
+            operands.add(0, ((Ast.Expression.Binary) expression).getRight());
+            expression = ((Ast.Expression.Binary) expression).getLeft();
+        }
+        operands.add(0, expression);
+        StringBuilder recipe = new StringBuilder();
+        StringBuilder descriptor = new StringBuilder("(");
+        int arguments = 0;
+        for (Ast.Expression operand : operands) {
+            if (operand instanceof Ast.Expression.Literal && String.valueOf(((Ast.Expression.Literal) operand).getValue()).matches("[^\u0001\u0002]*")) {
+                recipe.append(((Ast.Expression.Literal) operand).getValue());
+            } else {
+                visit(operand);
+                recipe.append('\u0001');
+                descriptor.append(descriptor(operand.getType()));
+                arguments++;
+            }
+        }
+        descriptor.append(")Ljava/lang/String;");
+        int bootstrap = bootstraps.computeIfAbsent(recipe.toString(), r -> bootstraps.size());
+        emit(INVOKEDYNAMIC);
+        emitShort(pool.invokeDynamic(bootstrap, "makeConcatWithConstants", descriptor.toString()));
+        emitShort(0);
+        pop(arguments);
+        push("Ljava/lang/String;");
+    }
+
+    /**
+     * Returns the value of a constant expression, made of literals alone, or
+     * {@code null} if the expression isn't one.
+     */
+    private static Object constant(Ast.Expression ast) {
+        if (ast instanceof Ast.Expression.Literal) {
+            return ((Ast.Expression.Literal) ast).getValue();
+        } else if (ast instanceof Ast.Expression.Group) {
+            return constant(((Ast.Expression.Group) ast).getExpression());
+        } else if (ast instanceof Ast.Expression.Binary) {
+            Object left = constant(((Ast.Expression.Binary) ast).getLeft());
+            Object right = constant(((Ast.Expression.Binary) ast).getRight());
+            return left != null && right != null ? ConstantFolder.fold(((Ast.Expression.Binary) ast).getOperator(), left, right) : null;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Variable ast) {
+        Local local = lookup(ast.getName());
+        load(local);
+        return null;
+    }
+
+    /**
+     * Calls the function through its JVM name, see {@link JvmFunction}.
+     */
+    @Override
+    public Void visit(Ast.Expression.Function ast) {
+        List<Stdlib.Type> types = new ArrayList<>();
+        ast.getArguments().forEach(argument -> types.add(argument.getType()));
+        JvmFunction function = JvmFunction.resolve(ast.getName(), types);
+        Class<?> owner = function.getOwner();
+        for (Field field : function.getFields()) {
+            emit(GETSTATIC);
+            emitShort(pool.fieldRef(internalName(field.getDeclaringClass()), field.getName(), descriptor(field.getType())));
+            push(descriptor(field.getType()));
+            owner = field.getType();
+        }
+        Method method = function.getMethod();
+        StringBuilder descriptor = new StringBuilder("(");
+        for (int i = 0; i < ast.getArguments().size(); i++) {
+            visit(ast.getArguments().get(i));
+            String parameter = descriptor(method.getParameterTypes()[i]);
+            convert(ast.getArguments().get(i).getType(), parameter);
+            descriptor.append(parameter);
+        }
+        descriptor.append(")").append(descriptor(method.getReturnType()));
+        emit(function.isStatic() ? INVOKESTATIC : INVOKEVIRTUAL);
+        emitShort(pool.methodRef(internalName(owner), method.getName(), descriptor.toString()));
+        pop(ast.getArguments().size() + (function.isStatic() ? 0 : 1));
+        if (method.getReturnType() != void.class) {
+            push(descriptor(method.getReturnType()));
+        }
+        return null;
+    }
+
+    /**
+     * Emits a jump to {@code target} taken when the condition evaluates to
+     * {@code when}. Equality is compared directly instead of first producing
+     * a boolean.
+     */
+    private void jump(Ast.Expression condition, boolean when, Label target) {
+        if (condition instanceof Ast.Expression.Group) {
+            jump(((Ast.Expression.Group) condition).getExpression(), when, target);
+            return;
+        } else if (!(condition instanceof Ast.Expression.Binary)
+                || !((Ast.Expression.Binary) condition).getOperator().matches("==|!=")) {
+            visit(condition);
+            pop(1);
+            jump(when ? IFNE : IFEQ, target);
+            return;
+        }
+        Ast.Expression.Binary binary = (Ast.Expression.Binary) condition;
+        boolean equal = binary.getOperator().equals("==") == when;
+        Stdlib.Type left = binary.getLeft().getType();
+        Stdlib.Type right = binary.getRight().getType();
+        visit(binary.getLeft());
+        if (isNumeric(left) && isNumeric(right) && (left == Stdlib.Type.DECIMAL || right == Stdlib.Type.DECIMAL)) {
+            convert(left, "D");
+            visit(binary.getRight());
+            convert(right, "D");
+            emit(DCMPL);
+            pop(2);
+            push("I");
+            pop(1);
+            jump(equal ? IFEQ : IFNE, target);
+        } else if (isPrimitive(left) && isPrimitive(right)) {
+            visit(binary.getRight());
+            pop(2);
+            jump(equal ? IF_ICMPEQ : IF_ICMPNE, target);
+        } else {
+            convert(left, "Ljava/lang/Object;");
+            visit(binary.getRight());
+            convert(right, "Ljava/lang/Object;");
+            pop(2);
+            jump(equal ? IF_ACMPEQ : IF_ACMPNE, target);
+        }
+    }
+
+    /**
+     * Converts the value on top of the stack from the given type to the
+     * given descriptor, widening {@code int} to {@code double} and boxing
+     * primitives passed as objects.
+     */
+    private void convert(Stdlib.Type type, String target) {
+        String source = descriptor(type);
+        if (source.equals("I") && target.equals("D")) {
+            emit(I2D);
+            pop(1);
+            push("D");
+        } else if (source.length() == 1 && target.length() > 1) {
+            Class<?> boxed = JvmFunction.box(JvmFunction.javaClass(type));
+            emit(INVOKESTATIC);
+            emitShort(pool.methodRef(internalName(boxed), "valueOf", "(" + source + ")" + descriptor(boxed)));
+            pop(1);
+            push(descriptor(boxed));
+        }
+    }
+
+    private Local declare(String name, String type) {
+        Local local = new Local(slots, type);
+        scopes.peek().put(name, local);
+        locals.add(type);
+        slots += type.equals("D") ? 2 : 1;
+        maxLocals = Math.max(maxLocals, slots);
+        return local;
+    }
+
+    private Local lookup(String name) {
+        for (Map<String, Local> scope : scopes) {
+            if (scope.containsKey(name)) {
+                return scope.get(name);
+            }
+        }
+        throw new IllegalArgumentException("The identifier " + name + " is not defined.");
+    }
+
+    private void load(Local local) {
+        local(local.type.equals("D") ? DLOAD : local.type.length() == 1 ? ILOAD : ALOAD, local.slot);
+        push(local.type);
+    }
+
+    private void store(Local local) {
+        local(local.type.equals("D") ? DSTORE : local.type.length() == 1 ? ISTORE : ASTORE, local.slot);
+        pop(1);
+    }
+
+    private void local(int opcode, int slot) {
+        if (slot > 0xFF) {
+            emit(WIDE, opcode);
+            emitShort(slot);
+        } else {
+            emit(opcode, slot);
+        }
+    }
+
+    private void integer(int integer) {
+        if (integer >= -1 && integer <= 5) {
+            emit(ICONST_0 + integer);
+        } else if (integer == (byte) integer) {
+            emit(BIPUSH, integer & 0xFF);
+        } else if (integer == (short) integer) {
+            emit(SIPUSH);
+            emitShort(integer);
+        } else {
+            ldc(pool.integer(integer));
+        }
+        push("I");
+    }
+
+    private void ldc(int index) {
+        if (index > 0xFF) {
+            emit(LDC_W);
+            emitShort(index);
+        } else {
+            emit(LDC, index);
+        }
+    }
+
+    private void jump(int opcode, Label target) {
+        int position = length;
+        emit(opcode);
+        if (target.position >= 0) {
+            emitShort(offset(target.position - position));
+        } else {
+            target.jumps.add(position);
+            emitShort(0);
+        }
+    }
+
+    /**
+     * Places the label at the current position, adding a frame for it.
+     * Labels bound at the same position are always nested, and the last one
+     * has the fewest variables in scope, so its frame replaces the others.
+     */
+    private void bind(Label label) {
+        label.position = length;
+        for (int jump : label.jumps) {
+            int offset = offset(label.position - jump);
+            code[jump + 1] = (byte) (offset >> 8);
+            code[jump + 2] = (byte) offset;
+        }
+        if (!frames.isEmpty() && frames.get(frames.size() - 1).position == label.position) {
+            frames.remove(frames.size() - 1);
+        }
+        frames.add(new Frame(label.position, new ArrayList<>(locals), new ArrayList<>(stack)));
+    }
+
+    private static int offset(int offset) {
+        if (offset != (short) offset) {
+            throw new IllegalStateException("The jump of " + offset + " bytes is too far.");
+        }
+        return offset;
+    }
+
+    private void emit(int... bytes) {
+        for (int b : bytes) {
+            if (length == code.length) {
+                code = Arrays.copyOf(code, length * 2);
+            }
+            code[length++] = (byte) b;
+        }
+    }
+
+    private void emitShort(int value) {
+        emit(value >> 8, value & 0xFF);
+    }
+
+    private void push(String type) {
+        stack.add(type);
+        int size = 0;
+        for (String entry : stack) {
+            size += entry.equals("D") ? 2 : 1;
+        }
+        maxStack = Math.max(maxStack, size);
+    }
+
+    private void pop(int count) {
+        stack.subList(stack.size() - count, stack.size()).clear();
+    }
+
+    private static boolean isNumeric(Stdlib.Type type) {
+        return type == Stdlib.Type.INTEGER || type == Stdlib.Type.DECIMAL;
+    }
+
+    private static boolean isPrimitive(Stdlib.Type type) {
+        return type == Stdlib.Type.INTEGER || type == Stdlib.Type.BOOLEAN;
+    }
+
+    private static String descriptor(Stdlib.Type type) {
+        return type == Stdlib.Type.VOID ? "V" : descriptor(type.getJvmName());
+    }
+
+    /**
+     * Returns the descriptor for the JVM name of a type, which is either a
+     * primitive or a class in {@code java.lang}.
+     */
+    private static String descriptor(String jvmName) {
+        switch (jvmName) {
+            case "int":
+                return "I";
+            case "double":
+                return "D";
+            case "boolean":
+                return "Z";
+            default:
+                return descriptor(JvmFunction.load(jvmName));
+        }
+    }
+
+    private static String descriptor(Class<?> type) {
+        if (type.isPrimitive()) {
+            return type == int.class ? "I" : type == double.class ? "D" : type == boolean.class ? "Z" : type == void.class ? "V"
+                    : type == long.class ? "J" : type == float.class ? "F" : type == char.class ? "C" : type == byte.class ? "B" : "S";
+        }
+        return type.isArray() ? internalName(type) : "L" + internalName(type) + ";";
+    }
+
+    private static String internalName(Class<?> type) {
+        return type.getName().replace('.', '/');
+    }
+
+    private static final class Local {
+
+        private final int slot;
+        private final String type;
+
+        private Local(int slot, String type) {
+            this.slot = slot;
+            this.type = type;
+        }
+
+    }
+
+    private static final class Label {
+
+        private int position = -1;
+        private final List<Integer> jumps = new ArrayList<>();
+
+    }
+
+    private static final class Frame {
+
+        private final int position;
+        private final List<String> locals;
+        private final List<String> stack;
+
+        private Frame(int position, List<String> locals, List<String> stack) {
+            this.position = position;
+            this.locals = locals;
+            this.stack = stack;
+        }
+
+    }
+
+}
@@ -0,0 +1,223 @@
+package plc.compiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Computes repeated side-effect free binary expressions once per block. Each
+ * expression is given a value number from its operator and the numbers of its
+ * operands, where a variable is numbered by its name and the last statement
+ * which assigned it. Expressions in a block with the same number are computed
+ * into a temporary declared before the statement where they first appear.
+ *
+ * <p>Only expressions evaluated once per pass through the block are
+ * considered: function arguments, initializers, assigned values and
+ * {@code IF} conditions. A {@code WHILE} condition is reevaluated after its
+ * body runs and is left alone. Nested blocks are numbered separately, and
+ * every variable they assign is invalidated in the enclosing block.</p>
+ */
+public final class CommonSubexpressionEliminator extends Rewriter {
+
+    @Override
+    protected List<Ast.Statement> visit(List<Ast.Statement> statements) {
+        List<Ast.Statement> rewritten = super.visit(statements);
+        Numbering numbering = new Numbering();
+        Map<Integer, Integer> counts = new HashMap<>();
+        Set<Integer> seen = new HashSet<>();
+        for (Ast.Statement statement : rewritten) {
+            for (Ast.Expression expression : getExpressions(statement)) {
+                count(expression, numbering, counts, seen);
+            }
+            numbering.update(statement);
+        }
+        if (counts.values().stream().noneMatch(count -> count > 1)) {
+            return rewritten;
+        }
+        //replaying the same updates gives every expression the same number
+        numbering.reset();
+        List<Ast.Statement> result = new ArrayList<>();
+        Replacer replacer = new Replacer(numbering, counts, result);
+        for (Ast.Statement statement : rewritten) {
+            result.add(replacer.replace(statement));
+            numbering.update(statement);
+        }
+        return result;
+    }
+
+    /**
+     * Counts the occurrences of each value number, not counting the operands
+     * of an expression which was already seen since those are computed once
+     * when the expression is.
+     */
+    private static void count(Ast.Expression ast, Numbering numbering, Map<Integer, Integer> counts, Set<Integer> seen) {
+        if (ast instanceof Ast.Expression.Group) {
+            count(((Ast.Expression.Group) ast).getExpression(), numbering, counts, seen);
+        } else if (ast instanceof Ast.Expression.Function) {
+            ((Ast.Expression.Function) ast).getArguments().forEach(argument -> count(argument, numbering, counts, seen));
+        } else if (ast instanceof Ast.Expression.Binary) {
+            Ast.Expression.Binary binary = (Ast.Expression.Binary) ast;
+            if (isCandidate(binary)) {
+                int number = numbering.number(binary);
+                counts.merge(number, 1, Integer::sum);
+                if (!seen.add(number)) {
+                    return;
+                }
+            }
+            count(binary.getLeft(), numbering, counts, seen);
+            count(binary.getRight(), numbering, counts, seen);
+        }
+    }
+
+    /**
+     * Concatenations aren't candidates: each one creates a new string, and
+     * sharing one would change what {@code ==} sees.
+     */
+    private static boolean isCandidate(Ast.Expression.Binary ast) {
+        return typeOf(ast) != null && !Stdlib.Type.STRING.equals(typeOf(ast)) && isPure(ast);
+    }
+
+    /**
+     * Returns the expressions a statement evaluates exactly once each time
+     * it runs, in evaluation order.
+     */
+    private static List<Ast.Expression> getExpressions(Ast.Statement ast) {
+        List<Ast.Expression> expressions = new ArrayList<>();
+        if (ast instanceof Ast.Statement.Expression) {
+            expressions.add(((Ast.Statement.Expression) ast).getExpression());
+        } else if (ast instanceof Ast.Statement.Declaration) {
+            ((Ast.Statement.Declaration) ast).getValue().ifPresent(expressions::add);
+        } else if (ast instanceof Ast.Statement.Assignment) {
+            expressions.add(((Ast.Statement.Assignment) ast).getExpression());
+        } else if (ast instanceof Ast.Statement.If) {
+            expressions.add(((Ast.Statement.If) ast).getCondition());
+        }
+        return expressions;
+    }
+
+    /**
+     * Assigns value numbers to expressions as of a point in a block.
+     */
+    private static final class Numbering {
+
+        private final Map<String, Integer> numbers = new HashMap<>();
+        private final Map<String, Integer> versions = new HashMap<>();
+        private int statement = 0;
+
+        int number(Ast.Expression ast) {
+            String key;
+            if (ast instanceof Ast.Expression.Literal) {
+                key = "L" + ((Ast.Expression.Literal) ast).getValue().getClass().getSimpleName() + ":" + ((Ast.Expression.Literal) ast).getValue();
+            } else if (ast instanceof Ast.Expression.Variable) {
+                String name = ((Ast.Expression.Variable) ast).getName();
+                key = "V" + name + "@" + versions.getOrDefault(name, -1);
+            } else if (ast instanceof Ast.Expression.Group) {
+                return number(((Ast.Expression.Group) ast).getExpression());
+            } else if (ast instanceof Ast.Expression.Binary) {
+                Ast.Expression.Binary binary = (Ast.Expression.Binary) ast;
+                int left = number(binary.getLeft());
+                int right = number(binary.getRight());
+                if (isCommutative(binary) && left > right) {
+                    int swap = left;
+                    left = right;
+                    right = swap;
+                }
+                key = binary.getOperator() + "(" + left + "," + right + ")";
+            } else {
+                //function calls are never equal to one another
+                key = "F" + numbers.size();
+            }
+            return numbers.computeIfAbsent(key, k -> numbers.size());
+        }
+
+        void reset() {
+            versions.clear();
+            statement = 0;
+        }
+
+        /**
+         * Invalidates the variables the statement assigns.
+         */
+        void update(Ast.Statement ast) {
+            statement++;
+            if (ast instanceof Ast.Statement.Declaration) {
+                versions.put(((Ast.Statement.Declaration) ast).getName(), statement);
+            } else if (ast instanceof Ast.Statement.Assignment) {
+                versions.put(((Ast.Statement.Assignment) ast).getName(), statement);
+            } else if (ast instanceof Ast.Statement.If) {
+                LoopAnalysis.getAssigned(((Ast.Statement.If) ast).getThenStatements()).forEach(name -> versions.put(name, statement));
+                LoopAnalysis.getAssigned(((Ast.Statement.If) ast).getElseStatements()).forEach(name -> versions.put(name, statement));
+            } else if (ast instanceof Ast.Statement.While) {
+                LoopAnalysis.getAssigned((Ast.Statement.While) ast).forEach(name -> versions.put(name, statement));
+            }
+        }
+
+        private static boolean isCommutative(Ast.Expression.Binary ast) {
+            switch (ast.getOperator()) {
+                case "==":
+                case "!=":
+                    return true;
+                case "+":
+                case "*":
+                    return Stdlib.Type.INTEGER.equals(typeOf(ast)) || Stdlib.Type.DECIMAL.equals(typeOf(ast));
+                default:
+                    return false;
+            }
+        }
+
+    }
+
+    /**
+     * Rewrites statements to use temporaries for repeated expressions,
+     * declaring each temporary before the statement it first appears in.
+     */
+    private final class Replacer extends Rewriter {
+
+        private final Numbering numbering;
+        private final Map<Integer, Integer> counts;
+        private final List<Ast.Statement> statements;
+        private final Map<Integer, Ast.Expression.Variable> temporaries = new HashMap<>();
+
+        private Replacer(Numbering numbering, Map<Integer, Integer> counts, List<Ast.Statement> statements) {
+            this.numbering = numbering;
+            this.counts = counts;
+            this.statements = statements;
+        }
+
+        Ast.Statement replace(Ast.Statement ast) {
+            if (ast instanceof Ast.Statement.If) {
+                Ast.Statement.If branch = (Ast.Statement.If) ast;
+                Ast.Expression condition = visit(branch.getCondition());
+                return condition == branch.getCondition() ? ast
+                        : new Ast.Statement.If(condition, branch.getThenStatements(), branch.getElseStatements());
+            } else if (ast instanceof Ast.Statement.While) {
+                return ast;
+            }
+            return visit(ast);
+        }
+
+        @Override
+        public Ast visit(Ast.Expression.Binary ast) {
+            if (isCandidate(ast)) {
+                int number = numbering.number(ast);
+                if (counts.get(number) > 1) {
+                    Ast.Expression.Variable temporary = temporaries.get(number);
+                    if (temporary == null) {
+                        Ast.Expression value = (Ast.Expression) super.visit(ast);
+                        temporary = new Ast.Expression.Variable(typeOf(ast), CommonSubexpressionEliminator.this.temporary("cse"));
+                        statements.add(new Ast.Statement.Declaration(temporary.getName(), typeOf(ast).getJvmName(), Optional.of(value)));
+                        temporaries.put(number, temporary);
+                    }
+                    return temporary;
+                }
+            }
+            return super.visit(ast);
+        }
+
+    }
+
+}
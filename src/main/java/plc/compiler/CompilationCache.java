@@ -0,0 +1,322 @@
+package plc.compiler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A persistent cache of compiler output, shared by every process using the
+ * same directory. Entries are addressed by the SHA-256 hash of the compiler
+ * version, the options and the source text, so an unchanged program skips
+ * the whole pipeline and its output is copied from disk with
+ * {@link FileChannel#transferTo}.
+ *
+ * <p>Each entry is a directory named by its key, holding one file per
+ * artifact such as {@code Main.java} or {@code Main.class}. Entries are
+ * written into a temporary directory and renamed into place, and removed by
+ * renaming them away before deleting them, so other processes either see a
+ * complete entry or none. Hits update the modification time of the entry,
+ * and once the cache grows over its size the least recently used entries
+ * are evicted by one process at a time, holding a lock on
+ * {@code .lock}.</p>
+ *
+ * <p>The size of the cache is estimated from the entries this instance
+ * added, so puts under the size don't list the directory. The estimate is
+ * synced with the directory on the first put, on every eviction and every
+ * {@value #RESYNC} puts, which also counts the entries of other
+ * processes.</p>
+ */
+public final class CompilationCache {
+
+    /**
+     * The version of the compiler, which has to change whenever the output
+     * for the same source and options does. It is the hash of the class
+     * files the compiler was loaded from, see {@link #version()}.
+     */
+    public static final String VERSION = version();
+
+    private static final String TEMPORARY = "tmp-";
+    private static final String LOCK = ".lock";
+    private static final Duration ABANDONED = Duration.ofHours(1);
+    private static final int RESYNC = 256;
+
+    private final Path directory;
+    private final long maxBytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicLong puts = new AtomicLong();
+
+    public CompilationCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the key of a program, as a hexadecimal SHA-256 hash.
+     */
+    public static String key(String source, List<String> options) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, VERSION);
+            update(digest, String.valueOf(options.size()));
+            options.forEach(option -> update(digest, option));
+            update(digest, source);
+            return hex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e); //required on every platform
+        }
+    }
+
+    /**
+     * Hashes the class files of the compiler, which are either a directory
+     * or a jar. If they can't be read, the version is random, so the cache
+     * is only shared within the process instead of returning stale output.
+     */
+    private static String version() {
+        try {
+            Path location = Paths.get(CompilationCache.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            if (Files.isDirectory(location)) {
+                List<Path> classes;
+                try (Stream<Path> walk = Files.walk(location)) {
+                    classes = walk.filter(path -> path.toString().endsWith(".class")).sorted().collect(Collectors.toList());
+                }
+                for (Path file : classes) {
+                    update(digest, location.relativize(file).toString());
+                    digest.update(Files.readAllBytes(file));
+                }
+            } else {
+                digest.update(Files.readAllBytes(location));
+            }
+            return hex(digest.digest());
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            return UUID.randomUUID().toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e); //required on every platform
+        }
+    }
+
+    /**
+     * Each part is prefixed by its length, so different splits of the same
+     * characters get different keys.
+     */
+    private static void update(MessageDigest digest, String part) {
+        byte[] bytes = part.getBytes(StandardCharsets.UTF_8);
+        digest.update(String.valueOf(bytes.length).getBytes(StandardCharsets.US_ASCII));
+        digest.update((byte) ':');
+        digest.update(bytes);
+    }
+
+    /**
+     * Writes the output for the source into the output directory, from the
+     * cache if there's an entry and otherwise by running the compiler, which
+     * returns the artifacts by file name. Returns whether it was a hit.
+     */
+    public boolean compile(String source, List<String> options, Function<String, Map<String, byte[]>> compiler, Path output) throws IOException {
+        String key = key(source, options);
+        if (get(key, output)) {
+            hits.incrementAndGet();
+            return true;
+        }
+        misses.incrementAndGet();
+        Map<String, byte[]> artifacts = compiler.apply(source);
+        Files.createDirectories(output);
+        for (Map.Entry<String, byte[]> artifact : artifacts.entrySet()) {
+            Files.write(output.resolve(name(artifact.getKey())), artifact.getValue());
+        }
+        put(key, artifacts);
+        return false;
+    }
+
+    /**
+     * Copies the artifacts of an entry into the output directory, returning
+     * {@code false} if there is no entry.
+     */
+    public boolean get(String key, Path output) throws IOException {
+        Path entry = directory.resolve(key);
+        List<Path> files;
+        try (Stream<Path> list = Files.list(entry)) {
+            files = new ArrayList<>();
+            list.forEach(files::add);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        Files.createDirectories(output);
+        try {
+            for (Path file : files) {
+                try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ);
+                     FileChannel out = FileChannel.open(output.resolve(file.getFileName().toString()),
+                             StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    long size = in.size();
+                    for (long position = 0; position < size; ) {
+                        position += in.transferTo(position, size - position, out);
+                    }
+                }
+            }
+            Files.setLastModifiedTime(entry, FileTime.from(Instant.now()));
+        } catch (NoSuchFileException e) {
+            return false; //evicted by another process while copying
+        }
+        return true;
+    }
+
+    /**
+     * Adds an entry, unless another process added it first, and evicts the
+     * least recently used entries if the cache is estimated to be over its
+     * size.
+     */
+    public void put(String key, Map<String, byte[]> artifacts) throws IOException {
+        artifacts.keySet().forEach(CompilationCache::name);
+        Path temporary = directory.resolve(TEMPORARY + UUID.randomUUID());
+        Files.createDirectory(temporary);
+        long bytes = 0;
+        for (Map.Entry<String, byte[]> artifact : artifacts.entrySet()) {
+            Files.write(temporary.resolve(artifact.getKey()), artifact.getValue());
+            bytes += artifact.getValue().length;
+        }
+        try {
+            Files.move(temporary, directory.resolve(key), StandardCopyOption.ATOMIC_MOVE);
+            size.addAndGet(bytes);
+        } catch (FileAlreadyExistsException | DirectoryNotEmptyException | AtomicMoveNotSupportedException e) {
+            delete(temporary);
+        }
+        if (puts.getAndIncrement() % RESYNC == 0 || size.get() > maxBytes) {
+            evict();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private void evict() throws IOException {
+        try (FileChannel channel = FileChannel.open(directory.resolve(LOCK), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = channel.tryLock()) {
+            if (lock == null) {
+                return; //another process is evicting
+            }
+            List<Path> entries = new ArrayList<>();
+            long total = 0;
+            Instant abandoned = Instant.now().minus(ABANDONED);
+            try (Stream<Path> list = Files.list(directory)) {
+                for (Path path : (Iterable<Path>) list::iterator) {
+                    String name = path.getFileName().toString();
+                    if (name.startsWith(TEMPORARY)) {
+                        if (lastModified(path).toInstant().isBefore(abandoned)) {
+                            delete(path);
+                        }
+                    } else if (!name.equals(LOCK)) {
+                        entries.add(path);
+                        total += size(path);
+                    }
+                }
+            }
+            if (total <= maxBytes) {
+                size.set(total);
+                return;
+            }
+            entries.sort(Comparator.comparing(CompilationCache::lastModified));
+            for (Path entry : entries) {
+                if (total <= maxBytes) {
+                    break;
+                }
+                long bytes = size(entry);
+                Path removed = directory.resolve(TEMPORARY + UUID.randomUUID());
+                try {
+                    Files.move(entry, removed, StandardCopyOption.ATOMIC_MOVE);
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                delete(removed);
+                total -= bytes;
+            }
+            size.set(total);
+        } catch (OverlappingFileLockException e) {
+            //another thread of this process is evicting
+        }
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static long size(Path entry) throws IOException {
+        long size = 0;
+        try (Stream<Path> files = Files.list(entry)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                size += Files.size(file);
+            }
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+        return size;
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(Character.forDigit(b >> 4 & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static String name(String artifact) {
+        if (artifact.isEmpty() || artifact.contains("/") || artifact.contains("\\") || artifact.startsWith(".")) {
+            throw new IllegalArgumentException("The artifact name " + artifact + " is not a plain file name.");
+        }
+        return artifact;
+    }
+
+}
@@ -0,0 +1,291 @@
+package plc.compiler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps a warm compiler running in the background, so compiling a small
+ * program costs a round trip over a Unix domain socket instead of starting
+ * a JVM. Before accepting connections the daemon compiles a synthetic
+ * corpus, which loads the classes of the pipeline and gets them JIT
+ * compiled.
+ *
+ * <p>A connection sends any number of requests and gets a response to each
+ * in order. A request is the class name, the optimization flag such as
+ * {@code -O1} and the source, and a response is a status byte followed by
+ * the generated Java source, or by the diagnostics one per line if there
+ * were errors. Strings are sent as their length followed by their UTF-8
+ * bytes, and a connection sending a longer string than {@link #MAX_LENGTH}
+ * is closed.</p>
+ *
+ * <p>Every connection is served on a thread of its own, a virtual thread
+ * when the JDK has them and a cached platform thread otherwise.</p>
+ */
+public final class CompilerDaemon implements Closeable {
+
+    private static final byte SUCCESS = 0;
+    private static final byte ERRORS = 1;
+    private static final int WARM_UP = 2000;
+
+    /**
+     * The maximum length of a string in bytes, so a client can't make the
+     * daemon allocate arbitrary amounts of memory.
+     */
+    static final int MAX_LENGTH = 1 << 24;
+
+    private final Path socket;
+    private final ExecutorService executor = newExecutor();
+    private ServerSocketChannel server;
+    private Thread acceptor;
+
+    public CompilerDaemon(Path socket) {
+        this.socket = socket;
+    }
+
+    /**
+     * Runs a daemon at the given socket path until the process is killed.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length != 1) {
+            System.err.println("Usage: CompilerDaemon <socket>");
+            System.exit(2);
+        }
+        CompilerDaemon daemon = new CompilerDaemon(Paths.get(args[0]));
+        Runtime.getRuntime().addShutdownHook(new Thread(daemon::close));
+        daemon.start(WARM_UP);
+        daemon.acceptor.join();
+    }
+
+    /**
+     * Compiles the given number of synthetic programs, then starts
+     * accepting connections. A stale socket file left by a daemon which
+     * didn't exit cleanly is replaced.
+     */
+    public void start(int warmUp) throws IOException {
+        warmUp(warmUp);
+        Files.deleteIfExists(socket);
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socket));
+        acceptor = new Thread(this::accept, "compiler-daemon");
+        acceptor.start();
+    }
+
+    private static void warmUp(int programs) {
+        for (int i = 0; i < programs; i++) {
+            String source = String.join(System.lineSeparator(),
+                    "LET i : INTEGER = 0;",
+                    "LET d : DECIMAL = " + i + ".5;",
+                    "LET s : STRING = \"\";",
+                    "WHILE i != " + i % 16 + " DO",
+                    "    IF i == " + i % 4 + " THEN",
+                    "        s = s + \"x\";",
+                    "    ELSE",
+                    "        d = d * 2.0 + i;",
+                    "    END",
+                    "    i = i + 1;",
+                    "END",
+                    "PRINT(s);",
+                    "PRINT(d);"
+            );
+            BatchCompiler.generate(source, "Main", PassManager.Level.values()[i % PassManager.Level.values().length], new Diagnostics());
+        }
+    }
+
+    private void accept() {
+        while (server.isOpen()) {
+            try {
+                SocketChannel channel = server.accept();
+                executor.execute(() -> serve(channel));
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                System.err.println("Failed to accept a connection: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void serve(SocketChannel channel) {
+        try (channel;
+             DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            while (true) {
+                String className;
+                try {
+                    className = read(input);
+                } catch (EOFException e) {
+                    return; //the client closed the connection
+                }
+                PassManager.Level level = PassManager.Level.parse(read(input));
+                String source = read(input);
+                Diagnostics diagnostics = new Diagnostics();
+                byte[] code = BatchCompiler.generate(source, className, level, diagnostics);
+                if (code != null) {
+                    output.writeByte(SUCCESS);
+                    output.writeInt(code.length);
+                    output.write(code);
+                } else {
+                    StringBuilder errors = new StringBuilder();
+                    diagnostics.getDiagnostics().forEach(diagnostic -> errors.append(diagnostic).append(System.lineSeparator()));
+                    output.writeByte(ERRORS);
+                    write(output, errors.toString());
+                }
+                output.flush();
+            }
+        } catch (IOException | RuntimeException e) {
+            //one failing connection mustn't take the others down
+            System.err.println("Failed to serve a connection: " + e);
+        }
+    }
+
+    private static String read(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0 || length > MAX_LENGTH) {
+            throw new IOException("The length " + length + " is not between 0 and " + MAX_LENGTH + ".");
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void write(DataOutputStream output, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Stops accepting connections and removes the socket file. Connections
+     * being served are finished first.
+     */
+    @Override
+    public void close() {
+        try {
+            if (server != null) {
+                server.close();
+            }
+            Files.deleteIfExists(socket);
+        } catch (IOException e) {
+            System.err.println("Failed to close the daemon: " + e.getMessage());
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Returns an executor starting a virtual thread per task, which is
+     * looked up reflectively since it only exists from JDK 21, or a cached
+     * pool of daemon threads.
+     */
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "compiler-daemon-connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * A connection to a daemon, sending requests one at a time.
+     */
+    public static final class Client implements Closeable {
+
+        private final SocketChannel channel;
+        private final DataInputStream input;
+        private final DataOutputStream output;
+
+        public Client(Path socket) throws IOException {
+            this.channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+            this.input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            this.output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+        }
+
+        /**
+         * Compiles source files through the daemon at the given socket
+         * path, writing each class next to its source file. Diagnostics are
+         * printed to standard error, and the exit status is 1 if any file
+         * had errors.
+         */
+        public static void main(String[] args) throws IOException {
+            if (args.length < 3) {
+                System.err.println("Usage: CompilerDaemon$Client <socket> <-O0|-O1|-O2> <file>...");
+                System.exit(2);
+            }
+            PassManager.Level level = PassManager.Level.parse(args[1]);
+            boolean errors = false;
+            try (Client client = new Client(Paths.get(args[0]))) {
+                for (int i = 2; i < args.length; i++) {
+                    Path source = Paths.get(args[i]);
+                    String className = BatchCompiler.getClassName(source);
+                    Response response = client.compile(className, level, new String(Files.readAllBytes(source), StandardCharsets.UTF_8));
+                    if (response.isSuccess()) {
+                        Files.write(source.resolveSibling(className + ".java"), response.getOutput().getBytes(StandardCharsets.UTF_8));
+                    } else {
+                        System.err.print(source + ":" + System.lineSeparator() + response.getOutput());
+                        errors = true;
+                    }
+                }
+            }
+            System.exit(errors ? 1 : 0);
+        }
+
+        public Response compile(String className, PassManager.Level level, String source) throws IOException {
+            write(output, className);
+            write(output, "-" + level.name());
+            write(output, source);
+            output.flush();
+            byte status = input.readByte();
+            return new Response(status == SUCCESS, read(input));
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+    }
+
+    public static final class Response {
+
+        private final boolean success;
+        private final String output;
+
+        private Response(boolean success, String output) {
+            this.success = success;
+            this.output = output;
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+
+        /**
+         * Returns the generated Java source, or the diagnostics one per line
+         * if there were errors.
+         */
+        public String getOutput() {
+            return output;
+        }
+
+    }
+
+}
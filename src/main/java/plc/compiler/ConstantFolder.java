@@ -0,0 +1,109 @@
+package plc.compiler;
+
+/**
+ * Folds binary expressions and groups whose operands are literals into a
+ * single literal. Folding is only done when the result is exactly what the
+ * generated Java would compute at runtime: {@code int} arithmetic wraps on
+ * overflow, mixed operands are widened to {@code double}, and anything which
+ * would throw (integer division by zero) or has no Java literal (NaN and the
+ * infinities) is left alone.
+ */
+public final class ConstantFolder extends Rewriter {
+
+    @Override
+    public Ast visit(Ast.Expression.Group ast) {
+        Ast.Expression expression = visit(ast.getExpression());
+        if (expression instanceof Ast.Expression.Literal) {
+            return expression;
+        }
+        return expression == ast.getExpression() ? ast : new Ast.Expression.Group(typeOf(ast), expression);
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Binary ast) {
+        Ast.Expression left = visit(ast.getLeft());
+        Ast.Expression right = visit(ast.getRight());
+        if (left instanceof Ast.Expression.Literal && right instanceof Ast.Expression.Literal) {
+            Object value = fold(ast.getOperator(), ((Ast.Expression.Literal) left).getValue(), ((Ast.Expression.Literal) right).getValue());
+            if (value != null) {
+                return literal(value);
+            }
+        }
+        if (left == ast.getLeft() && right == ast.getRight()) {
+            return ast;
+        }
+        return new Ast.Expression.Binary(typeOf(ast), ast.getOperator(), left, right);
+    }
+
+    /**
+     * Returns the value of {@code left operator right} as Java evaluates it,
+     * or {@code null} if the expression can't be folded.
+     */
+    static Object fold(String operator, Object left, Object right) {
+        if (left instanceof Integer && right instanceof Integer) {
+            int l = (Integer) left;
+            int r = (Integer) right;
+            switch (operator) {
+                case "+": return l + r;
+                case "-": return l - r;
+                case "*": return l * r;
+                case "/": return r == 0 ? null : l / r;
+                case "==": return l == r;
+                case "!=": return l != r;
+                default: return null;
+            }
+        } else if (isNumber(left) && isNumber(right)) {
+            double l = ((Number) left).doubleValue();
+            double r = ((Number) right).doubleValue();
+            switch (operator) {
+                case "+": return finite(l + r);
+                case "-": return finite(l - r);
+                case "*": return finite(l * r);
+                case "/": return finite(l / r);
+                case "==": return l == r;
+                case "!=": return l != r;
+                default: return null;
+            }
+        } else if (operator.equals("+") && (left instanceof String || right instanceof String)) {
+            if (isConstant(left) && isConstant(right)) {
+                return String.valueOf(left) + right;
+            }
+        } else if (left instanceof Boolean && right instanceof Boolean
+                || left instanceof String && right instanceof String) {
+            //constant strings are interned, so == compares their contents
+            switch (operator) {
+                case "==": return left.equals(right);
+                case "!=": return !left.equals(right);
+                default: return null;
+            }
+        }
+        return null;
+    }
+
+    static Ast.Expression.Literal literal(Object value) {
+        if (value instanceof Integer) {
+            return new Ast.Expression.Literal(Stdlib.Type.INTEGER, value);
+        } else if (value instanceof Double) {
+            return new Ast.Expression.Literal(Stdlib.Type.DECIMAL, value);
+        } else if (value instanceof String) {
+            return new Ast.Expression.Literal(Stdlib.Type.STRING, value);
+        } else if (value instanceof Boolean) {
+            return new Ast.Expression.Literal(Stdlib.Type.BOOLEAN, value);
+        } else {
+            throw new AssertionError(value.getClass());
+        }
+    }
+
+    private static boolean isNumber(Object value) {
+        return value instanceof Integer || value instanceof Double;
+    }
+
+    private static boolean isConstant(Object value) {
+        return isNumber(value) || value instanceof String || value instanceof Boolean;
+    }
+
+    private static Double finite(double value) {
+        return Double.isFinite(value) ? value : null;
+    }
+
+}
@@ -0,0 +1,141 @@
+package plc.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The constant pool of a class file being written. Every method returns the
+ * index of the requested entry, adding it first if it isn't in the pool yet,
+ * so each constant is stored once.
+ */
+final class ConstantPool {
+
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int DOUBLE = 6;
+    private static final int CLASS = 7;
+    private static final int STRING = 8;
+    private static final int FIELD = 9;
+    private static final int METHOD = 10;
+    private static final int NAME_AND_TYPE = 12;
+    private static final int METHOD_HANDLE = 15;
+    private static final int INVOKE_DYNAMIC = 18;
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream output = new DataOutputStream(bytes);
+    private final Map<String, Integer> indices = new HashMap<>();
+    private int count = 1;
+
+    public int utf8(String value) {
+        return add(UTF8 + ":" + value, 1, () -> output.writeUTF(value));
+    }
+
+    public int integer(int value) {
+        return add(INTEGER + ":" + value, 1, () -> output.writeInt(value));
+    }
+
+    /**
+     * Adds a double, which takes up two indices.
+     */
+    public int doubleValue(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        return add(DOUBLE + ":" + bits, 2, () -> output.writeLong(bits));
+    }
+
+    /**
+     * Adds a class given its internal name, such as {@code java/lang/String}.
+     */
+    public int classRef(String name) {
+        int utf8 = utf8(name);
+        return add(CLASS + ":" + name, 1, () -> output.writeShort(utf8));
+    }
+
+    public int string(String value) {
+        int utf8 = utf8(value);
+        return add(STRING + ":" + value, 1, () -> output.writeShort(utf8));
+    }
+
+    public int nameAndType(String name, String descriptor) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        return add(NAME_AND_TYPE + ":" + name + ":" + descriptor, 1, () -> {
+            output.writeShort(nameIndex);
+            output.writeShort(descriptorIndex);
+        });
+    }
+
+    public int fieldRef(String owner, String name, String descriptor) {
+        return member(FIELD, owner, name, descriptor);
+    }
+
+    public int methodRef(String owner, String name, String descriptor) {
+        return member(METHOD, owner, name, descriptor);
+    }
+
+    private int member(int tag, String owner, String name, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int nameAndType = nameAndType(name, descriptor);
+        return add(tag + ":" + owner + "." + name + ":" + descriptor, 1, () -> {
+            output.writeShort(ownerIndex);
+            output.writeShort(nameAndType);
+        });
+    }
+
+    /**
+     * Adds a handle to a static method, as used by bootstrap methods.
+     */
+    public int staticMethodHandle(String owner, String name, String descriptor) {
+        int method = methodRef(owner, name, descriptor);
+        return add(METHOD_HANDLE + ":" + method, 1, () -> {
+            output.writeByte(6); //REF_invokeStatic
+            output.writeShort(method);
+        });
+    }
+
+    public int invokeDynamic(int bootstrap, String name, String descriptor) {
+        int nameAndType = nameAndType(name, descriptor);
+        return add(INVOKE_DYNAMIC + ":" + bootstrap + ":" + name + ":" + descriptor, 1, () -> {
+            output.writeShort(bootstrap);
+            output.writeShort(nameAndType);
+        });
+    }
+
+    /**
+     * Writes the entry count and the entries, as they appear in the class
+     * file.
+     */
+    public void write(DataOutputStream output) throws IOException {
+        output.writeShort(count);
+        bytes.writeTo(output);
+    }
+
+    private int add(String key, int size, Entry entry) {
+        Integer index = indices.get(key);
+        if (index == null) {
+            index = count;
+            if (index + size > 0xFFFF) {
+                throw new IllegalStateException("The constant pool is limited to 65535 entries.");
+            }
+            try {
+                output.writeByte(Integer.parseInt(key.substring(0, key.indexOf(':'))));
+                entry.write();
+            } catch (IOException e) {
+                throw new AssertionError(e); //writing to memory
+            }
+            indices.put(key, index);
+            count += size;
+        }
+        return index;
+    }
+
+    @FunctionalInterface
+    private interface Entry {
+
+        void write() throws IOException;
+
+    }
+
+}
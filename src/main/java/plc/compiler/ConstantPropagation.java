@@ -0,0 +1,235 @@
+package plc.compiler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sparse conditional constant propagation (Wegman and Zadeck). Values start
+ * out unknown and only blocks reachable through edges whose branch condition
+ * isn't known to go the other way are evaluated, so constants flowing around
+ * loops and branches which are never taken are both found. Constant values
+ * replace their instructions, branches on constants become jumps and the
+ * unreachable blocks are removed.
+ */
+public final class ConstantPropagation implements IrPass {
+
+    /**
+     * The lattice value of instructions which aren't constant. Instructions
+     * which haven't been evaluated yet have no lattice value.
+     */
+    private static final Object VARYING = new Object();
+
+    private final Map<Ir.Value, Object> values = new HashMap<>();
+    private final Set<Ir.Value> literals = new HashSet<>();
+    private final Set<Ir.Block> reachable = new HashSet<>();
+    private final Set<List<Ir.Block>> edges = new HashSet<>();
+    private final Map<Ir.Value, List<Ir.Instruction>> users = new HashMap<>();
+    private final Map<Ir.Value, List<Ir.Block>> branches = new HashMap<>();
+    private final Deque<Ir.Block> blockWorklist = new ArrayDeque<>();
+    private final Deque<Ir.Instruction> valueWorklist = new ArrayDeque<>();
+
+    @Override
+    public String getName() {
+        return "sccp";
+    }
+
+    @Override
+    public void run(Ir ir) {
+        values.clear();
+        literals.clear();
+        reachable.clear();
+        edges.clear();
+        users.clear();
+        branches.clear();
+        for (Ir.Block block : ir.getBlocks()) {
+            for (Ir.Phi phi : block.getPhis()) {
+                phi.getOperands().forEach(operand -> users.computeIfAbsent(operand, o -> new ArrayList<>()).add(phi));
+            }
+            for (Ir.Instruction instruction : block.getInstructions()) {
+                instruction.getOperands().forEach(operand -> users.computeIfAbsent(operand, o -> new ArrayList<>()).add(instruction));
+            }
+            if (block.getTerminator() instanceof Ir.Branch) {
+                branches.computeIfAbsent(((Ir.Branch) block.getTerminator()).getCondition(), c -> new ArrayList<>()).add(block);
+            }
+        }
+        reach(ir.getEntry());
+        while (!blockWorklist.isEmpty() || !valueWorklist.isEmpty()) {
+            while (!blockWorklist.isEmpty()) {
+                Ir.Block block = blockWorklist.remove();
+                block.getPhis().forEach(this::evaluate);
+                block.getInstructions().forEach(this::evaluate);
+                evaluate(block);
+            }
+            while (!valueWorklist.isEmpty()) {
+                Ir.Instruction instruction = valueWorklist.remove();
+                for (Ir.Instruction user : users.getOrDefault(instruction, Collections.emptyList())) {
+                    if (reachable.contains(user.getBlock())) {
+                        evaluate(user);
+                    }
+                }
+                for (Ir.Block block : branches.getOrDefault(instruction, Collections.emptyList())) {
+                    if (reachable.contains(block)) {
+                        evaluate(block);
+                    }
+                }
+            }
+        }
+        rewrite(ir);
+    }
+
+    private void reach(Ir.Block block) {
+        if (reachable.add(block)) {
+            blockWorklist.add(block);
+        }
+    }
+
+    private void follow(Ir.Block block, Ir.Block successor) {
+        if (edges.add(List.of(block, successor))) {
+            if (!reachable.contains(successor)) {
+                reach(successor);
+            } else {
+                //a new edge into a reachable block adds an operand to its phis
+                successor.getPhis().forEach(this::evaluate);
+            }
+        }
+    }
+
+    private void evaluate(Ir.Block block) {
+        Ir.Terminator terminator = block.getTerminator();
+        if (terminator instanceof Ir.Branch) {
+            Object condition = get(((Ir.Branch) terminator).getCondition());
+            if (condition == null) {
+                return;
+            } else if (condition == VARYING) {
+                follow(block, ((Ir.Branch) terminator).getThenBlock());
+                follow(block, ((Ir.Branch) terminator).getElseBlock());
+            } else {
+                follow(block, (Boolean) condition ? ((Ir.Branch) terminator).getThenBlock() : ((Ir.Branch) terminator).getElseBlock());
+            }
+        } else {
+            for (Ir.Block successor : terminator.getSuccessors()) {
+                follow(block, successor);
+            }
+        }
+    }
+
+    private void evaluate(Ir.Instruction instruction) {
+        Object value;
+        if (instruction instanceof Ir.Phi) {
+            value = null;
+            List<Ir.Block> predecessors = instruction.getBlock().getPredecessors();
+            for (int i = 0; i < predecessors.size(); i++) {
+                if (edges.contains(List.of(predecessors.get(i), instruction.getBlock()))) {
+                    value = meet(value, get(instruction.getOperands().get(i)));
+                }
+            }
+        } else if (instruction instanceof Ir.Binary) {
+            Object left = get(((Ir.Binary) instruction).getLeft());
+            Object right = get(((Ir.Binary) instruction).getRight());
+            if (left == VARYING || right == VARYING) {
+                value = VARYING;
+            } else if (left == null || right == null) {
+                value = null;
+            } else {
+                value = fold((Ir.Binary) instruction, left, right);
+            }
+        } else if (instruction instanceof Ir.Convert) {
+            Object operand = get(((Ir.Convert) instruction).getValue());
+            value = operand instanceof Integer ? (Object) ((Integer) operand).doubleValue() : operand;
+        } else {
+            value = VARYING;
+        }
+        if (value != null && !value.equals(values.get(instruction))) {
+            values.put(instruction, value);
+            valueWorklist.add(instruction);
+        }
+    }
+
+    /**
+     * Folds like the {@link ConstantFolder}, except for strings: strings
+     * computed at runtime aren't interned, so {@code ==} on them compares
+     * identity and can't be known at compile time. For the same reason a
+     * concatenation is only folded if Java would fold it, when both operands
+     * are computed from literals alone; a variable known to hold a constant
+     * still concatenates into a new string.
+     */
+    private Object fold(Ir.Binary binary, Object left, Object right) {
+        if ((binary.getOperator().equals("==") || binary.getOperator().equals("!="))
+                && !(isPrimitive(binary.getLeft()) && isPrimitive(binary.getRight()))) {
+            return VARYING;
+        }
+        boolean literal = isLiteral(binary.getLeft()) && isLiteral(binary.getRight());
+        if (binary.getType() == Stdlib.Type.STRING && !literal) {
+            return VARYING;
+        }
+        Object value = ConstantFolder.fold(binary.getOperator(), left, right);
+        if (value != null && literal) {
+            literals.add(binary);
+        }
+        return value != null ? value : VARYING;
+    }
+
+    private boolean isLiteral(Ir.Value value) {
+        return value instanceof Ir.Constant ? ((Ir.Constant) value).isLiteral() : literals.contains(value);
+    }
+
+    private static boolean isPrimitive(Ir.Value value) {
+        return value.getType() == Stdlib.Type.BOOLEAN || value.getType() == Stdlib.Type.INTEGER || value.getType() == Stdlib.Type.DECIMAL;
+    }
+
+    private static Object meet(Object left, Object right) {
+        if (left == null) {
+            return right;
+        } else if (right == null) {
+            return left;
+        }
+        return left.equals(right) ? left : VARYING;
+    }
+
+    private Object get(Ir.Value value) {
+        if (value instanceof Ir.Constant) {
+            return ((Ir.Constant) value).getValue();
+        }
+        return values.get(value);
+    }
+
+    private void rewrite(Ir ir) {
+        Map<Ir.Value, Ir.Value> replacements = new HashMap<>();
+        for (Ir.Block block : ir.getBlocks()) {
+            if (!reachable.contains(block)) {
+                continue;
+            }
+            block.getPhis().removeIf(phi -> constant(phi, replacements));
+            block.getInstructions().removeIf(instruction -> constant(instruction, replacements));
+        }
+        ir.replace(replacements);
+        for (Ir.Block block : ir.getBlocks()) {
+            if (reachable.contains(block) && block.getTerminator() instanceof Ir.Branch) {
+                Ir.Branch branch = (Ir.Branch) block.getTerminator();
+                if (branch.getCondition() instanceof Ir.Constant) {
+                    boolean condition = (Boolean) ((Ir.Constant) branch.getCondition()).getValue();
+                    block.setTerminator(new Ir.Jump(condition ? branch.getThenBlock() : branch.getElseBlock()));
+                }
+            }
+        }
+        ir.removeUnreachable();
+        ir.removeTrivialPhis();
+    }
+
+    private boolean constant(Ir.Instruction instruction, Map<Ir.Value, Ir.Value> replacements) {
+        Object value = values.get(instruction);
+        if (value == null || value == VARYING) {
+            return false;
+        }
+        replacements.put(instruction, new Ir.Constant(instruction.getType(), value, literals.contains(instruction)));
+        return true;
+    }
+
+}
@@ -0,0 +1,104 @@
+package plc.compiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Removes code which can never run or whose result is never used. An
+ * {@code IF} on a literal condition is replaced by the arm it always takes, a
+ * {@code WHILE FALSE} is removed, and a {@code LET} whose variable is never
+ * read is removed along with the assignments to it, provided none of them
+ * have side effects. Best run after the {@link ConstantFolder}.
+ */
+public final class DeadCodeEliminator extends Rewriter {
+
+    @Override
+    protected List<Ast.Statement> visit(List<Ast.Statement> statements) {
+        List<Ast.Statement> rewritten = super.visit(statements);
+        List<Ast.Statement> result = new ArrayList<>(rewritten);
+        boolean changed = false;
+        //backwards, so removing a LET can make the ones it read from unused
+        for (int i = result.size() - 1; i >= 0; i--) {
+            if (result.get(i) instanceof Ast.Statement.Declaration) {
+                Ast.Statement.Declaration declaration = (Ast.Statement.Declaration) result.get(i);
+                List<Ast.Statement> rest = result.subList(i + 1, result.size());
+                if (declaration.getValue().map(Rewriter::isPure).orElse(true) && isUnread(declaration.getName(), rest)) {
+                    List<Ast.Statement> remaining = new AssignmentRemover(declaration.getName()).visit(new ArrayList<>(rest));
+                    rest.clear();
+                    rest.addAll(remaining);
+                    result.remove(i);
+                    changed = true;
+                }
+            }
+        }
+        return changed ? result : rewritten;
+    }
+
+    @Override
+    protected void rewrite(Ast.Statement ast, List<Ast.Statement> statements) {
+        Ast.Statement statement = visit(ast);
+        if (statement instanceof Ast.Statement.If && isLiteral(((Ast.Statement.If) statement).getCondition())) {
+            Ast.Statement.If branch = (Ast.Statement.If) statement;
+            boolean condition = (Boolean) ((Ast.Expression.Literal) branch.getCondition()).getValue();
+            List<Ast.Statement> taken = condition ? branch.getThenStatements() : branch.getElseStatements();
+            if (taken.stream().noneMatch(s -> s instanceof Ast.Statement.Declaration)) {
+                statements.addAll(taken);
+            } else if (condition && branch.getElseStatements().isEmpty()) {
+                statements.add(statement);
+            } else {
+                //keep the block so its declarations stay scoped
+                statements.add(new Ast.Statement.If(ConstantFolder.literal(true), taken, Collections.emptyList()));
+            }
+        } else if (statement instanceof Ast.Statement.While && isLiteral(((Ast.Statement.While) statement).getCondition())
+                && !(Boolean) ((Ast.Expression.Literal) ((Ast.Statement.While) statement).getCondition()).getValue()) {
+            return;
+        } else {
+            statements.add(statement);
+        }
+    }
+
+    private static boolean isLiteral(Ast.Expression condition) {
+        return condition instanceof Ast.Expression.Literal && ((Ast.Expression.Literal) condition).getValue() instanceof Boolean;
+    }
+
+    /**
+     * Returns true if no statement reads the variable and every assignment to
+     * it can be removed without losing a side effect.
+     */
+    private static boolean isUnread(String name, List<Ast.Statement> statements) {
+        Set<String> reads = new HashSet<>();
+        for (Ast.Statement statement : statements) {
+            collectReads(statement, reads);
+        }
+        if (reads.contains(name)) {
+            return false;
+        }
+        AssignmentRemover remover = new AssignmentRemover(name);
+        remover.visit(statements);
+        return remover.pure;
+    }
+
+    private static final class AssignmentRemover extends Rewriter {
+
+        private final String name;
+        private boolean pure = true;
+
+        private AssignmentRemover(String name) {
+            this.name = name;
+        }
+
+        @Override
+        protected void rewrite(Ast.Statement ast, List<Ast.Statement> statements) {
+            if (ast instanceof Ast.Statement.Assignment && ((Ast.Statement.Assignment) ast).getName().equals(name)) {
+                pure &= isPure(((Ast.Statement.Assignment) ast).getExpression());
+            } else {
+                super.rewrite(ast, statements);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,47 @@
+package plc.compiler;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Removes instructions whose values are never used. Instructions with side
+ * effects and branch conditions are live, as is every operand of a live
+ * instruction; everything else, including phis only used by each other
+ * around a loop, is removed.
+ */
+public final class DeadInstructionElimination implements IrPass {
+
+    @Override
+    public String getName() {
+        return "dce";
+    }
+
+    @Override
+    public void run(Ir ir) {
+        Set<Ir.Value> live = new HashSet<>();
+        Deque<Ir.Value> worklist = new ArrayDeque<>();
+        for (Ir.Block block : ir.getBlocks()) {
+            for (Ir.Instruction instruction : block.getInstructions()) {
+                if (instruction.hasSideEffects()) {
+                    worklist.add(instruction);
+                }
+            }
+            if (block.getTerminator() instanceof Ir.Branch) {
+                worklist.add(((Ir.Branch) block.getTerminator()).getCondition());
+            }
+        }
+        while (!worklist.isEmpty()) {
+            Ir.Value value = worklist.remove();
+            if (value instanceof Ir.Instruction && live.add(value)) {
+                worklist.addAll(((Ir.Instruction) value).getOperands());
+            }
+        }
+        for (Ir.Block block : ir.getBlocks()) {
+            block.getPhis().removeIf(phi -> !live.contains(phi));
+            block.getInstructions().removeIf(instruction -> !live.contains(instruction));
+        }
+    }
+
+}
@@ -0,0 +1,105 @@
+package plc.compiler;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Removes stores whose value is never read. A backward liveness analysis
+ * finds, after each statement, the variables which may still be read before
+ * being assigned again; an assignment to a variable which isn't live is
+ * removed, and so is the initializer of such a {@code LET}, provided the
+ * value has no side effects.
+ *
+ * <p>The liveness computed is strong: a removed store doesn't make the
+ * variables it read live. Loops are iterated to a fixed point, since their
+ * body may read values stored by the previous iteration.</p>
+ */
+public final class DeadStoreEliminator extends Rewriter {
+
+    @Override
+    public Ast visit(Ast.Source ast) {
+        List<Ast.Statement> statements = eliminate(ast.getStatements(), new HashSet<>());
+        return statements == ast.getStatements() ? ast : new Ast.Source(statements);
+    }
+
+    /**
+     * Removes the dead stores from a block, given the variables live after
+     * it, which are updated to those live before it. Returns the same list if
+     * nothing was removed.
+     */
+    private List<Ast.Statement> eliminate(List<Ast.Statement> statements, Set<String> live) {
+        List<Ast.Statement> rewritten = new ArrayList<>(statements);
+        boolean changed = false;
+        for (int i = statements.size() - 1; i >= 0; i--) {
+            Ast.Statement statement = statements.get(i);
+            Ast.Statement result = eliminate(statement, live);
+            if (result != statement) {
+                changed = true;
+                if (result == null) {
+                    rewritten.remove(i);
+                } else {
+                    rewritten.set(i, result);
+                }
+            }
+        }
+        return changed ? rewritten : statements;
+    }
+
+    /**
+     * Returns the statement without its dead stores, or {@code null} if the
+     * whole statement is a dead store.
+     */
+    private Ast.Statement eliminate(Ast.Statement ast, Set<String> live) {
+        if (ast instanceof Ast.Statement.Assignment) {
+            Ast.Statement.Assignment assignment = (Ast.Statement.Assignment) ast;
+            if (!live.contains(assignment.getName()) && isPure(assignment.getExpression())) {
+                return null;
+            }
+            live.remove(assignment.getName());
+            collectReads(assignment.getExpression(), live);
+        } else if (ast instanceof Ast.Statement.Declaration) {
+            Ast.Statement.Declaration declaration = (Ast.Statement.Declaration) ast;
+            boolean read = live.remove(declaration.getName());
+            if (declaration.getValue().isPresent()) {
+                if (!read && isPure(declaration.getValue().get())) {
+                    return new Ast.Statement.Declaration(declaration.getName(), declaration.getType(), Optional.empty());
+                }
+                collectReads(declaration.getValue().get(), live);
+            }
+        } else if (ast instanceof Ast.Statement.Expression) {
+            collectReads(ast, live);
+        } else if (ast instanceof Ast.Statement.If) {
+            Ast.Statement.If branch = (Ast.Statement.If) ast;
+            Set<String> elseLive = new HashSet<>(live);
+            List<Ast.Statement> thenStatements = eliminate(branch.getThenStatements(), live);
+            List<Ast.Statement> elseStatements = eliminate(branch.getElseStatements(), elseLive);
+            live.addAll(elseLive);
+            collectReads(branch.getCondition(), live);
+            if (thenStatements != branch.getThenStatements() || elseStatements != branch.getElseStatements()) {
+                return new Ast.Statement.If(branch.getCondition(), thenStatements, elseStatements);
+            }
+        } else if (ast instanceof Ast.Statement.While) {
+            Ast.Statement.While loop = (Ast.Statement.While) ast;
+            //the condition is evaluated before the body and before leaving
+            Set<String> header = new HashSet<>(live);
+            collectReads(loop.getCondition(), header);
+            List<Ast.Statement> statements;
+            while (true) {
+                Set<String> body = new HashSet<>(header);
+                statements = eliminate(loop.getStatements(), body);
+                if (!header.addAll(body)) {
+                    break;
+                }
+            }
+            live.addAll(header);
+            if (statements != loop.getStatements()) {
+                return new Ast.Statement.While(loop.getCondition(), statements);
+            }
+        }
+        return ast;
+    }
+
+}
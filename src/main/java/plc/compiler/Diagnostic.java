@@ -0,0 +1,69 @@
+package plc.compiler;
+
+/**
+ * A single compile error recorded by {@link Diagnostics}. Unlike
+ * {@link ParseException} and {@link AnalysisException} this is a plain value
+ * object, so recording one never captures a stack trace.
+ */
+public final class Diagnostic {
+
+    public enum Phase {
+        PARSE,
+        ANALYSIS,
+
+        /**
+         * The source couldn't be read or the output couldn't be written.
+         */
+        IO,
+
+        /**
+         * The compiler failed on the source, which is a bug in the compiler
+         * rather than an error in the source.
+         */
+        INTERNAL
+    }
+
+    private final Phase phase;
+    private final String message;
+    private final int index;
+
+    public Diagnostic(Phase phase, String message, int index) {
+        this.phase = phase;
+        this.message = message;
+        this.index = index;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Returns the character offset into the source, or {@code -1} if the
+     * error could not be tied to a position.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Diagnostic && phase == ((Diagnostic) obj).phase
+                && message.equals(((Diagnostic) obj).message)
+                && index == ((Diagnostic) obj).index;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * phase.hashCode() + message.hashCode()) + index;
+    }
+
+    @Override
+    public String toString() {
+        return phase + "=`" + message + "`@" + index;
+    }
+
+}
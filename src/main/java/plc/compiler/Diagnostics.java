@@ -0,0 +1,46 @@
+package plc.compiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects every error found while parsing and analyzing a program instead of
+ * stopping at the first one. Pass the same instance to the {@link Parser} and
+ * {@link Analyzer} so analysis errors can be reported at the offset of the
+ * statement the parser produced.
+ */
+public final class Diagnostics {
+
+    private final List<Diagnostic> diagnostics = new ArrayList<>();
+    private final Map<Ast, Integer> positions = new IdentityHashMap<>();
+
+    public void report(Diagnostic.Phase phase, String message, int index) {
+        diagnostics.add(new Diagnostic(phase, message, index));
+    }
+
+    /**
+     * Records the source offset of a parsed statement.
+     */
+    public void locate(Ast ast, int index) {
+        positions.put(ast, index);
+    }
+
+    /**
+     * Returns the source offset recorded for the given AST, or {@code -1}.
+     */
+    public int getIndex(Ast ast) {
+        return positions.getOrDefault(ast, -1);
+    }
+
+    public boolean hasErrors() {
+        return !diagnostics.isEmpty();
+    }
+
+    public List<Diagnostic> getDiagnostics() {
+        return Collections.unmodifiableList(diagnostics);
+    }
+
+}
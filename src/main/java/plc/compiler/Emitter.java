@@ -0,0 +1,265 @@
+package plc.compiler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The output of the {@link Generator}, encoded as UTF-8 into a growable byte
+ * buffer. Fragments are copied straight into the buffer, so writing a
+ * keyword or an integer allocates nothing, and line breaks with their
+ * indentation are copied from cached arrays.
+ *
+ * <p>An emitter with a sink writes the buffer out in chunks of about
+ * {@value #CHUNK} bytes, and when it is flushed. The buffer is only drained
+ * between fragments, so a chunk never ends in the middle of a character.
+ * An emitter without a sink keeps everything in memory.</p>
+ *
+ * <p>Emitters aren't thread safe, but unlike a {@link java.io.PrintWriter}
+ * they don't lock on every write either.</p>
+ */
+public final class Emitter {
+
+    private static final int CHUNK = 1 << 16;
+    private static final byte[] SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private final Sink sink;
+    private byte[] buffer = new byte[256];
+    private int length = 0;
+    private byte[][] newlines = new byte[8][];
+
+    /**
+     * Creates an emitter keeping its output in memory.
+     */
+    public Emitter() {
+        this(null);
+    }
+
+    private Emitter(Sink sink) {
+        this.sink = sink;
+    }
+
+    public static Emitter of(OutputStream output) {
+        return new Emitter(new Sink() {
+            @Override
+            public void write(byte[] bytes, int length) throws IOException {
+                output.write(bytes, 0, length);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                output.flush();
+            }
+        });
+    }
+
+    /**
+     * Creates an emitter writing to a channel, such as a
+     * {@link java.nio.channels.FileChannel}.
+     */
+    public static Emitter of(WritableByteChannel channel) {
+        return new Emitter(new Sink() {
+            @Override
+            public void write(byte[] bytes, int length) throws IOException {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+
+            @Override
+            public void flush() {}
+        });
+    }
+
+    /**
+     * Creates an emitter writing to a character stream, which has to decode
+     * every chunk again and should only be used for compatibility.
+     */
+    public static Emitter of(Writer writer) {
+        return new Emitter(new Sink() {
+            @Override
+            public void write(byte[] bytes, int length) throws IOException {
+                writer.write(new String(bytes, 0, length, StandardCharsets.UTF_8));
+            }
+
+            @Override
+            public void flush() throws IOException {
+                writer.flush();
+            }
+        });
+    }
+
+    public Emitter write(String string) {
+        int size = string.length();
+        reserve(3 * size);
+        byte[] buffer = this.buffer;
+        int length = this.length;
+        for (int i = 0; i < size; i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                buffer[length++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[length++] = (byte) (0xC0 | c >> 6);
+                buffer[length++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < size && Character.isLowSurrogate(string.charAt(i + 1))) {
+                int code = Character.toCodePoint(c, string.charAt(++i));
+                buffer[length++] = (byte) (0xF0 | code >> 18);
+                buffer[length++] = (byte) (0x80 | code >> 12 & 0x3F);
+                buffer[length++] = (byte) (0x80 | code >> 6 & 0x3F);
+                buffer[length++] = (byte) (0x80 | code & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                buffer[length++] = '?'; //unpaired, like String.getBytes
+            } else {
+                buffer[length++] = (byte) (0xE0 | c >> 12);
+                buffer[length++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buffer[length++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        this.length = length;
+        return this;
+    }
+
+    public Emitter write(char c) {
+        if (c < 0x80) {
+            reserve(1);
+            buffer[length++] = (byte) c;
+            return this;
+        }
+        return write(String.valueOf(c));
+    }
+
+    public Emitter write(int value) {
+        if (value == Integer.MIN_VALUE) {
+            return write(Integer.toString(value));
+        }
+        reserve(11);
+        if (value < 0) {
+            buffer[length++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (int power = 10; digits < 10 && value >= power; power *= 10) {
+            digits++;
+        }
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+        return this;
+    }
+
+    /**
+     * Writes the string form of a value, without creating it for strings
+     * and integers.
+     */
+    public Emitter write(Object value) {
+        if (value instanceof String) {
+            return write((String) value);
+        } else if (value instanceof Integer) {
+            return write(((Integer) value).intValue());
+        }
+        return write(String.valueOf(value));
+    }
+
+    /**
+     * Writes a line separator followed by the indentation for the given
+     * level, at four spaces per level.
+     */
+    public Emitter newline(int indent) {
+        if (indent >= newlines.length) {
+            newlines = Arrays.copyOf(newlines, Math.max(2 * newlines.length, indent + 1));
+        }
+        byte[] newline = newlines[indent];
+        if (newline == null) {
+            newline = Arrays.copyOf(SEPARATOR, SEPARATOR.length + 4 * indent);
+            Arrays.fill(newline, SEPARATOR.length, newline.length, (byte) ' ');
+            newlines[indent] = newline;
+        }
+        return write(newline, 0, newline.length);
+    }
+
+    /**
+     * Appends everything written to another emitter, which is left
+     * unchanged.
+     */
+    public Emitter write(Emitter emitter) {
+        return write(emitter.buffer, 0, emitter.length);
+    }
+
+    private Emitter write(byte[] bytes, int offset, int count) {
+        reserve(count);
+        System.arraycopy(bytes, offset, buffer, length, count);
+        length += count;
+        return this;
+    }
+
+    /**
+     * Returns the number of bytes buffered, which for an emitter without a
+     * sink is everything written so far.
+     */
+    public int size() {
+        return length;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * Writes the buffer to the sink and flushes it. An emitter without a
+     * sink is left unchanged.
+     */
+    public void flush() {
+        if (sink != null) {
+            try {
+                drain();
+                sink.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Makes room for the given number of bytes, draining the buffer to the
+     * sink first if it holds a full chunk.
+     */
+    private void reserve(int count) {
+        if (sink != null && length + count > CHUNK && length > 0) {
+            try {
+                drain();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        if (length + count > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(2 * buffer.length, length + count));
+        }
+    }
+
+    private void drain() throws IOException {
+        sink.write(buffer, length);
+        length = 0;
+    }
+
+    private interface Sink {
+
+        void write(byte[] bytes, int length) throws IOException;
+
+        void flush() throws IOException;
+
+    }
+
+}
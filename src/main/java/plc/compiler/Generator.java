@@ -3,94 +3,481 @@ package plc.compiler;
 import javax.print.DocFlavor;
 import java.io.PrintWriter;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 public final class Generator implements Ast.Visitor<Void> {
 
-    private final PrintWriter writer;
+    /**
+     * HotSpot's {@code HugeMethodLimit}, the largest method in bytes it
+     * will JIT compile.
+     */
+    public static final int DEFAULT_METHOD_BUDGET = 8000;
+
+    private static final int PARALLEL_RANGE = 256;
+
+    /**
+     * The number of iterations assumed when sizing the builder of a string
+     * accumulated in a loop, whose actual number isn't known.
+     */
+    private static final int ACCUMULATED_ITERATIONS = 16;
+
+    private final Emitter emitter;
+    private final String className;
     private int indent = 0;
+    private int depth = 0;
+    private int methodBudget = DEFAULT_METHOD_BUDGET;
+    private boolean parallel = false;
+    private StatementCache cache = null;
+    private final Map<String, String> builders = new HashMap<>();
+    private int temporaries = 0;
 
     public Generator(PrintWriter writer) {
-        this.writer = writer;
+        this(writer, "Main");
     }
 
-    private void print(Object... objects) {
-        for (Object object : objects) {
-            if (object instanceof Ast) {
-                visit((Ast) object);
-            } else {
-                writer.write(object.toString());
-            }
-        }
+    /**
+     * Creates a generator naming the class of the program, which may be
+     * qualified by a package, so several programs can be compiled together.
+     */
+    public Generator(PrintWriter writer, String className) {
+        this(Emitter.of(writer), className);
+    }
+
+    /**
+     * Creates a generator writing to an emitter, which is flushed whenever
+     * the outermost visit returns.
+     */
+    public Generator(Emitter emitter, String className) {
+        this.emitter = emitter;
+        this.className = className;
+    }
+
+    /**
+     * Sets the estimated bytecode size above which the top level statements
+     * are split into several methods, or disables splitting if it isn't
+     * positive.
+     */
+    public Generator setMethodBudget(int budget) {
+        this.methodBudget = budget;
+        return this;
+    }
+
+    /**
+     * Sets whether the top level statements of a program are generated in
+     * parallel. The output is the same either way.
+     */
+    public Generator setParallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    /**
+     * Sets the cache remembering the code of the top level statements it
+     * analyzed, or {@code null} to generate every statement again.
+     */
+    public Generator setStatementCache(StatementCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    private void print(String string) {
+        emitter.write(string);
+    }
+
+    private void print(Ast ast) {
+        visit(ast);
     }
 
     private void newline(int indent) {
-        writer.println();
-        for (int i = 0; i < indent; i++) {
-            writer.write("    ");
+        emitter.newline(indent);
+    }
+
+    private Void end() {
+        if (--depth == 0) {
+            emitter.flush();
         }
+        return null;
     }
 
     @Override
     public Void visit(Ast.Source ast) {
+        depth++;
 
         // Source node
-        print("public final class Main {");
-        newline(indent);
-        indent++;
+        int separator = className.lastIndexOf('.');
+        if (separator >= 0) {
+            print("package ");
+            print(className.substring(0, separator));
+            print(";");
+            newline(indent);
+            newline(indent);
+        }
+        print("public final class ");
+        print(className.substring(separator + 1));
+        print(" {");
         newline(indent);
-        print("public static void main(String[] args) {");
         indent++;
 
-        for (Ast.Statement statement : ast.getStatements()) {
+        List<List<Ast.Statement>> methods = partition(ast.getStatements());
+        Map<String, String> fields = methods.size() <= 1 ? Collections.emptyMap() : getSharedVariables(methods);
+        List<List<Emitter>> bodies = parallel ? generateParallel(methods, fields, indent + 1) : null;
+        if (methods.size() <= 1) {
+            newline(indent);
+            print("public static void main(String[] args) {");
+            indent++;
+            writeBody(ast.getStatements(), fields, bodies == null || bodies.isEmpty() ? null : bodies.get(0));
+            indent--;
             newline(indent);
-            visit(statement);
+            print("}");
+        } else {
+            visitOutlined(methods, fields, bodies);
         }
 
         indent--;
         newline(indent);
+        newline(indent);
         print("}");
-        indent--;
         newline(indent);
+
+        return end();
+    }
+
+    /**
+     * Writes the top level statements as one static method per part, called
+     * in order from {@code main}. Variables declared at the top level of one
+     * method and used in another become static fields, and their
+     * declarations become assignments.
+     */
+    private void visitOutlined(List<List<Ast.Statement>> methods, Map<String, String> fields, List<List<Emitter>> bodies) {
+        fields.forEach((name, type) -> {
+            newline(indent);
+            print("private static ");
+            print(type);
+            print(" ");
+            print(name);
+            print(";");
+        });
+        if (!fields.isEmpty()) {
+            newline(0);
+        }
         newline(indent);
-        print("}");
+        print("public static void main(String[] args) {");
+        indent++;
+        for (int i = 0; i < methods.size(); i++) {
+            newline(indent);
+            print("main");
+            emitter.write(i);
+            print("();");
+        }
+        indent--;
         newline(indent);
+        print("}");
+        for (int i = 0; i < methods.size(); i++) {
+            newline(0);
+            newline(indent);
+            print("private static void main");
+            emitter.write(i);
+            print("() {");
+            indent++;
+            writeBody(methods.get(i), fields, bodies == null ? null : bodies.get(i));
+            indent--;
+            newline(indent);
+            print("}");
+        }
+    }
 
-        return null;
+    /**
+     * Writes the top level statements of a method, or copies them from the
+     * buffers generated in parallel if there are any.
+     */
+    private void writeBody(List<Ast.Statement> statements, Map<String, String> fields, List<Emitter> body) {
+        if (body != null) {
+            body.forEach(emitter::write);
+        } else {
+            statements.forEach(statement -> writeStatement(statement, fields));
+        }
+    }
+
+    /**
+     * Writes a top level statement on a new line, where the declaration of
+     * a variable stored in a static field is written as an assignment.
+     */
+    private void writeStatement(Ast.Statement statement, Map<String, String> fields) {
+        if (statement instanceof Ast.Statement.Declaration && fields.containsKey(((Ast.Statement.Declaration) statement).getName())) {
+            Ast.Statement.Declaration declaration = (Ast.Statement.Declaration) statement;
+            if (declaration.getValue().isPresent()) {
+                newline(indent);
+                print(declaration.getName());
+                print(" = ");
+                print(declaration.getValue().get());
+                print(";");
+            }
+        } else {
+            newline(indent);
+            if (cache != null && cache.contains(statement)) {
+                writeCached(statement);
+            } else {
+                visit(statement);
+            }
+        }
+    }
+
+    /**
+     * Writes a statement from the code the cache remembers, generating and
+     * remembering it first if the code can't be reused. The code is kept
+     * without indentation, which is added back line by line.
+     */
+    private void writeCached(Ast.Statement statement) {
+        StatementCache.Code code = cache.getCode(statement, temporaries);
+        if (code == null) {
+            Generator generator = new Generator(new Emitter(), className);
+            generator.temporaries = temporaries;
+            generator.visit(statement);
+            code = new StatementCache.Code(generator.emitter.toString().split(System.lineSeparator(), -1), temporaries, generator.temporaries - temporaries);
+            cache.putCode(statement, code);
+        }
+        print(code.lines[0]);
+        for (int i = 1; i < code.lines.length; i++) {
+            newline(indent);
+            print(code.lines[i]);
+        }
+        temporaries += code.count;
+    }
+
+    /**
+     * Generates the top level statements of every method on the common
+     * pool, in ranges of up to {@value #PARALLEL_RANGE} statements which are
+     * each written into a buffer of their own by a new generator. Every
+     * range starts at the method's indentation, and its first temporary is
+     * counted up front, so the buffers joined in order are exactly what
+     * visiting the statements one by one would write.
+     */
+    private List<List<Emitter>> generateParallel(List<List<Ast.Statement>> methods, Map<String, String> fields, int indent) {
+        List<Range> ranges = new ArrayList<>();
+        for (int i = 0; i < methods.size(); i++) {
+            List<Ast.Statement> statements = methods.get(i);
+            for (int start = 0; start < statements.size(); start += PARALLEL_RANGE) {
+                List<Ast.Statement> range = statements.subList(start, Math.min(start + PARALLEL_RANGE, statements.size()));
+                ranges.add(new Range(i, range, temporaries));
+                for (Ast.Statement statement : range) {
+                    temporaries += countTemporaries(statement, Collections.emptySet());
+                }
+            }
+        }
+        List<Emitter> emitters = ranges.parallelStream().map(range -> {
+            Generator generator = new Generator(new Emitter(), className);
+            generator.indent = indent;
+            generator.temporaries = range.temporaries;
+            generator.cache = cache;
+            range.statements.forEach(statement -> generator.writeStatement(statement, fields));
+            return generator.emitter;
+        }).collect(Collectors.toList());
+        List<List<Emitter>> bodies = new ArrayList<>();
+        methods.forEach(method -> bodies.add(new ArrayList<>()));
+        for (int i = 0; i < ranges.size(); i++) {
+            bodies.get(ranges.get(i).method).add(emitters.get(i));
+        }
+        return bodies;
+    }
+
+    /**
+     * Returns the number of temporaries visiting the statement takes, given
+     * the variables already accumulated by enclosing loops.
+     */
+    private static int countTemporaries(Ast.Statement ast, Set<String> accumulated) {
+        if (ast instanceof Ast.Statement.If) {
+            int count = 0;
+            for (Ast.Statement statement : ((Ast.Statement.If) ast).getThenStatements()) {
+                count += countTemporaries(statement, accumulated);
+            }
+            for (Ast.Statement statement : ((Ast.Statement.If) ast).getElseStatements()) {
+                count += countTemporaries(statement, accumulated);
+            }
+            return count;
+        } else if (ast instanceof Ast.Statement.While) {
+            List<String> accumulators = getAccumulators((Ast.Statement.While) ast, accumulated);
+            Set<String> inner = new HashSet<>(accumulated);
+            inner.addAll(accumulators);
+            int count = accumulators.size();
+            for (Ast.Statement statement : ((Ast.Statement.While) ast).getStatements()) {
+                count += countTemporaries(statement, inner);
+            }
+            return count;
+        }
+        return 0;
+    }
+
+    private static final class Range {
+
+        private final int method;
+        private final List<Ast.Statement> statements;
+        private final int temporaries;
+
+        private Range(int method, List<Ast.Statement> statements, int temporaries) {
+            this.method = method;
+            this.statements = statements;
+            this.temporaries = temporaries;
+        }
+
+    }
+
+    /**
+     * Splits the top level statements into methods whose estimated bytecode
+     * stays within the budget. A statement over the budget by itself gets a
+     * method of its own.
+     */
+    private List<List<Ast.Statement>> partition(List<Ast.Statement> statements) {
+        List<List<Ast.Statement>> methods = new ArrayList<>();
+        List<Ast.Statement> method = new ArrayList<>();
+        int size = 0;
+        for (Ast.Statement statement : statements) {
+            int estimate = estimate(statement);
+            if (methodBudget > 0 && !method.isEmpty() && size + estimate > methodBudget) {
+                methods.add(method);
+                method = new ArrayList<>();
+                size = 0;
+            }
+            method.add(statement);
+            size += estimate;
+        }
+        if (!method.isEmpty()) {
+            methods.add(method);
+        }
+        return methods;
+    }
+
+    /**
+     * Returns the variables declared at the top level of one method and
+     * used in another, with their types, in declaration order.
+     */
+    private static Map<String, String> getSharedVariables(List<List<Ast.Statement>> methods) {
+        Map<String, Integer> owners = new HashMap<>();
+        Map<String, String> types = new LinkedHashMap<>();
+        for (int i = 0; i < methods.size(); i++) {
+            for (Ast.Statement statement : methods.get(i)) {
+                if (statement instanceof Ast.Statement.Declaration) {
+                    owners.put(((Ast.Statement.Declaration) statement).getName(), i);
+                    types.put(((Ast.Statement.Declaration) statement).getName(), ((Ast.Statement.Declaration) statement).getType());
+                }
+            }
+        }
+        Set<String> shared = new HashSet<>();
+        for (int i = 0; i < methods.size(); i++) {
+            Map<String, Integer> appends = new HashMap<>();
+            Map<String, Integer> uses = new HashMap<>();
+            methods.get(i).forEach(statement -> collectUses(statement, appends, uses));
+            uses.putAll(appends);
+            for (String name : uses.keySet()) {
+                if (owners.containsKey(name) && owners.get(name) != i) {
+                    shared.add(name);
+                }
+            }
+        }
+        types.keySet().retainAll(shared);
+        return types;
+    }
+
+    /**
+     * Returns a conservative estimate of the bytecode size of a statement or
+     * expression, which assumes every variable is a static field.
+     */
+    static int estimate(Ast ast) {
+        if (ast instanceof Ast.Statement.Expression) {
+            return estimate(((Ast.Statement.Expression) ast).getExpression()) + 1;
+        } else if (ast instanceof Ast.Statement.Declaration) {
+            return ((Ast.Statement.Declaration) ast).getValue().map(value -> estimate(value) + 3).orElse(0);
+        } else if (ast instanceof Ast.Statement.Assignment) {
+            return estimate(((Ast.Statement.Assignment) ast).getExpression()) + 3;
+        } else if (ast instanceof Ast.Statement.If) {
+            Ast.Statement.If branch = (Ast.Statement.If) ast;
+            return estimate(branch.getCondition()) + 6
+                    + branch.getThenStatements().stream().mapToInt(Generator::estimate).sum()
+                    + branch.getElseStatements().stream().mapToInt(Generator::estimate).sum();
+        } else if (ast instanceof Ast.Statement.While) {
+            Ast.Statement.While loop = (Ast.Statement.While) ast;
+            //including the StringBuilder an accumulator may need
+            return estimate(loop.getCondition()) + 6 + 16
+                    + loop.getStatements().stream().mapToInt(Generator::estimate).sum();
+        } else if (ast instanceof Ast.Expression.Literal) {
+            return ((Ast.Expression.Literal) ast).getValue() instanceof Boolean ? 1 : 3;
+        } else if (ast instanceof Ast.Expression.Group) {
+            return estimate(((Ast.Expression.Group) ast).getExpression());
+        } else if (ast instanceof Ast.Expression.Binary) {
+            Ast.Expression.Binary binary = (Ast.Expression.Binary) ast;
+            //comparisons branch to push a boolean, and concatenations call a bootstrap method
+            return estimate(binary.getLeft()) + estimate(binary.getRight()) + 8;
+        } else if (ast instanceof Ast.Expression.Variable) {
+            return 3;
+        } else if (ast instanceof Ast.Expression.Function) {
+            //reading the receiver, boxing every argument and the call
+            List<Ast.Expression> arguments = ((Ast.Expression.Function) ast).getArguments();
+            return 6 + arguments.stream().mapToInt(argument -> estimate(argument) + 3).sum();
+        }
+        throw new AssertionError(ast.getClass());
     }
 
     @Override
     public Void visit(Ast.Statement.Expression ast) {
+        depth++;
         print(ast.getExpression());
         print(";");
-        return null;
+        return end();
     }
 
     @Override
     public Void visit(Ast.Statement.Declaration ast) {
+        depth++;
         // Declaration node
-        print(ast.getType(), " ", ast.getName());
+        print(ast.getType());
+        print(" ");
+        print(ast.getName());
         if (ast.getValue().isPresent()) {
-            print(" = ", ast.getValue().get());
+            print(" = ");
+            print(ast.getValue().get());
         }
         print(";");
 
-        return null;
+        return end();
     }
 
     @Override
     public Void visit(Ast.Statement.Assignment ast) {
+        depth++;
+        if (builders.containsKey(ast.getName())) {
+            //s = s + a + b appends a and b to the builder accumulating s
+            print(builders.get(ast.getName()));
+            for (Ast.Expression part : getAppended(ast)) {
+                print(".append(");
+                print(part);
+                print(")");
+            }
+            print(";");
+            return end();
+        }
         // put together
         print(ast.getName());
         print(" = ");
         print(ast.getExpression());
         print(";");
 
-        return null;
+        return end();
     }
 
     @Override
     public Void visit(Ast.Statement.If ast) {
-        print("if (", ast.getCondition(), ") {");
+        depth++;
+        print("if (");
+        print(ast.getCondition());
+        print(") {");
         if (ast.getThenStatements().size() > 0) {
 
             indent++;
@@ -114,12 +501,30 @@ public final class Generator implements Ast.Visitor<Void> {
             print("}");
         }
 
-        return null;
+        return end();
     }
 
     @Override
     public Void visit(Ast.Statement.While ast) {
-        print("while (", ast.getCondition(), ") {");
+        depth++;
+        List<String> accumulators = getAccumulators(ast, builders.keySet());
+        for (String name : accumulators) {
+            String builder = "$sb" + temporaries++;
+            builders.put(name, builder);
+            print("StringBuilder ");
+            print(builder);
+            print(" = new StringBuilder(");
+            print(name);
+            print(".length() + ");
+            print(String.valueOf(ACCUMULATED_ITERATIONS * estimateAppended(ast.getStatements(), name)));
+            print(").append(");
+            print(name);
+            print(");");
+            newline(indent);
+        }
+        print("while (");
+        print(ast.getCondition());
+        print(") {");
         indent++;
         newline(indent);
         int count = 0;
@@ -133,47 +538,186 @@ public final class Generator implements Ast.Visitor<Void> {
         indent--;
         newline(indent);
         print("}");
+        for (String name : accumulators) {
+            newline(indent);
+            print(name);
+            print(" = ");
+            print(builders.remove(name));
+            print(".toString();");
+        }
 
-        return null;
+        return end();
+    }
+
+    /**
+     * Returns the {@code STRING} variables which the loop only uses to
+     * append to, as in {@code s = s + a}. Appending to an immutable string
+     * copies it every time, so these are accumulated in a
+     * {@code StringBuilder} for the duration of the loop instead.
+     */
+    private static List<String> getAccumulators(Ast.Statement.While ast, Set<String> accumulated) {
+        Set<String> candidates = new LinkedHashSet<>();
+        Map<String, Integer> appends = new HashMap<>();
+        Map<String, Integer> uses = new HashMap<>();
+        collectUses(ast.getCondition(), appends, uses);
+        for (Ast.Statement statement : ast.getStatements()) {
+            collectUses(statement, appends, uses);
+        }
+        List<String> accumulators = new ArrayList<>();
+        appends.forEach((name, count) -> {
+            //every read of the variable has to be the one in an append
+            if (!accumulated.contains(name) && count.equals(uses.get(name))) {
+                accumulators.add(name);
+            }
+        });
+        accumulators.sort(null);
+        return accumulators;
+    }
+
+    /**
+     * Returns how many characters one iteration of the statements appends
+     * to an accumulator: the length of literals, and the longest value of
+     * numbers and booleans. Other strings are guessed to be 16 characters.
+     */
+    private static int estimateAppended(List<Ast.Statement> statements, String name) {
+        int length = 0;
+        for (Ast.Statement statement : statements) {
+            if (statement instanceof Ast.Statement.Assignment && ((Ast.Statement.Assignment) statement).getName().equals(name)) {
+                for (Ast.Expression part : getAppended((Ast.Statement.Assignment) statement)) {
+                    if (part instanceof Ast.Expression.Literal) {
+                        length += String.valueOf(((Ast.Expression.Literal) part).getValue()).length();
+                    } else if (part.getType() == Stdlib.Type.INTEGER) {
+                        length += 11;
+                    } else if (part.getType() == Stdlib.Type.DECIMAL) {
+                        length += 24;
+                    } else if (part.getType() == Stdlib.Type.BOOLEAN) {
+                        length += 5;
+                    } else {
+                        length += 16;
+                    }
+                }
+            } else if (statement instanceof Ast.Statement.If) {
+                length += Math.max(estimateAppended(((Ast.Statement.If) statement).getThenStatements(), name),
+                        estimateAppended(((Ast.Statement.If) statement).getElseStatements(), name));
+            } else if (statement instanceof Ast.Statement.While) {
+                length += estimateAppended(((Ast.Statement.While) statement).getStatements(), name);
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Counts the appends to and other uses of each variable, where an
+     * assignment that doesn't append or a declaration counts as two uses so
+     * the variable is never accumulated.
+     */
+    private static void collectUses(Ast ast, Map<String, Integer> appends, Map<String, Integer> uses) {
+        if (ast instanceof Ast.Statement.Assignment) {
+            Ast.Statement.Assignment assignment = (Ast.Statement.Assignment) ast;
+            List<Ast.Expression> appended = getAppended(assignment);
+            if (appended != null) {
+                appends.merge(assignment.getName(), 1, Integer::sum);
+                appended.forEach(part -> collectUses(part, appends, uses));
+            } else {
+                uses.merge(assignment.getName(), 2, Integer::sum);
+                collectUses(assignment.getExpression(), appends, uses);
+            }
+            uses.merge(assignment.getName(), 1, Integer::sum);
+        } else if (ast instanceof Ast.Statement.Declaration) {
+            uses.merge(((Ast.Statement.Declaration) ast).getName(), 2, Integer::sum);
+            ((Ast.Statement.Declaration) ast).getValue().ifPresent(value -> collectUses(value, appends, uses));
+        } else if (ast instanceof Ast.Statement.Expression) {
+            collectUses(((Ast.Statement.Expression) ast).getExpression(), appends, uses);
+        } else if (ast instanceof Ast.Statement.If) {
+            collectUses(((Ast.Statement.If) ast).getCondition(), appends, uses);
+            ((Ast.Statement.If) ast).getThenStatements().forEach(statement -> collectUses(statement, appends, uses));
+            ((Ast.Statement.If) ast).getElseStatements().forEach(statement -> collectUses(statement, appends, uses));
+        } else if (ast instanceof Ast.Statement.While) {
+            collectUses(((Ast.Statement.While) ast).getCondition(), appends, uses);
+            ((Ast.Statement.While) ast).getStatements().forEach(statement -> collectUses(statement, appends, uses));
+        } else if (ast instanceof Ast.Expression.Variable) {
+            uses.merge(((Ast.Expression.Variable) ast).getName(), 1, Integer::sum);
+        } else if (ast instanceof Ast.Expression.Group) {
+            collectUses(((Ast.Expression.Group) ast).getExpression(), appends, uses);
+        } else if (ast instanceof Ast.Expression.Binary) {
+            collectUses(((Ast.Expression.Binary) ast).getLeft(), appends, uses);
+            collectUses(((Ast.Expression.Binary) ast).getRight(), appends, uses);
+        } else if (ast instanceof Ast.Expression.Function) {
+            ((Ast.Expression.Function) ast).getArguments().forEach(argument -> collectUses(argument, appends, uses));
+        }
+    }
+
+    /**
+     * Returns the values appended by an assignment {@code s = s + a + b} to a
+     * {@code STRING} variable, or {@code null} if the assignment has another
+     * form. Concatenation associates to the left, so these are the right
+     * operands along the left spine of the chain.
+     */
+    private static List<Ast.Expression> getAppended(Ast.Statement.Assignment ast) {
+        List<Ast.Expression> appended = new ArrayList<>();
+        Ast.Expression expression = ast.getExpression();
+        while (expression instanceof Ast.Expression.Binary && ((Ast.Expression.Binary) expression).getOperator().equals("+")
+                && ((Ast.Expression.Binary) expression).type == Stdlib.Type.STRING) {
+            appended.add(0, ((Ast.Expression.Binary) expression).getRight());
+            expression = ((Ast.Expression.Binary) expression).getLeft();
+        }
+        if (appended.isEmpty() || !(expression instanceof Ast.Expression.Variable)
+                || !((Ast.Expression.Variable) expression).getName().equals(ast.getName())
+                || expression.type != Stdlib.Type.STRING) {
+            return null;
+        }
+        return appended;
     }
 
     @Override
     public Void visit(Ast.Expression.Literal ast) {
+        depth++;
         if (ast.equals("TRUE")) {
             print("true");
         } else if (ast.equals("FALSE")) {
             print("false");
         } else if (ast.getValue() instanceof String) {
-            print("\"", ast.getValue(), "\"");
+            print("\"");
+            emitter.write(ast.getValue());
+            print("\"");
         } else {
-            print(ast.getValue());
+            emitter.write(ast.getValue());
         }
-        return null;
+        return end();
     }
 
     @Override
     public Void visit(Ast.Expression.Group ast) {
+        depth++;
         print("(");
         visit(ast.getExpression());
         print(")");
-        return null;
+        return end();
     }
 
     @Override
     public Void visit(Ast.Expression.Binary ast) {
-        print(ast.getLeft(), " ", ast.getOperator(), " " , ast.getRight());
-        return null;
+        depth++;
+        print(ast.getLeft());
+        print(" ");
+        print(ast.getOperator());
+        print(" ");
+        print(ast.getRight());
+        return end();
     }
 
     @Override
     public Void visit(Ast.Expression.Variable ast) {
+        depth++;
         print(ast.getName());
-        return null;
+        return end();
     }
 
     @Override
     public Void visit(Ast.Expression.Function ast) {
-        print(ast.getName(), "(");
+        depth++;
+        print(ast.getName());
+        print("(");
         for (int i = 0; i < ast.getArguments().size(); i++) {
             visit(ast.getArguments().get(i));
             if (i + 1 < ast.getArguments().size()) {
@@ -181,7 +725,7 @@ public final class Generator implements Ast.Visitor<Void> {
             }
         }
         print(")");
-        return null;
+        return end();
     }
 
 }
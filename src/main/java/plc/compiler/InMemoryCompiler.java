@@ -0,0 +1,199 @@
+package plc.compiler;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles the Java source written by the {@link Generator} with the
+ * {@code javac} of the running JDK, without touching the filesystem. Sources
+ * are read from strings and class files are collected in memory, then
+ * defined by a new class loader for every compilation so programs can't see
+ * each other.
+ *
+ * <p>The compiler and its file manager are shared by every compilation,
+ * which keeps the classes of {@code javac} itself and the platform classes it
+ * has read warm. The file manager isn't thread safe, so compilations run one
+ * at a time.</p>
+ */
+public final class InMemoryCompiler {
+
+    private static final List<String> OPTIONS = Arrays.asList("-proc:none", "-g:none", "-nowarn");
+
+    private static final JavaCompiler COMPILER = ToolProvider.getSystemJavaCompiler();
+    private static final StandardJavaFileManager FILE_MANAGER = COMPILER == null ? null
+            : COMPILER.getStandardFileManager(null, null, null);
+
+    private InMemoryCompiler() {}
+
+    /**
+     * Generates, compiles and loads the program, returning its main class.
+     */
+    public static Class<?> compile(Ast.Source ast) {
+        StringWriter writer = new StringWriter();
+        new Generator(new PrintWriter(writer)).visit(ast);
+        return load(compile(Collections.singletonMap("Main", writer.toString()))).get("Main");
+    }
+
+    /**
+     * Generates, compiles and loads several programs at once, returning
+     * their main classes in order. Each program gets its own class name, and
+     * all of them are compiled by a single {@code javac} task, so the cost of
+     * starting the compiler and reading the platform classes is paid once
+     * for the whole batch.
+     */
+    public static List<Class<?>> compile(List<Ast.Source> programs) {
+        Map<String, String> sources = new LinkedHashMap<>();
+        for (Ast.Source program : programs) {
+            String name = "Main" + sources.size();
+            StringWriter writer = new StringWriter();
+            new Generator(new PrintWriter(writer), name).visit(program);
+            sources.put(name, writer.toString());
+        }
+        Map<String, Class<?>> classes = load(compile(sources));
+        List<Class<?>> mains = new ArrayList<>();
+        sources.keySet().forEach(name -> mains.add(classes.get(name)));
+        return mains;
+    }
+
+    /**
+     * Compiles the sources, given by the binary name of their top level
+     * class, and returns the class files produced by binary name.
+     */
+    public static Map<String, byte[]> compile(Map<String, String> sources) {
+        if (COMPILER == null) {
+            throw new IllegalStateException("No Java compiler is available, which requires running on a JDK.");
+        }
+        List<JavaFileObject> units = new ArrayList<>();
+        sources.forEach((name, source) -> units.add(new Source(name, source)));
+        Map<String, ByteArrayOutputStream> classes = new HashMap<>();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        synchronized (FILE_MANAGER) {
+            ClassFileManager manager = new ClassFileManager(FILE_MANAGER, classes);
+            if (!COMPILER.getTask(null, manager, diagnostics, OPTIONS, null, units).call()) {
+                StringBuilder message = new StringBuilder("The generated source failed to compile:");
+                diagnostics.getDiagnostics().forEach(diagnostic -> message.append(System.lineSeparator()).append(diagnostic));
+                throw new IllegalStateException(message.toString());
+            }
+        }
+        Map<String, byte[]> bytes = new HashMap<>();
+        classes.forEach((name, output) -> bytes.put(name, output.toByteArray()));
+        return bytes;
+    }
+
+    /**
+     * Defines the classes in a new class loader and returns them by binary
+     * name.
+     */
+    public static Map<String, Class<?>> load(Map<String, byte[]> classes) {
+        MemoryClassLoader loader = new MemoryClassLoader(classes);
+        Map<String, Class<?>> loaded = new HashMap<>();
+        for (String name : classes.keySet()) {
+            try {
+                loaded.put(name, loader.loadClass(name));
+            } catch (ClassNotFoundException e) {
+                throw new AssertionError(e); //defined by the loader
+            }
+        }
+        return loaded;
+    }
+
+    private static final class Source extends SimpleJavaFileObject {
+
+        private final String source;
+
+        private Source(String name, String source) {
+            super(URI.create("memory:///" + name.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+
+    }
+
+    private static final class ClassFile extends SimpleJavaFileObject {
+
+        private final ByteArrayOutputStream output;
+
+        private ClassFile(String name, ByteArrayOutputStream output) {
+            super(URI.create("memory:///" + name.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+            this.output = output;
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return output;
+        }
+
+    }
+
+    /**
+     * Reads everything from the shared file manager, but keeps the class
+     * files written in memory.
+     */
+    private static final class ClassFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+        private final Map<String, ByteArrayOutputStream> classes;
+
+        private ClassFileManager(StandardJavaFileManager manager, Map<String, ByteArrayOutputStream> classes) {
+            super(manager);
+            this.classes = classes;
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+            if (location != StandardLocation.CLASS_OUTPUT || kind != JavaFileObject.Kind.CLASS) {
+                throw new UnsupportedOperationException("Only class files are written.");
+            }
+            return new ClassFile(className, classes.computeIfAbsent(className, name -> new ByteArrayOutputStream()));
+        }
+
+        @Override
+        public void close() {
+            //the standard file manager is shared
+        }
+
+    }
+
+    private static final class MemoryClassLoader extends ClassLoader {
+
+        private final Map<String, byte[]> classes;
+
+        private MemoryClassLoader(Map<String, byte[]> classes) {
+            super(InMemoryCompiler.class.getClassLoader());
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classes.get(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+
+    }
+
+}
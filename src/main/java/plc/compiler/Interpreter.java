@@ -0,0 +1,1072 @@
+package plc.compiler;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs an analyzed program directly, without generating or compiling any
+ * Java. The AST is first turned into a tree of nodes with every variable
+ * resolved to a slot of the frame, then the tree is executed.
+ *
+ * <p>Frames keep {@code int} and {@code boolean} variables in an
+ * {@code int[]}, {@code double} variables in a {@code double[]} and
+ * everything else in an {@code Object[]}. Expression nodes are evaluated
+ * through the method for their static type, such as
+ * {@link Expression#evaluateInt}, so arithmetic on primitives never boxes.
+ * Values are only boxed when passed to a function or stored as
+ * {@code ANY}.</p>
+ *
+ * <p>The nodes which still handle values of several classes specialize
+ * themselves on what they see at runtime: function calls link into a method
+ * handle taking their argument unboxed, and concatenations append
+ * {@code ANY} values through the overload for the class observed, falling
+ * back to the generic path when a different class shows up.</p>
+ *
+ * <p>Execution can be tiered: every {@code WHILE} counts its back edges, and
+ * once a loop has run {@code threshold} iterations it is compiled in the
+ * background by the {@link LoopCompiler}. At the next back edge after the
+ * compiled loop is ready the interpreter hands over its frame, so a long
+ * running loop switches to bytecode in the middle of its execution, and
+ * later executions of the loop start compiled. A loop which fails to
+ * compile stays interpreted.</p>
+ */
+public final class Interpreter {
+
+    private final Statement program;
+    private final int ints;
+    private final int doubles;
+    private final int objects;
+    private final int threshold;
+    private final Executor compiler;
+    private int compiledLoops = 0;
+
+    public Interpreter(Ast.Source ast) {
+        this(ast, 0, null);
+    }
+
+    /**
+     * Creates a tiered interpreter, which compiles loops on the common pool
+     * once they reach the threshold.
+     */
+    public Interpreter(Ast.Source ast, int threshold) {
+        this(ast, threshold, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates an interpreter compiling hot loops with the given executor, or
+     * never if it is {@code null}.
+     */
+    Interpreter(Ast.Source ast, int threshold, Executor compiler) {
+        this.threshold = threshold;
+        this.compiler = compiler;
+        Resolver resolver = new Resolver();
+        program = resolver.block(ast.getStatements());
+        ints = resolver.maxInts;
+        doubles = resolver.maxDoubles;
+        objects = resolver.maxObjects;
+    }
+
+    public static void run(Ast.Source ast) {
+        new Interpreter(ast).run();
+    }
+
+    public void run() {
+        program.execute(new Frame(ints, doubles, objects));
+    }
+
+    /**
+     * Returns the number of loops which have switched to compiled code.
+     */
+    int getCompiledLoops() {
+        return compiledLoops;
+    }
+
+    static final class Frame {
+
+        final int[] ints;
+        final double[] doubles;
+        final Object[] objects;
+
+        Frame(int ints, int doubles, int objects) {
+            this.ints = new int[ints];
+            this.doubles = new double[doubles];
+            this.objects = new Object[objects];
+        }
+
+    }
+
+    /**
+     * Turns the AST into nodes, assigning each variable a slot in the array
+     * for its kind. Slots are reused once the scope of their variable ends.
+     */
+    private final class Resolver {
+
+        private final Deque<Map<String, Slot>> scopes = new ArrayDeque<>();
+        private int nextInt = 0;
+        private int nextDouble = 0;
+        private int nextObject = 0;
+        private int maxInts = 0;
+        private int maxDoubles = 0;
+        private int maxObjects = 0;
+
+        private Statement block(List<Ast.Statement> statements) {
+            scopes.push(new HashMap<>());
+            int ints = nextInt;
+            int doubles = nextDouble;
+            int objects = nextObject;
+            List<Statement> nodes = new ArrayList<>();
+            for (Ast.Statement statement : statements) {
+                nodes.add(statement(statement));
+            }
+            scopes.pop();
+            nextInt = ints;
+            nextDouble = doubles;
+            nextObject = objects;
+            return nodes.size() == 1 ? nodes.get(0) : new Block(nodes.toArray(new Statement[0]));
+        }
+
+        private Statement statement(Ast.Statement ast) {
+            if (ast instanceof Ast.Statement.Expression) {
+                return new Evaluate(expression(((Ast.Statement.Expression) ast).getExpression()));
+            } else if (ast instanceof Ast.Statement.Declaration) {
+                Ast.Statement.Declaration declaration = (Ast.Statement.Declaration) ast;
+                Kind kind = Kind.of(declaration.getType());
+                //the value is resolved first, it can't see the variable
+                Expression value = declaration.getValue().isPresent()
+                        ? convert(expression(declaration.getValue().get()), kind)
+                        : new Literal(kind.getDefault());
+                Slot slot = declare(declaration.getName(), declaration.getType(), kind);
+                return store(slot, value);
+            } else if (ast instanceof Ast.Statement.Assignment) {
+                Ast.Statement.Assignment assignment = (Ast.Statement.Assignment) ast;
+                Slot slot = lookup(assignment.getName());
+                return store(slot, convert(expression(assignment.getExpression()), slot.kind));
+            } else if (ast instanceof Ast.Statement.If) {
+                Ast.Statement.If branch = (Ast.Statement.If) ast;
+                return new If(expression(branch.getCondition()), block(branch.getThenStatements()), block(branch.getElseStatements()));
+            } else if (ast instanceof Ast.Statement.While) {
+                Ast.Statement.While loop = (Ast.Statement.While) ast;
+                Set<String> names = new LinkedHashSet<>();
+                collectNames(loop, names);
+                List<Slot> variables = new ArrayList<>();
+                for (String name : names) {
+                    Slot slot = find(name);
+                    if (slot != null) {
+                        variables.add(slot);
+                    }
+                }
+                return new While(expression(loop.getCondition()), block(loop.getStatements()), loop, variables);
+            }
+            throw new AssertionError(ast.getClass());
+        }
+
+        private Expression expression(Ast.Expression ast) {
+            if (ast instanceof Ast.Expression.Literal) {
+                Object value = ((Ast.Expression.Literal) ast).getValue();
+                //string literals are interned in Java, which == can observe
+                return new Literal(value instanceof String ? ((String) value).intern() : value);
+            } else if (ast instanceof Ast.Expression.Group) {
+                return expression(((Ast.Expression.Group) ast).getExpression());
+            } else if (ast instanceof Ast.Expression.Variable) {
+                Slot slot = lookup(((Ast.Expression.Variable) ast).getName());
+                return slot.kind == Kind.DOUBLE ? new DoubleLocal(slot.index)
+                        : slot.kind == Kind.OBJECT ? new ObjectLocal(slot.index)
+                        : new IntLocal(slot.kind, slot.index);
+            } else if (ast instanceof Ast.Expression.Binary) {
+                return binary((Ast.Expression.Binary) ast);
+            } else if (ast instanceof Ast.Expression.Function) {
+                Ast.Expression.Function function = (Ast.Expression.Function) ast;
+                List<Stdlib.Type> types = new ArrayList<>();
+                Expression[] arguments = new Expression[function.getArguments().size()];
+                for (int i = 0; i < arguments.length; i++) {
+                    types.add(function.getArguments().get(i).getType());
+                    arguments[i] = expression(function.getArguments().get(i));
+                }
+                return new Call(Kind.of(function.getType().getJvmName()), JvmFunction.resolve(function.getName(), types), arguments);
+            }
+            throw new AssertionError(ast.getClass());
+        }
+
+        private Expression binary(Ast.Expression.Binary ast) {
+            Expression left = expression(ast.getLeft());
+            Expression right = expression(ast.getRight());
+            String operator = ast.getOperator();
+            if (operator.equals("==") || operator.equals("!=")) {
+                Kind kind = left.kind == Kind.DOUBLE && right.kind.isNumeric() || right.kind == Kind.DOUBLE && left.kind.isNumeric() ? Kind.DOUBLE
+                        : left.kind.isPrimitive() && right.kind.isPrimitive() ? Kind.INT : Kind.OBJECT;
+                return new Equals(kind, convert(left, kind), convert(right, kind), operator.equals("!="));
+            } else if (ast.getType() == Stdlib.Type.STRING) {
+                //chains are flattened into a single builder, like javac does
+                List<Expression> parts = new ArrayList<>();
+                if (left instanceof Concatenate) {
+                    parts.addAll(Arrays.asList(((Concatenate) left).parts));
+                } else {
+                    parts.add(left);
+                }
+                parts.add(right);
+                Concatenate concatenate = new Concatenate(parts.toArray(new Expression[0]));
+                //constant expressions are computed and interned by javac
+                return concatenate.isConstant() ? new Literal(concatenate.evaluate(null).toString().intern()) : concatenate;
+            } else if (ast.getType() == Stdlib.Type.DECIMAL) {
+                return new DoubleBinary(operator.charAt(0), convert(left, Kind.DOUBLE), convert(right, Kind.DOUBLE));
+            } else if (ast.getType() == Stdlib.Type.INTEGER) {
+                return new IntBinary(operator, left, right);
+            }
+            throw new IllegalStateException("The operator " + operator + " is not supported for " + ast.getType().getName() + ".");
+        }
+
+        private Expression convert(Expression expression, Kind kind) {
+            if (kind == Kind.DOUBLE && expression.kind == Kind.INT) {
+                return new IntToDouble(expression);
+            } else if (kind == Kind.OBJECT && expression.kind != Kind.OBJECT) {
+                return new Box(expression);
+            }
+            return expression;
+        }
+
+        private Statement store(Slot slot, Expression value) {
+            return slot.kind == Kind.DOUBLE ? new DoubleStore(slot.index, value)
+                    : slot.kind == Kind.OBJECT ? new ObjectStore(slot.index, value)
+                    : new IntStore(slot.index, value);
+        }
+
+        private Slot declare(String name, String type, Kind kind) {
+            Slot slot;
+            if (kind == Kind.DOUBLE) {
+                slot = new Slot(name, type, kind, nextDouble++);
+                maxDoubles = Math.max(maxDoubles, nextDouble);
+            } else if (kind == Kind.OBJECT) {
+                slot = new Slot(name, type, kind, nextObject++);
+                maxObjects = Math.max(maxObjects, nextObject);
+            } else {
+                slot = new Slot(name, type, kind, nextInt++);
+                maxInts = Math.max(maxInts, nextInt);
+            }
+            scopes.peek().put(name, slot);
+            return slot;
+        }
+
+        private Slot lookup(String name) {
+            Slot slot = find(name);
+            if (slot == null) {
+                throw new IllegalArgumentException("The identifier " + name + " is not defined.");
+            }
+            return slot;
+        }
+
+        private Slot find(String name) {
+            for (Map<String, Slot> scope : scopes) {
+                if (scope.containsKey(name)) {
+                    return scope.get(name);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Collects the names of the variables used or assigned in a
+         * statement or expression.
+         */
+        private void collectNames(Ast ast, Set<String> names) {
+            if (ast instanceof Ast.Statement.Expression) {
+                collectNames(((Ast.Statement.Expression) ast).getExpression(), names);
+            } else if (ast instanceof Ast.Statement.Declaration) {
+                ((Ast.Statement.Declaration) ast).getValue().ifPresent(value -> collectNames(value, names));
+            } else if (ast instanceof Ast.Statement.Assignment) {
+                names.add(((Ast.Statement.Assignment) ast).getName());
+                collectNames(((Ast.Statement.Assignment) ast).getExpression(), names);
+            } else if (ast instanceof Ast.Statement.If) {
+                collectNames(((Ast.Statement.If) ast).getCondition(), names);
+                ((Ast.Statement.If) ast).getThenStatements().forEach(statement -> collectNames(statement, names));
+                ((Ast.Statement.If) ast).getElseStatements().forEach(statement -> collectNames(statement, names));
+            } else if (ast instanceof Ast.Statement.While) {
+                collectNames(((Ast.Statement.While) ast).getCondition(), names);
+                ((Ast.Statement.While) ast).getStatements().forEach(statement -> collectNames(statement, names));
+            } else if (ast instanceof Ast.Expression.Group) {
+                collectNames(((Ast.Expression.Group) ast).getExpression(), names);
+            } else if (ast instanceof Ast.Expression.Binary) {
+                collectNames(((Ast.Expression.Binary) ast).getLeft(), names);
+                collectNames(((Ast.Expression.Binary) ast).getRight(), names);
+            } else if (ast instanceof Ast.Expression.Variable) {
+                names.add(((Ast.Expression.Variable) ast).getName());
+            } else if (ast instanceof Ast.Expression.Function) {
+                ((Ast.Expression.Function) ast).getArguments().forEach(argument -> collectNames(argument, names));
+            }
+        }
+
+    }
+
+    /**
+     * A variable's place in the frame, along with its name and JVM type for
+     * the {@link LoopCompiler}.
+     */
+    static final class Slot {
+
+        final String name;
+        final String type;
+        final Kind kind;
+        final int index;
+
+        private Slot(String name, String type, Kind kind, int index) {
+            this.name = name;
+            this.type = type;
+            this.kind = kind;
+            this.index = index;
+        }
+
+    }
+
+    /**
+     * How a value is stored, based on the JVM name of its type. Booleans are
+     * stored as ints, like the JVM does.
+     */
+    enum Kind {
+
+        INT, BOOLEAN, DOUBLE, OBJECT, VOID;
+
+        static Kind of(String jvmName) {
+            switch (jvmName) {
+                case "int":
+                    return INT;
+                case "boolean":
+                    return BOOLEAN;
+                case "double":
+                    return DOUBLE;
+                case "Void":
+                    return VOID;
+                default:
+                    return OBJECT;
+            }
+        }
+
+        boolean isNumeric() {
+            return this == INT || this == DOUBLE;
+        }
+
+        boolean isPrimitive() {
+            return this == INT || this == BOOLEAN;
+        }
+
+        Object getDefault() {
+            return this == INT ? (Object) 0 : this == BOOLEAN ? (Object) false : this == DOUBLE ? (Object) 0.0 : null;
+        }
+
+    }
+
+    abstract static class Statement {
+
+        abstract void execute(Frame frame);
+
+    }
+
+    /**
+     * An expression, evaluated through the method matching its kind. The
+     * others box or unbox the value, and are only used where the types
+     * don't line up.
+     */
+    abstract static class Expression {
+
+        final Kind kind;
+
+        Expression(Kind kind) {
+            this.kind = kind;
+        }
+
+        int evaluateInt(Frame frame) {
+            return kind == Kind.BOOLEAN ? (evaluateBoolean(frame) ? 1 : 0) : (Integer) evaluate(frame);
+        }
+
+        double evaluateDouble(Frame frame) {
+            return ((Number) evaluate(frame)).doubleValue();
+        }
+
+        boolean evaluateBoolean(Frame frame) {
+            return kind == Kind.INT ? evaluateInt(frame) != 0 : (Boolean) evaluate(frame);
+        }
+
+        abstract Object evaluate(Frame frame);
+
+    }
+
+    private static final class Block extends Statement {
+
+        private final Statement[] statements;
+
+        private Block(Statement[] statements) {
+            this.statements = statements;
+        }
+
+        @Override
+        void execute(Frame frame) {
+            for (Statement statement : statements) {
+                statement.execute(frame);
+            }
+        }
+
+    }
+
+    private static final class Evaluate extends Statement {
+
+        private final Expression expression;
+
+        private Evaluate(Expression expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        void execute(Frame frame) {
+            expression.evaluate(frame);
+        }
+
+    }
+
+    private static final class IntStore extends Statement {
+
+        private final int slot;
+        private final Expression value;
+
+        private IntStore(int slot, Expression value) {
+            this.slot = slot;
+            this.value = value;
+        }
+
+        @Override
+        void execute(Frame frame) {
+            frame.ints[slot] = value.evaluateInt(frame);
+        }
+
+    }
+
+    private static final class DoubleStore extends Statement {
+
+        private final int slot;
+        private final Expression value;
+
+        private DoubleStore(int slot, Expression value) {
+            this.slot = slot;
+            this.value = value;
+        }
+
+        @Override
+        void execute(Frame frame) {
+            frame.doubles[slot] = value.evaluateDouble(frame);
+        }
+
+    }
+
+    private static final class ObjectStore extends Statement {
+
+        private final int slot;
+        private final Expression value;
+
+        private ObjectStore(int slot, Expression value) {
+            this.slot = slot;
+            this.value = value;
+        }
+
+        @Override
+        void execute(Frame frame) {
+            frame.objects[slot] = value.evaluate(frame);
+        }
+
+    }
+
+    private static final class If extends Statement {
+
+        private final Expression condition;
+        private final Statement thenStatement;
+        private final Statement elseStatement;
+
+        private If(Expression condition, Statement thenStatement, Statement elseStatement) {
+            this.condition = condition;
+            this.thenStatement = thenStatement;
+            this.elseStatement = elseStatement;
+        }
+
+        @Override
+        void execute(Frame frame) {
+            if (condition.evaluateBoolean(frame)) {
+                thenStatement.execute(frame);
+            } else {
+                elseStatement.execute(frame);
+            }
+        }
+
+    }
+
+    private final class While extends Statement {
+
+        private final Expression condition;
+        private final Statement body;
+        private final Ast.Statement.While ast;
+        private final List<Slot> variables;
+        private boolean interpreted = compiler == null;
+        private int iterations = 0;
+        private CompletableFuture<MethodHandle> compilation;
+        private MethodHandle compiled;
+
+        private While(Expression condition, Statement body, Ast.Statement.While ast, List<Slot> variables) {
+            this.condition = condition;
+            this.body = body;
+            this.ast = ast;
+            this.variables = variables;
+        }
+
+        @Override
+        void execute(Frame frame) {
+            if (compiled != null) {
+                enter(frame);
+                return;
+            }
+            while (condition.evaluateBoolean(frame)) {
+                body.execute(frame);
+                if (!interpreted && ++iterations >= threshold && isCompiled()) {
+                    enter(frame);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Starts compiling the loop if it hasn't been yet, and returns
+         * whether the compiled loop is ready.
+         */
+        private boolean isCompiled() {
+            if (compilation == null) {
+                compilation = CompletableFuture.supplyAsync(() -> LoopCompiler.compile(ast, variables), compiler)
+                        .exceptionally(e -> null);
+            }
+            if (compilation.isDone()) {
+                compiled = compilation.join();
+                if (compiled == null) {
+                    interpreted = true;
+                    return false;
+                }
+                compiledLoops++;
+                return true;
+            }
+            return false;
+        }
+
+        private void enter(Frame frame) {
+            try {
+                compiled.invokeExact(frame.ints, frame.doubles, frame.objects);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+    }
+
+    private static final class Literal extends Expression {
+
+        private final Object value;
+        private final int intValue;
+        private final double doubleValue;
+
+        private Literal(Object value) {
+            super(value instanceof Integer ? Kind.INT : value instanceof Boolean ? Kind.BOOLEAN
+                    : value instanceof Double ? Kind.DOUBLE : Kind.OBJECT);
+            this.value = value;
+            this.intValue = value instanceof Integer ? (Integer) value : Boolean.TRUE.equals(value) ? 1 : 0;
+            this.doubleValue = value instanceof Number ? ((Number) value).doubleValue() : 0;
+        }
+
+        @Override
+        int evaluateInt(Frame frame) {
+            return intValue;
+        }
+
+        @Override
+        double evaluateDouble(Frame frame) {
+            return doubleValue;
+        }
+
+        @Override
+        boolean evaluateBoolean(Frame frame) {
+            return intValue != 0;
+        }
+
+        @Override
+        Object evaluate(Frame frame) {
+            return value;
+        }
+
+    }
+
+    private static final class IntLocal extends Expression {
+
+        private final int slot;
+
+        private IntLocal(Kind kind, int slot) {
+            super(kind);
+            this.slot = slot;
+        }
+
+        @Override
+        int evaluateInt(Frame frame) {
+            return frame.ints[slot];
+        }
+
+        @Override
+        boolean evaluateBoolean(Frame frame) {
+            return frame.ints[slot] != 0;
+        }
+
+        @Override
+        double evaluateDouble(Frame frame) {
+            return frame.ints[slot];
+        }
+
+        @Override
+        Object evaluate(Frame frame) {
+            return kind == Kind.BOOLEAN ? (Object) (frame.ints[slot] != 0) : (Object) frame.ints[slot];
+        }
+
+    }
+
+    private static final class DoubleLocal extends Expression {
+
+        private final int slot;
+
+        private DoubleLocal(int slot) {
+            super(Kind.DOUBLE);
+            this.slot = slot;
+        }
+
+        @Override
+        double evaluateDouble(Frame frame) {
+            return frame.doubles[slot];
+        }
+
+        @Override
+        Object evaluate(Frame frame) {
+            return frame.doubles[slot];
+        }
+
+    }
+
+    private static final class ObjectLocal extends Expression {
+
+        private final int slot;
+
+        private ObjectLocal(int slot) {
+            super(Kind.OBJECT);
+            this.slot = slot;
+        }
+
+        @Override
+        Object evaluate(Frame frame) {
+            return frame.objects[slot];
+        }
+
+    }
+
+    private static final class IntToDouble extends Expression {
+
+        private final Expression value;
+
+        private IntToDouble(Expression value) {
+            super(Kind.DOUBLE);
+            this.value = value;
+        }
+
+        @Override
+        double evaluateDouble(Frame frame) {
+            return value.evaluateInt(frame);
+        }
+
+        @Override
+        Object evaluate(Frame frame) {
+            return evaluateDouble(frame);
+        }
+
+    }
+
+    private static final class Box extends Expression {
+
+        private final Expression value;
+
+        private Box(Expression value) {
+            super(Kind.OBJECT);
+            this.value = value;
+        }
+
+        @Override
+        Object evaluate(Frame frame) {
+            return value.evaluate(frame);
+        }
+
+    }
+
+    private static final class IntBinary extends Expression {
+
+        private final char operator;
+        private final Expression left;
+        private final Expression right;
+
+        private IntBinary(String operator, Expression left, Expression right) {
+            super(Kind.INT);
+            //shifts only come from the StrengthReducer, and are told apart by their first character
+            this.operator = operator.equals(">>>") ? 'u' : operator.charAt(0);
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        int evaluateInt(Frame frame) {
+            int l = left.evaluateInt(frame);
+            int r = right.evaluateInt(frame);
+            switch (operator) {
+                case '+': return l + r;
+                case '-': return l - r;
+                case '*': return l * r;
+                case '/': return l / r;
+                case '<': return l << r;
+                case '>': return l >> r;
+                case 'u': return l >>> r;
+                default: throw new AssertionError(operator);
+            }
+        }
+
+        @Override
+        double evaluateDouble(Frame frame) {
+            return evaluateInt(frame);
+        }
+
+        @Override
+        Object evaluate(Frame frame) {
+            return evaluateInt(frame);
+        }
+
+    }
+
+    private static final class DoubleBinary extends Expression {
+
+        private final char operator;
+        private final Expression left;
+        private final Expression right;
+
+        private DoubleBinary(char operator, Expression left, Expression right) {
+            super(Kind.DOUBLE);
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        double evaluateDouble(Frame frame) {
+            double l = left.evaluateDouble(frame);
+            double r = right.evaluateDouble(frame);
+            switch (operator) {
+                case '+': return l + r;
+                case '-': return l - r;
+                case '*': return l * r;
+                case '/': return l / r;
+                default: throw new AssertionError(operator);
+            }
+        }
+
+        @Override
+        Object evaluate(Frame frame) {
+            return evaluateDouble(frame);
+        }
+
+    }
+
+    private static final class Equals extends Expression {
+
+        private final Kind operands;
+        private final Expression left;
+        private final Expression right;
+        private final boolean negated;
+
+        private Equals(Kind operands, Expression left, Expression right, boolean negated) {
+            super(Kind.BOOLEAN);
+            this.operands = operands;
+            this.left = left;
+            this.right = right;
+            this.negated = negated;
+        }
+
+        @Override
+        boolean evaluateBoolean(Frame frame) {
+            boolean equal;
+            if (operands == Kind.DOUBLE) {
+                equal = left.evaluateDouble(frame) == right.evaluateDouble(frame);
+            } else if (operands == Kind.INT) {
+                equal = left.evaluateInt(frame) == right.evaluateInt(frame);
+            } else {
+                equal = left.evaluate(frame) == right.evaluate(frame);
+            }
+            return equal != negated;
+        }
+
+        @Override
+        int evaluateInt(Frame frame) {
+            return evaluateBoolean(frame) ? 1 : 0;
+        }
+
+        @Override
+        Object evaluate(Frame frame) {
+            return evaluateBoolean(frame);
+        }
+
+    }
+
+    private static final class Concatenate extends Expression {
+
+        private final Expression[] parts;
+        private final Appender[] appenders;
+
+        private Concatenate(Expression[] parts) {
+            super(Kind.OBJECT);
+            this.parts = parts;
+            this.appenders = new Appender[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                appenders[i] = Appender.of(parts[i]);
+            }
+        }
+
+        private boolean isConstant() {
+            for (Expression part : parts) {
+                if (!(part instanceof Literal)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        Object evaluate(Frame frame) {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < appenders.length; i++) {
+                appenders[i] = appenders[i].append(builder, frame);
+            }
+            return builder.toString();
+        }
+
+    }
+
+    /**
+     * Appends a part of a concatenation, returning the appender to use the
+     * next time, which is how appenders rewrite themselves.
+     *
+     * <p>Primitive parts are appended unboxed. Parts typed {@code STRING} or
+     * {@code ANY} start uninitialized, and specialize on the class of the
+     * first value they see, so an {@code ANY} holding integers appends the
+     * {@code int} without calling {@link Integer#toString()}. A value of
+     * another class rewrites the appender to the generic one for good.</p>
+     */
+    private abstract static class Appender {
+
+        final Expression part;
+
+        private Appender(Expression part) {
+            this.part = part;
+        }
+
+        static Appender of(Expression part) {
+            switch (part.kind) {
+                case INT:
+                    return new Appender(part) {
+                        @Override
+                        Appender append(StringBuilder builder, Frame frame) {
+                            builder.append(part.evaluateInt(frame));
+                            return this;
+                        }
+                    };
+                case BOOLEAN:
+                    return new Appender(part) {
+                        @Override
+                        Appender append(StringBuilder builder, Frame frame) {
+                            builder.append(part.evaluateBoolean(frame));
+                            return this;
+                        }
+                    };
+                case DOUBLE:
+                    return new Appender(part) {
+                        @Override
+                        Appender append(StringBuilder builder, Frame frame) {
+                            builder.append(part.evaluateDouble(frame));
+                            return this;
+                        }
+                    };
+                default:
+                    return new ObjectAppender(part, null);
+            }
+        }
+
+        abstract Appender append(StringBuilder builder, Frame frame);
+
+    }
+
+    private static final class ObjectAppender extends Appender {
+
+        private static final Class<?> UNINITIALIZED = Void.class;
+        private static final Class<?> GENERIC = Object.class;
+
+        private final Class<?> expected;
+
+        /**
+         * Creates an appender expecting values of the given class, or
+         * {@code null} if no value has been seen yet.
+         */
+        private ObjectAppender(Expression part, Class<?> expected) {
+            super(part);
+            this.expected = expected == null ? UNINITIALIZED : expected;
+        }
+
+        @Override
+        Appender append(StringBuilder builder, Frame frame) {
+            Object value = part.evaluate(frame);
+            if (expected == String.class && value instanceof String) {
+                builder.append((String) value);
+            } else if (expected == Integer.class && value instanceof Integer) {
+                builder.append(((Integer) value).intValue());
+            } else if (expected == Double.class && value instanceof Double) {
+                builder.append(((Double) value).doubleValue());
+            } else if (expected == Boolean.class && value instanceof Boolean) {
+                builder.append(((Boolean) value).booleanValue());
+            } else {
+                builder.append(value);
+                if (expected == UNINITIALIZED && value != null) {
+                    return new ObjectAppender(part, value.getClass());
+                } else if (expected != GENERIC) {
+                    return new ObjectAppender(part, GENERIC);
+                }
+            }
+            return this;
+        }
+
+    }
+
+    /**
+     * A function call, which links itself on its first execution into a
+     * method handle reading the receiver and calling the method. Calls with
+     * no arguments or a single one have a handle of their own shape, so the
+     * argument is passed unboxed if the method takes a primitive. If the
+     * function can't be linked, the call falls back to reflection.
+     */
+    private static final class Call extends Expression {
+
+        private static final int UNLINKED = 0;
+        private static final int NONE = 1;
+        private static final int INT = 2;
+        private static final int BOOLEAN = 3;
+        private static final int DOUBLE = 4;
+        private static final int OBJECT = 5;
+        private static final int SPREAD = 6;
+        private static final int REFLECTIVE = 7;
+
+        private final JvmFunction function;
+        private final Expression[] arguments;
+        private int shape = UNLINKED;
+        private MethodHandle handle;
+
+        private Call(Kind kind, JvmFunction function, Expression[] arguments) {
+            super(kind);
+            this.function = function;
+            this.arguments = arguments;
+        }
+
+        @Override
+        Object evaluate(Frame frame) {
+            try {
+                switch (shape) {
+                    case NONE: return (Object) handle.invokeExact();
+                    case INT: return (Object) handle.invokeExact(arguments[0].evaluateInt(frame));
+                    case BOOLEAN: return (Object) handle.invokeExact(arguments[0].evaluateBoolean(frame));
+                    case DOUBLE: return (Object) handle.invokeExact(arguments[0].evaluateDouble(frame));
+                    case OBJECT: return (Object) handle.invokeExact(arguments[0].evaluate(frame));
+                    case SPREAD: return (Object) handle.invokeExact(evaluateArguments(frame));
+                    case REFLECTIVE: return reflect(frame);
+                    default:
+                        link();
+                        return evaluate(frame);
+                }
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void link() {
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+                MethodHandle method = lookup.unreflect(function.getMethod());
+                if (!function.isStatic()) {
+                    MethodHandle receiver = null;
+                    for (Field field : function.getFields()) {
+                        MethodHandle getter = lookup.unreflectGetter(field);
+                        receiver = receiver == null ? getter : MethodHandles.filterReturnValue(receiver, getter);
+                    }
+                    method = MethodHandles.foldArguments(method, receiver);
+                }
+                if (arguments.length == 0) {
+                    handle = method.asType(MethodType.methodType(Object.class));
+                    shape = NONE;
+                } else if (arguments.length == 1 && arguments[0].kind != Kind.VOID) {
+                    Class<?> type = arguments[0].kind == Kind.INT ? int.class : arguments[0].kind == Kind.BOOLEAN ? boolean.class
+                            : arguments[0].kind == Kind.DOUBLE ? double.class : Object.class;
+                    handle = method.asType(MethodType.methodType(Object.class, type));
+                    shape = arguments[0].kind == Kind.INT ? INT : arguments[0].kind == Kind.BOOLEAN ? BOOLEAN
+                            : arguments[0].kind == Kind.DOUBLE ? DOUBLE : OBJECT;
+                } else {
+                    handle = method.asType(MethodType.genericMethodType(arguments.length)).asSpreader(Object[].class, arguments.length);
+                    shape = SPREAD;
+                }
+            } catch (IllegalAccessException | IllegalArgumentException | WrongMethodTypeException e) {
+                shape = REFLECTIVE;
+            }
+        }
+
+        private Object[] evaluateArguments(Frame frame) {
+            Object[] values = new Object[arguments.length];
+            for (int i = 0; i < arguments.length; i++) {
+                values[i] = arguments[i].evaluate(frame);
+            }
+            return values;
+        }
+
+        private Object reflect(Frame frame) {
+            try {
+                Object receiver = null;
+                for (Field field : function.getFields()) {
+                    receiver = field.get(receiver);
+                }
+                return function.getMethod().invoke(receiver, evaluateArguments(frame));
+            } catch (IllegalAccessException e) {
+                throw new AssertionError(e); //public members only
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                } else if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+    }
+
+}
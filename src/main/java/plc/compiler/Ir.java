@@ -0,0 +1,634 @@
+package plc.compiler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Contains classes for the intermediate representation (IR), which stores
+ * the program as a control flow graph of basic blocks in static single
+ * assignment (SSA) form: every value is defined by exactly one instruction,
+ * and values which depend on the path taken are merged by {@link Phi}s.
+ *
+ * <p>The graph keeps the structure of the source: a {@link Branch} built from
+ * an {@code IF} knows the block where its arms merge, and loop headers are
+ * marked, so {@link IrEmitter} can turn the graph back into an AST.</p>
+ */
+public final class Ir {
+
+    private final List<Block> blocks = new ArrayList<>();
+    private int ids = 0;
+
+    public Block getEntry() {
+        return blocks.get(0);
+    }
+
+    public List<Block> getBlocks() {
+        return blocks;
+    }
+
+    Block newBlock(boolean loop) {
+        Block block = new Block(blocks.size(), loop);
+        blocks.add(block);
+        return block;
+    }
+
+    int nextId() {
+        return ids++;
+    }
+
+    /**
+     * Returns the number of instructions in the graph, including phis.
+     */
+    public int size() {
+        int size = 0;
+        for (Block block : blocks) {
+            size += block.phis.size() + block.instructions.size();
+        }
+        return size;
+    }
+
+    /**
+     * Replaces every use of a key by its value, following chains of
+     * replacements.
+     */
+    public void replace(Map<Value, Value> replacements) {
+        if (replacements.isEmpty()) {
+            return;
+        }
+        for (Block block : blocks) {
+            for (Phi phi : block.phis) {
+                phi.getOperands().replaceAll(operand -> resolve(operand, replacements));
+            }
+            for (Instruction instruction : block.instructions) {
+                instruction.operands.replaceAll(operand -> resolve(operand, replacements));
+            }
+            if (block.terminator instanceof Branch) {
+                Branch branch = (Branch) block.terminator;
+                branch.condition = resolve(branch.condition, replacements);
+            }
+        }
+    }
+
+    private static Value resolve(Value value, Map<Value, Value> replacements) {
+        while (replacements.containsKey(value)) {
+            value = replacements.get(value);
+        }
+        return value;
+    }
+
+    /**
+     * Removes the blocks which can't be reached from the entry, along with
+     * the phi operands for the edges leaving them.
+     */
+    public void removeUnreachable() {
+        Set<Block> reachable = new HashSet<>();
+        Deque<Block> worklist = new ArrayDeque<>();
+        worklist.add(getEntry());
+        while (!worklist.isEmpty()) {
+            Block block = worklist.remove();
+            if (reachable.add(block)) {
+                worklist.addAll(block.getSuccessors());
+            }
+        }
+        for (Iterator<Block> iterator = blocks.iterator(); iterator.hasNext(); ) {
+            Block block = iterator.next();
+            if (!reachable.contains(block)) {
+                for (Block successor : block.getSuccessors()) {
+                    successor.removePredecessor(block);
+                }
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes phis which merge a single value (ignoring the phi itself),
+     * replacing them with that value until no such phi is left.
+     */
+    public void removeTrivialPhis() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            Map<Value, Value> replacements = new HashMap<>();
+            for (Block block : blocks) {
+                for (Iterator<Phi> iterator = block.phis.iterator(); iterator.hasNext(); ) {
+                    Phi phi = iterator.next();
+                    Value same = null;
+                    boolean trivial = true;
+                    for (Value operand : phi.getOperands()) {
+                        if (operand == phi || operand == same || operand.equals(same)) {
+                            continue;
+                        } else if (same != null) {
+                            trivial = false;
+                            break;
+                        }
+                        same = operand;
+                    }
+                    if (trivial && same != null) {
+                        replacements.put(phi, same);
+                        iterator.remove();
+                        changed = true;
+                    }
+                }
+            }
+            replace(replacements);
+        }
+    }
+
+    /**
+     * Returns the blocks in reverse postorder, where every block comes before
+     * its successors except along loop back edges.
+     */
+    public List<Block> getReversePostorder() {
+        List<Block> order = new ArrayList<>();
+        postorder(getEntry(), new HashSet<>(), order);
+        Collections.reverse(order);
+        return order;
+    }
+
+    private static void postorder(Block block, Set<Block> visited, List<Block> order) {
+        if (visited.add(block)) {
+            for (Block successor : block.getSuccessors()) {
+                postorder(successor, visited, order);
+            }
+            order.add(block);
+        }
+    }
+
+    /**
+     * Computes the immediate dominator of every reachable block, mapping the
+     * entry to itself (Cooper, Harvey and Kennedy's iterative algorithm).
+     */
+    public Map<Block, Block> getDominators() {
+        List<Block> order = getReversePostorder();
+        Map<Block, Integer> index = new HashMap<>();
+        for (int i = 0; i < order.size(); i++) {
+            index.put(order.get(i), i);
+        }
+        Map<Block, Block> dominators = new HashMap<>();
+        dominators.put(getEntry(), getEntry());
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Block block : order.subList(1, order.size())) {
+                Block dominator = null;
+                for (Block predecessor : block.predecessors) {
+                    if (!dominators.containsKey(predecessor)) {
+                        continue;
+                    }
+                    dominator = dominator == null ? predecessor : intersect(predecessor, dominator, dominators, index);
+                }
+                if (dominators.get(block) != dominator) {
+                    dominators.put(block, dominator);
+                    changed = true;
+                }
+            }
+        }
+        return dominators;
+    }
+
+    private static Block intersect(Block left, Block right, Map<Block, Block> dominators, Map<Block, Integer> index) {
+        while (left != right) {
+            while (index.get(left) > index.get(right)) {
+                left = dominators.get(left);
+            }
+            while (index.get(right) > index.get(left)) {
+                right = dominators.get(right);
+            }
+        }
+        return left;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Block block : blocks) {
+            builder.append(block).append(":");
+            for (Phi phi : block.phis) {
+                builder.append(System.lineSeparator()).append("    ").append(phi.describe());
+            }
+            for (Instruction instruction : block.instructions) {
+                builder.append(System.lineSeparator()).append("    ").append(instruction.describe());
+            }
+            builder.append(System.lineSeparator()).append("    ").append(block.terminator).append(System.lineSeparator());
+        }
+        return builder.toString();
+    }
+
+    public static final class Block {
+
+        private final int id;
+        private final boolean loop;
+        private final List<Block> predecessors = new ArrayList<>();
+        private final List<Phi> phis = new ArrayList<>();
+        private final List<Instruction> instructions = new ArrayList<>();
+        private Terminator terminator;
+
+        private Block(int id, boolean loop) {
+            this.id = id;
+            this.loop = loop;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * Returns true if this block is the header of a {@code WHILE} loop,
+         * which holds the phis for the loop's variables and computes its
+         * condition.
+         */
+        public boolean isLoop() {
+            return loop;
+        }
+
+        public List<Block> getPredecessors() {
+            return predecessors;
+        }
+
+        public List<Phi> getPhis() {
+            return phis;
+        }
+
+        public List<Instruction> getInstructions() {
+            return instructions;
+        }
+
+        public Terminator getTerminator() {
+            return terminator;
+        }
+
+        /**
+         * Replaces the terminator, updating the predecessors (and phis) of
+         * the blocks which are no longer or newly successors.
+         */
+        public void setTerminator(Terminator terminator) {
+            if (this.terminator != null) {
+                for (Block successor : this.terminator.getSuccessors()) {
+                    if (!terminator.getSuccessors().contains(successor)) {
+                        successor.removePredecessor(this);
+                    }
+                }
+            }
+            List<Block> previous = this.terminator != null ? this.terminator.getSuccessors() : Collections.emptyList();
+            this.terminator = terminator;
+            for (Block successor : terminator.getSuccessors()) {
+                if (!previous.contains(successor)) {
+                    successor.predecessors.add(this);
+                }
+            }
+        }
+
+        public List<Block> getSuccessors() {
+            return terminator != null ? terminator.getSuccessors() : Collections.emptyList();
+        }
+
+        private void removePredecessor(Block predecessor) {
+            int index = predecessors.indexOf(predecessor);
+            predecessors.remove(index);
+            for (Phi phi : phis) {
+                phi.getOperands().remove(index);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return (loop ? "loop" : "block") + id;
+        }
+
+    }
+
+    public static abstract class Value {
+
+        private final Stdlib.Type type;
+
+        private Value(Stdlib.Type type) {
+            this.type = type;
+        }
+
+        public final Stdlib.Type getType() {
+            return type;
+        }
+
+    }
+
+    public static final class Constant extends Value {
+
+        private final Object value;
+        private final boolean literal;
+
+        public Constant(Stdlib.Type type, Object value) {
+            this(type, value, true);
+        }
+
+        public Constant(Stdlib.Type type, Object value, boolean literal) {
+            super(type);
+            this.value = value;
+            this.literal = literal;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+
+        /**
+         * Returns true if the constant is a constant expression in Java, a
+         * literal or computed from literals alone, as opposed to a value a
+         * variable was found to hold. Java folds and interns concatenations
+         * of constant expressions, but creates a new string for any other.
+         */
+        public boolean isLiteral() {
+            return literal;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Constant &&
+                    value.equals(((Constant) obj).value) &&
+                    getType() == ((Constant) obj).getType();
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(value, getType());
+        }
+
+        @Override
+        public String toString() {
+            return value instanceof String ? "\"" + value + "\"" : String.valueOf(value);
+        }
+
+    }
+
+    public static abstract class Instruction extends Value {
+
+        private final int id;
+        private final List<Value> operands;
+        private String name;
+        private Block block;
+
+        private Instruction(Ir ir, Stdlib.Type type, List<Value> operands) {
+            super(type);
+            this.id = ir.nextId();
+            this.operands = new ArrayList<>(operands);
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public List<Value> getOperands() {
+            return operands;
+        }
+
+        /**
+         * Returns the name of the source variable this value was assigned to
+         * first, or {@code null}.
+         */
+        public String getName() {
+            return name;
+        }
+
+        void setName(String name) {
+            if (this.name == null) {
+                this.name = name;
+            }
+        }
+
+        public Block getBlock() {
+            return block;
+        }
+
+        /**
+         * Returns true if the instruction must run exactly where it is, even
+         * when its value is unused.
+         */
+        public boolean hasSideEffects() {
+            return false;
+        }
+
+        abstract String describe();
+
+        @Override
+        public String toString() {
+            return (name != null ? name : "") + "%" + id;
+        }
+
+    }
+
+    public static final class Binary extends Instruction {
+
+        private final String operator;
+
+        public Binary(Ir ir, Block block, Stdlib.Type type, String operator, Value left, Value right) {
+            super(ir, type, Arrays.asList(left, right));
+            this.operator = operator;
+            append(block, this);
+        }
+
+        public String getOperator() {
+            return operator;
+        }
+
+        public Value getLeft() {
+            return getOperands().get(0);
+        }
+
+        public Value getRight() {
+            return getOperands().get(1);
+        }
+
+        /**
+         * Integer division throws if the divisor is zero, so it is only free
+         * of side effects when dividing by a non-zero constant.
+         */
+        @Override
+        public boolean hasSideEffects() {
+            if (!operator.equals("/") || getType() == Stdlib.Type.DECIMAL) {
+                return false;
+            }
+            return !(getRight() instanceof Constant) || Integer.valueOf(0).equals(((Constant) getRight()).getValue());
+        }
+
+        @Override
+        String describe() {
+            return this + " = " + getLeft() + " " + operator + " " + getRight();
+        }
+
+    }
+
+    /**
+     * Widens an {@code INTEGER} value assigned to a {@code DECIMAL} variable.
+     */
+    public static final class Convert extends Instruction {
+
+        public Convert(Ir ir, Block block, Stdlib.Type type, Value value) {
+            super(ir, type, Collections.singletonList(value));
+            append(block, this);
+        }
+
+        public Value getValue() {
+            return getOperands().get(0);
+        }
+
+        @Override
+        String describe() {
+            return this + " = (" + getType().getJvmName() + ") " + getValue();
+        }
+
+    }
+
+    public static final class Call extends Instruction {
+
+        private final String function;
+
+        public Call(Ir ir, Block block, Stdlib.Type type, String function, List<Value> arguments) {
+            super(ir, type, arguments);
+            this.function = function;
+            append(block, this);
+        }
+
+        /**
+         * Returns the JVM name of the function.
+         */
+        public String getFunction() {
+            return function;
+        }
+
+        @Override
+        public boolean hasSideEffects() {
+            return true;
+        }
+
+        @Override
+        String describe() {
+            return this + " = " + function + getOperands();
+        }
+
+    }
+
+    /**
+     * Merges the values reaching a block; operand {@code i} is the value
+     * coming from the block's predecessor {@code i}.
+     */
+    public static final class Phi extends Instruction {
+
+        public Phi(Ir ir, Block block, Stdlib.Type type) {
+            super(ir, type, Collections.emptyList());
+            super.block = block;
+            block.phis.add(this);
+        }
+
+        @Override
+        String describe() {
+            return this + " = phi" + getOperands();
+        }
+
+    }
+
+    private static void append(Block block, Instruction instruction) {
+        instruction.block = block;
+        block.instructions.add(instruction);
+    }
+
+    public static abstract class Terminator {
+
+        public abstract List<Block> getSuccessors();
+
+    }
+
+    public static final class Jump extends Terminator {
+
+        private final Block target;
+
+        public Jump(Block target) {
+            this.target = target;
+        }
+
+        public Block getTarget() {
+            return target;
+        }
+
+        @Override
+        public List<Block> getSuccessors() {
+            return Collections.singletonList(target);
+        }
+
+        @Override
+        public String toString() {
+            return "jump " + target;
+        }
+
+    }
+
+    public static final class Branch extends Terminator {
+
+        private Value condition;
+        private final Block thenBlock;
+        private final Block elseBlock;
+        private final Block merge;
+
+        /**
+         * Creates a branch; {@code merge} is the block where the arms of an
+         * {@code IF} join, or {@code null} for the branch of a loop header.
+         */
+        public Branch(Value condition, Block thenBlock, Block elseBlock, Block merge) {
+            this.condition = condition;
+            this.thenBlock = thenBlock;
+            this.elseBlock = elseBlock;
+            this.merge = merge;
+        }
+
+        public Value getCondition() {
+            return condition;
+        }
+
+        public Block getThenBlock() {
+            return thenBlock;
+        }
+
+        public Block getElseBlock() {
+            return elseBlock;
+        }
+
+        public Block getMerge() {
+            return merge;
+        }
+
+        @Override
+        public List<Block> getSuccessors() {
+            return Arrays.asList(thenBlock, elseBlock);
+        }
+
+        @Override
+        public String toString() {
+            return "branch " + condition + " ? " + thenBlock + " : " + elseBlock + (merge != null ? " merge " + merge : "");
+        }
+
+    }
+
+    public static final class Return extends Terminator {
+
+        @Override
+        public List<Block> getSuccessors() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public String toString() {
+            return "return";
+        }
+
+    }
+
+}
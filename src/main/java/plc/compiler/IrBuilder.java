@@ -0,0 +1,258 @@
+package plc.compiler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lowers an analyzed AST into the {@link Ir}. SSA form is built directly
+ * while visiting the AST, following Braun et al.'s "Simple and Efficient
+ * Construction of Static Single Assignment Form": each block tracks the
+ * current value of every variable, and a phi is only created when a variable
+ * is read in a block with several predecessors.
+ */
+public final class IrBuilder implements Ast.Visitor<Ir.Value> {
+
+    private final Ir ir = new Ir();
+    private Ir.Block block;
+
+    private final Deque<Map<String, String>> scopes = new ArrayDeque<>();
+    private final Map<String, Stdlib.Type> types = new HashMap<>();
+    private final Map<String, Map<Ir.Block, Ir.Value>> definitions = new HashMap<>();
+    private final Set<Ir.Block> sealed = new HashSet<>();
+    private final Map<Ir.Block, Map<String, Ir.Phi>> incomplete = new HashMap<>();
+
+    public static Ir build(Ast.Source ast) {
+        IrBuilder builder = new IrBuilder();
+        builder.visit(ast);
+        return builder.ir;
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Source ast) {
+        block = ir.newBlock(false);
+        seal(block);
+        scopes.push(new HashMap<>());
+        visit(ast.getStatements());
+        scopes.pop();
+        block.setTerminator(new Ir.Return());
+        ir.removeTrivialPhis();
+        return null;
+    }
+
+    private void visit(List<Ast.Statement> statements) {
+        for (Ast.Statement statement : statements) {
+            visit(statement);
+        }
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Statement.Expression ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Statement.Declaration ast) {
+        Ir.Value value = ast.getValue().isPresent() ? visit(ast.getValue().get()) : null;
+        //variables are renamed per scope since nested scopes may reuse names
+        String variable = ast.getName() + "#" + types.size();
+        scopes.peek().put(ast.getName(), variable);
+        types.put(variable, getType(ast.getType()));
+        if (value != null) {
+            write(variable, value);
+        }
+        return null;
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Statement.Assignment ast) {
+        write(lookup(ast.getName()), visit(ast.getExpression()));
+        return null;
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Statement.If ast) {
+        Ir.Value condition = visit(ast.getCondition());
+        Ir.Block thenBlock = ir.newBlock(false);
+        Ir.Block elseBlock = ir.newBlock(false);
+        Ir.Block merge = ir.newBlock(false);
+        block.setTerminator(new Ir.Branch(condition, thenBlock, elseBlock, merge));
+        seal(thenBlock);
+        seal(elseBlock);
+        block = thenBlock;
+        visitScoped(ast.getThenStatements());
+        block.setTerminator(new Ir.Jump(merge));
+        block = elseBlock;
+        visitScoped(ast.getElseStatements());
+        block.setTerminator(new Ir.Jump(merge));
+        seal(merge);
+        block = merge;
+        return null;
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Statement.While ast) {
+        Ir.Block header = ir.newBlock(true);
+        block.setTerminator(new Ir.Jump(header));
+        block = header;
+        Ir.Value condition = visit(ast.getCondition());
+        Ir.Block body = ir.newBlock(false);
+        Ir.Block exit = ir.newBlock(false);
+        header.setTerminator(new Ir.Branch(condition, body, exit, null));
+        seal(body);
+        block = body;
+        visitScoped(ast.getStatements());
+        block.setTerminator(new Ir.Jump(header));
+        seal(header);
+        seal(exit);
+        block = exit;
+        return null;
+    }
+
+    private void visitScoped(List<Ast.Statement> statements) {
+        scopes.push(new HashMap<>());
+        visit(statements);
+        scopes.pop();
+    }
+
+    private Ir.Value visit(Ast.Expression ast) {
+        return visit((Ast) ast);
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Expression.Literal ast) {
+        return new Ir.Constant(ast.getType(), ast.getValue());
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Expression.Group ast) {
+        return visit(ast.getExpression());
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Expression.Binary ast) {
+        Ir.Value left = visit(ast.getLeft());
+        Ir.Value right = visit(ast.getRight());
+        return new Ir.Binary(ir, block, ast.getType(), ast.getOperator(), left, right);
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Expression.Variable ast) {
+        return read(lookup(ast.getName()), block);
+    }
+
+    @Override
+    public Ir.Value visit(Ast.Expression.Function ast) {
+        List<Ir.Value> arguments = new ArrayList<>();
+        for (Ast.Expression argument : ast.getArguments()) {
+            arguments.add(visit(argument));
+        }
+        return new Ir.Call(ir, block, ast.getType(), ast.getName(), arguments);
+    }
+
+    private String lookup(String name) {
+        for (Map<String, String> scope : scopes) {
+            if (scope.containsKey(name)) {
+                return scope.get(name);
+            }
+        }
+        throw new IllegalArgumentException("The identifier " + name + " is not defined.");
+    }
+
+    private void write(String variable, Ir.Value value) {
+        Stdlib.Type type = types.get(variable);
+        if (type == Stdlib.Type.DECIMAL && value.getType() == Stdlib.Type.INTEGER) {
+            value = value instanceof Ir.Constant
+                    ? new Ir.Constant(type, ((Integer) ((Ir.Constant) value).getValue()).doubleValue(), false)
+                    : new Ir.Convert(ir, block, type, value);
+        } else if (value instanceof Ir.Constant && ((Ir.Constant) value).isLiteral()) {
+            //reading a variable is never a constant expression, and has the variable's type
+            value = new Ir.Constant(type, ((Ir.Constant) value).getValue(), false);
+        }
+        if (value instanceof Ir.Instruction) {
+            ((Ir.Instruction) value).setName(getName(variable));
+        }
+        write(variable, block, value);
+    }
+
+    private void write(String variable, Ir.Block block, Ir.Value value) {
+        definitions.computeIfAbsent(variable, v -> new HashMap<>()).put(block, value);
+    }
+
+    private Ir.Value read(String variable, Ir.Block block) {
+        Ir.Value value = definitions.computeIfAbsent(variable, v -> new HashMap<>()).get(block);
+        if (value != null) {
+            return value;
+        }
+        if (!sealed.contains(block)) {
+            //not all predecessors are known yet, the operands are added in seal
+            Ir.Phi phi = new Ir.Phi(ir, block, types.get(variable));
+            phi.setName(getName(variable));
+            incomplete.computeIfAbsent(block, b -> new HashMap<>()).put(variable, phi);
+            value = phi;
+        } else if (block.getPredecessors().size() == 1) {
+            value = read(variable, block.getPredecessors().get(0));
+        } else if (block.getPredecessors().isEmpty()) {
+            //read before any assignment, which the Java compiler rejects
+            value = getDefault(types.get(variable));
+        } else {
+            Ir.Phi phi = new Ir.Phi(ir, block, types.get(variable));
+            phi.setName(getName(variable));
+            write(variable, block, phi);
+            addOperands(variable, phi);
+            value = phi;
+        }
+        write(variable, block, value);
+        return value;
+    }
+
+    private void addOperands(String variable, Ir.Phi phi) {
+        for (Ir.Block predecessor : phi.getBlock().getPredecessors()) {
+            phi.getOperands().add(read(variable, predecessor));
+        }
+    }
+
+    /**
+     * Marks a block as having all of its predecessors, completing the phis
+     * created while it had not.
+     */
+    private void seal(Ir.Block block) {
+        Map<String, Ir.Phi> phis = incomplete.remove(block);
+        if (phis != null) {
+            phis.forEach(this::addOperands);
+        }
+        sealed.add(block);
+    }
+
+    private static String getName(String variable) {
+        return variable.substring(0, variable.indexOf('#'));
+    }
+
+    private static Stdlib.Type getType(String name) {
+        for (Stdlib.Type type : new Stdlib.Type[] {Stdlib.Type.BOOLEAN, Stdlib.Type.INTEGER, Stdlib.Type.DECIMAL, Stdlib.Type.STRING, Stdlib.Type.ANY}) {
+            if (type.getJvmName().equals(name)) {
+                return type;
+            }
+        }
+        return Stdlib.getType(name);
+    }
+
+    private static Ir.Constant getDefault(Stdlib.Type type) {
+        if (type == Stdlib.Type.BOOLEAN) {
+            return new Ir.Constant(type, false);
+        } else if (type == Stdlib.Type.INTEGER) {
+            return new Ir.Constant(type, 0);
+        } else if (type == Stdlib.Type.DECIMAL) {
+            return new Ir.Constant(type, 0.0);
+        } else {
+            return new Ir.Constant(type, "");
+        }
+    }
+
+}
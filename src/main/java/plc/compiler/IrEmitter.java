@@ -0,0 +1,272 @@
+package plc.compiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Turns the {@link Ir} back into an AST for the {@link Generator}, following
+ * the structure kept by the graph: loop headers become {@code WHILE}s and
+ * branches with a merge block become {@code IF}s.
+ *
+ * <p>Phis, and values used more than once or outside their block, become
+ * variables; other values are inlined into the expression using them. Values
+ * computed by a loop header are always inlined, since the condition of a
+ * {@code WHILE} has to be a single expression. Phis are resolved by assigning
+ * their variable at the end of each predecessor.</p>
+ *
+ * <p>Constants are inlined as literals, except in concatenations when they
+ * aren't literals in the source: Java would fold the concatenation into an
+ * interned string, which {@code ==} could tell apart from the new string
+ * created at runtime, so they are read from a variable instead.</p>
+ */
+public final class IrEmitter {
+
+    private final Map<Ir.Value, Integer> uses = new HashMap<>();
+    private final Map<Ir.Value, Ir.Block> useBlocks = new HashMap<>();
+    private final Set<Ir.Phi> declared = new HashSet<>();
+    private final Map<Ir.Constant, Ast.Statement.Declaration> constants = new LinkedHashMap<>();
+    private int temporaries = 0;
+
+    private IrEmitter(Ir ir) {
+        for (Ir.Block block : ir.getBlocks()) {
+            for (Ir.Phi phi : block.getPhis()) {
+                for (int i = 0; i < phi.getOperands().size(); i++) {
+                    use(phi.getOperands().get(i), block.getPredecessors().get(i));
+                }
+            }
+            for (Ir.Instruction instruction : block.getInstructions()) {
+                instruction.getOperands().forEach(operand -> use(operand, block));
+            }
+            if (block.getTerminator() instanceof Ir.Branch) {
+                use(((Ir.Branch) block.getTerminator()).getCondition(), block);
+            }
+        }
+    }
+
+    public static Ast.Source emit(Ir ir) {
+        IrEmitter emitter = new IrEmitter(ir);
+        List<Ast.Statement> statements = new ArrayList<>();
+        emitter.emit(ir.getEntry(), null, statements);
+        statements.addAll(0, emitter.constants.values());
+        return new Ast.Source(statements);
+    }
+
+    private void use(Ir.Value value, Ir.Block block) {
+        uses.merge(value, 1, Integer::sum);
+        useBlocks.put(value, block);
+    }
+
+    /**
+     * Emits the blocks starting at {@code block}, following the control flow
+     * until reaching {@code stop} or the end of the program.
+     */
+    private void emit(Ir.Block block, Ir.Block stop, List<Ast.Statement> statements) {
+        while (block != null && block != stop) {
+            Ir.Terminator terminator = block.getTerminator();
+            if (block.isLoop() && (terminator instanceof Ir.Branch || block.getPredecessors().size() > 1)) {
+                Ast.Expression condition;
+                Ir.Block body;
+                Ir.Block exit;
+                if (terminator instanceof Ir.Branch) {
+                    condition = expression(((Ir.Branch) terminator).getCondition());
+                    body = ((Ir.Branch) terminator).getThenBlock();
+                    exit = ((Ir.Branch) terminator).getElseBlock();
+                } else {
+                    condition = new Ast.Expression.Literal(Stdlib.Type.BOOLEAN, true);
+                    body = ((Ir.Jump) terminator).getTarget();
+                    exit = null;
+                }
+                List<Ast.Statement> loop = new ArrayList<>();
+                emit(body, block, loop);
+                statements.add(new Ast.Statement.While(condition, loop));
+                block = exit;
+                continue;
+            }
+            for (Ir.Instruction instruction : block.getInstructions()) {
+                if (instruction instanceof Ir.Call && instruction.getType() == Stdlib.Type.VOID) {
+                    statements.add(new Ast.Statement.Expression(expression(instruction, true)));
+                } else if (!isInlined(instruction)) {
+                    statements.add(new Ast.Statement.Declaration(getName(instruction),
+                            instruction.getType().getJvmName(), Optional.of(expression(instruction, true))));
+                }
+            }
+            if (terminator instanceof Ir.Jump) {
+                Ir.Block target = ((Ir.Jump) terminator).getTarget();
+                copy(block, target, statements);
+                block = target;
+            } else if (terminator instanceof Ir.Branch) {
+                Ir.Branch branch = (Ir.Branch) terminator;
+                for (Ir.Phi phi : branch.getMerge().getPhis()) {
+                    declared.add(phi);
+                    statements.add(new Ast.Statement.Declaration(getName(phi), phi.getType().getJvmName(), Optional.empty()));
+                }
+                List<Ast.Statement> thenStatements = new ArrayList<>();
+                emit(branch.getThenBlock(), branch.getMerge(), thenStatements);
+                List<Ast.Statement> elseStatements = new ArrayList<>();
+                emit(branch.getElseBlock(), branch.getMerge(), elseStatements);
+                statements.add(new Ast.Statement.If(expression(branch.getCondition()), thenStatements, elseStatements));
+                block = branch.getMerge().getPredecessors().isEmpty() ? null : branch.getMerge();
+            } else {
+                block = null;
+            }
+        }
+    }
+
+    /**
+     * Assigns the phis of {@code target} the values they take when coming
+     * from {@code block}. The copies happen in parallel, so a phi is only
+     * assigned once no remaining copy reads it; copies reading each other in
+     * a cycle go through a temporary.
+     */
+    private void copy(Ir.Block block, Ir.Block target, List<Ast.Statement> statements) {
+        int index = target.getPredecessors().indexOf(block);
+        Map<Ir.Phi, Ast.Expression> pending = new LinkedHashMap<>();
+        Map<Ir.Phi, Set<Ir.Value>> reads = new HashMap<>();
+        for (Ir.Phi phi : target.getPhis()) {
+            Ir.Value operand = phi.getOperands().get(index);
+            if (operand != phi) {
+                pending.put(phi, expression(operand));
+                Set<Ir.Value> read = new HashSet<>();
+                reads(operand, new HashSet<>(target.getPhis()), read);
+                read.remove(phi);
+                reads.put(phi, read);
+            }
+        }
+        while (!pending.isEmpty()) {
+            Ir.Phi next = null;
+            for (Ir.Phi phi : pending.keySet()) {
+                if (pending.keySet().stream().noneMatch(other -> reads.get(other).contains(phi))) {
+                    next = phi;
+                    break;
+                }
+            }
+            if (next == null) {
+                //every remaining copy is part of a cycle, save one of them
+                next = pending.keySet().iterator().next();
+                String temporary = "$" + next.getId() + "$" + temporaries++;
+                statements.add(new Ast.Statement.Declaration(temporary, next.getType().getJvmName(), Optional.of(pending.get(next))));
+                pending.put(next, new Ast.Expression.Variable(next.getType(), temporary));
+                reads.get(next).clear();
+                continue;
+            }
+            Ast.Expression value = pending.remove(next);
+            if (declared.add(next)) {
+                statements.add(new Ast.Statement.Declaration(getName(next), next.getType().getJvmName(), Optional.of(value)));
+            } else {
+                statements.add(new Ast.Statement.Assignment(getName(next), value));
+            }
+        }
+    }
+
+    private void reads(Ir.Value value, Set<Ir.Value> phis, Set<Ir.Value> read) {
+        if (phis.contains(value)) {
+            read.add(value);
+        } else if (value instanceof Ir.Instruction && isInlined((Ir.Instruction) value)) {
+            for (Ir.Value operand : ((Ir.Instruction) value).getOperands()) {
+                reads(operand, phis, read);
+            }
+        }
+    }
+
+    /**
+     * Returns true if the value is computed where it is used instead of
+     * being stored in a variable.
+     */
+    private boolean isInlined(Ir.Instruction instruction) {
+        if (instruction instanceof Ir.Phi || instruction instanceof Ir.Call || instruction instanceof Ir.Convert) {
+            return false;
+        } else if (instruction.getBlock().isLoop()) {
+            return true;
+        }
+        return !instruction.hasSideEffects() && uses.getOrDefault(instruction, 0) <= 1
+                && useBlocks.getOrDefault(instruction, instruction.getBlock()) == instruction.getBlock();
+    }
+
+    private Ast.Expression expression(Ir.Value value) {
+        return expression(value, false);
+    }
+
+    /**
+     * Returns the expression for a value, which is the computation itself if
+     * it is inlined or {@code definition} is set and a variable otherwise.
+     */
+    private Ast.Expression expression(Ir.Value value, boolean definition) {
+        if (value instanceof Ir.Constant) {
+            return new Ast.Expression.Literal(value.getType(), ((Ir.Constant) value).getValue());
+        }
+        Ir.Instruction instruction = (Ir.Instruction) value;
+        if (!definition && !isInlined(instruction)) {
+            return new Ast.Expression.Variable(instruction.getType(), getName(instruction));
+        } else if (instruction instanceof Ir.Binary) {
+            Ir.Binary binary = (Ir.Binary) instruction;
+            Ast.Expression left = operand(binary, binary.getLeft());
+            Ast.Expression right = operand(binary, binary.getRight());
+            if (getPrecedence(left) < getPrecedence(binary.getOperator())) {
+                left = new Ast.Expression.Group(left.getType(), left);
+            }
+            if (getPrecedence(right) <= getPrecedence(binary.getOperator())) {
+                right = new Ast.Expression.Group(right.getType(), right);
+            }
+            return new Ast.Expression.Binary(binary.getType(), binary.getOperator(), left, right);
+        } else if (instruction instanceof Ir.Convert) {
+            return expression(((Ir.Convert) instruction).getValue());
+        } else if (instruction instanceof Ir.Call) {
+            List<Ast.Expression> arguments = new ArrayList<>();
+            for (Ir.Value argument : instruction.getOperands()) {
+                arguments.add(expression(argument));
+            }
+            return new Ast.Expression.Function(instruction.getType(), ((Ir.Call) instruction).getFunction(), arguments);
+        } else {
+            throw new AssertionError(instruction.getClass());
+        }
+    }
+
+    /**
+     * Returns the expression for an operand of a binary, which reads a
+     * variable holding the constant if the constant isn't a literal and the
+     * binary is a concatenation or the constant's type is {@code ANY}, where
+     * the literal would have the type of its value instead.
+     */
+    private Ast.Expression operand(Ir.Binary binary, Ir.Value operand) {
+        if (!(operand instanceof Ir.Constant) || ((Ir.Constant) operand).isLiteral()
+                || binary.getType() != Stdlib.Type.STRING && operand.getType() != Stdlib.Type.ANY) {
+            return expression(operand);
+        }
+        Ast.Statement.Declaration declaration = constants.computeIfAbsent((Ir.Constant) operand, constant ->
+                new Ast.Statement.Declaration("$constant$" + constants.size(), constant.getType().getJvmName(), Optional.of(expression(constant))));
+        return new Ast.Expression.Variable(operand.getType(), declaration.getName());
+    }
+
+    private static int getPrecedence(Ast.Expression expression) {
+        return expression instanceof Ast.Expression.Binary
+                ? getPrecedence(((Ast.Expression.Binary) expression).getOperator()) : Integer.MAX_VALUE;
+    }
+
+    private static int getPrecedence(String operator) {
+        switch (operator) {
+            case "==":
+            case "!=":
+                return 0;
+            case "<<":
+            case ">>":
+            case ">>>":
+                return 1;
+            case "+":
+            case "-":
+                return 2;
+            default:
+                return 3;
+        }
+    }
+
+    private static String getName(Ir.Instruction instruction) {
+        return (instruction.getName() != null ? instruction.getName() : "") + "$" + instruction.getId();
+    }
+
+}
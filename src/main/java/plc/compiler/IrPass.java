@@ -0,0 +1,12 @@
+package plc.compiler;
+
+/**
+ * An optimization which transforms the {@link Ir} in place.
+ */
+public interface IrPass {
+
+    String getName();
+
+    void run(Ir ir);
+
+}
@@ -0,0 +1,139 @@
+package plc.compiler;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A function resolved from its JVM name, which is a class in
+ * {@code java.lang} followed by any number of static fields and a method,
+ * such as {@code System.out.println}. The method is called on the value of
+ * the last field, or statically if there are none, and the overload is chosen
+ * by the argument types.
+ */
+final class JvmFunction {
+
+    private final Class<?> owner;
+    private final List<Field> fields;
+    private final Method method;
+
+    private JvmFunction(Class<?> owner, List<Field> fields, Method method) {
+        this.owner = owner;
+        this.fields = fields;
+        this.method = method;
+    }
+
+    public static JvmFunction resolve(String name, List<Stdlib.Type> arguments) {
+        String[] parts = name.split("\\.");
+        Class<?> owner = load(parts[0]);
+        Class<?> receiver = owner;
+        List<Field> fields = new ArrayList<>();
+        for (int i = 1; i < parts.length - 1; i++) {
+            try {
+                Field field = receiver.getField(parts[i]);
+                fields.add(field);
+                receiver = field.getType();
+            } catch (NoSuchFieldException e) {
+                throw new IllegalArgumentException("The function " + name + " could not be resolved.");
+            }
+        }
+        return new JvmFunction(owner, Collections.unmodifiableList(fields),
+                resolve(receiver, parts[parts.length - 1], arguments, fields.isEmpty()));
+    }
+
+    /**
+     * Returns the class named by the first part of the JVM name.
+     */
+    public Class<?> getOwner() {
+        return owner;
+    }
+
+    /**
+     * Returns the fields read to get the receiver, the first of which is
+     * static and the rest read from the previous one.
+     */
+    public List<Field> getFields() {
+        return fields;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public boolean isStatic() {
+        return fields.isEmpty();
+    }
+
+    /**
+     * Returns the overload taking exactly the argument types if there is
+     * one, and otherwise the first (by signature) the arguments can be
+     * converted to.
+     */
+    private static Method resolve(Class<?> owner, String name, List<Stdlib.Type> arguments, boolean isStatic) {
+        Method[] methods = owner.getMethods();
+        Arrays.sort(methods, Comparator.comparing(Method::toString));
+        Method applicable = null;
+        for (Method method : methods) {
+            if (!method.getName().equals(name) || method.getParameterCount() != arguments.size()
+                    || Modifier.isStatic(method.getModifiers()) != isStatic || method.getDeclaringClass().isInterface()) {
+                continue;
+            }
+            boolean exact = true;
+            boolean convertible = true;
+            for (int i = 0; i < arguments.size(); i++) {
+                Class<?> parameter = method.getParameterTypes()[i];
+                Class<?> argument = javaClass(arguments.get(i));
+                exact &= parameter == argument;
+                convertible &= parameter == argument || parameter == double.class && argument == int.class
+                        || !parameter.isPrimitive() && parameter.isAssignableFrom(box(argument));
+            }
+            if (exact) {
+                return method;
+            } else if (convertible && applicable == null) {
+                applicable = method;
+            }
+        }
+        if (applicable == null) {
+            throw new IllegalArgumentException("The method " + owner.getName() + "." + name + " could not be resolved.");
+        }
+        return applicable;
+    }
+
+    /**
+     * Loads a class by its name in {@code java.lang} or its binary name.
+     */
+    public static Class<?> load(String name) {
+        try {
+            return Class.forName("java.lang." + name);
+        } catch (ClassNotFoundException e) {
+            try {
+                return Class.forName(name);
+            } catch (ClassNotFoundException ignored) {
+                throw new IllegalArgumentException("The class " + name + " could not be resolved.");
+            }
+        }
+    }
+
+    public static Class<?> javaClass(Stdlib.Type type) {
+        switch (type.getJvmName()) {
+            case "int":
+                return int.class;
+            case "double":
+                return double.class;
+            case "boolean":
+                return boolean.class;
+            default:
+                return load(type.getJvmName());
+        }
+    }
+
+    public static Class<?> box(Class<?> type) {
+        return type == int.class ? Integer.class : type == double.class ? Double.class : type == boolean.class ? Boolean.class : type;
+    }
+
+}
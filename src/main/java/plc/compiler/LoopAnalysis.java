@@ -0,0 +1,57 @@
+package plc.compiler;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Computes which variables a {@code WHILE} loop may change between
+ * iterations: every variable assigned anywhere in its body, including nested
+ * blocks, and every variable declared in it, since those are declared again
+ * on each iteration. Any other variable read by the loop holds the same value
+ * for the whole loop.
+ */
+public final class LoopAnalysis {
+
+    private LoopAnalysis() {}
+
+    public static Set<String> getAssigned(Ast.Statement.While ast) {
+        return getAssigned(ast.getStatements());
+    }
+
+    /**
+     * Returns the variables assigned or declared by the statements of a
+     * block, including nested blocks.
+     */
+    public static Set<String> getAssigned(List<Ast.Statement> statements) {
+        Set<String> assigned = new HashSet<>();
+        collectAssigned(statements, assigned);
+        return assigned;
+    }
+
+    /**
+     * Returns true if the expression reads none of the given variables.
+     */
+    public static boolean isInvariant(Ast.Expression ast, Set<String> assigned) {
+        Set<String> reads = new HashSet<>();
+        Rewriter.collectReads(ast, reads);
+        reads.retainAll(assigned);
+        return reads.isEmpty();
+    }
+
+    private static void collectAssigned(List<Ast.Statement> statements, Set<String> assigned) {
+        for (Ast.Statement statement : statements) {
+            if (statement instanceof Ast.Statement.Declaration) {
+                assigned.add(((Ast.Statement.Declaration) statement).getName());
+            } else if (statement instanceof Ast.Statement.Assignment) {
+                assigned.add(((Ast.Statement.Assignment) statement).getName());
+            } else if (statement instanceof Ast.Statement.If) {
+                collectAssigned(((Ast.Statement.If) statement).getThenStatements(), assigned);
+                collectAssigned(((Ast.Statement.If) statement).getElseStatements(), assigned);
+            } else if (statement instanceof Ast.Statement.While) {
+                collectAssigned(((Ast.Statement.While) statement).getStatements(), assigned);
+            }
+        }
+    }
+
+}
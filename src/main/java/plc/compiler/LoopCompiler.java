@@ -0,0 +1,37 @@
+package plc.compiler;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compiles a single {@code WHILE} loop of the {@link Interpreter} to
+ * bytecode, so a hot loop can continue running compiled. The
+ * {@link BytecodeGenerator} generates the loop as the static method
+ *
+ * <pre>{@code static void run(int[] $ints, double[] $doubles, Object[] $objects)}</pre>
+ *
+ * which takes the arrays of the interpreter's frame, and every loop is
+ * loaded by a class loader of its own so it can be unloaded once the
+ * interpreter is done with it.
+ */
+final class LoopCompiler {
+
+    private static final String NAME = "plc.compiler.Loop";
+    private static final MethodType TYPE = MethodType.methodType(void.class, int[].class, double[].class, Object[].class);
+
+    private LoopCompiler() {}
+
+    public static MethodHandle compile(Ast.Statement.While ast, List<Interpreter.Slot> variables) {
+        byte[] bytes = BytecodeGenerator.generate(NAME, ast, variables);
+        Class<?> loop = InMemoryCompiler.load(Collections.singletonMap(NAME, bytes)).get(NAME);
+        try {
+            return MethodHandles.publicLookup().findStatic(loop, "run", TYPE);
+        } catch (IllegalAccessException | NoSuchMethodException e) {
+            throw new AssertionError(e); //generated as a public method
+        }
+    }
+
+}
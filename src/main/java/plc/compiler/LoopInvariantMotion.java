@@ -0,0 +1,77 @@
+package plc.compiler;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Hoists expressions out of {@code WHILE} loops when they read no variable
+ * the loop changes (see {@link LoopAnalysis}). Each largest invariant,
+ * side-effect free binary expression is computed once into a temporary
+ * declared right before the loop, and the loop reads the temporary instead.
+ * Concatenations stay in the loop, since each iteration creates a new string
+ * which {@code ==} can tell apart from the ones before.
+ * Nested loops are handled first, so an expression invariant in several
+ * loops ends up before the outermost one.
+ */
+public final class LoopInvariantMotion extends Rewriter {
+
+    @Override
+    protected void rewrite(Ast.Statement ast, List<Ast.Statement> statements) {
+        Ast.Statement statement = visit(ast);
+        if (statement instanceof Ast.Statement.While) {
+            Ast.Statement.While loop = (Ast.Statement.While) statement;
+            Set<String> assigned = LoopAnalysis.getAssigned(loop);
+            List<Ast.Statement> body = new ArrayList<>();
+            //temporaries hoisted out of nested loops move out of this one as a whole
+            for (Ast.Statement child : loop.getStatements()) {
+                if (child instanceof Ast.Statement.Declaration && ((Ast.Statement.Declaration) child).getName().startsWith("$licm")) {
+                    Ast.Statement.Declaration declaration = (Ast.Statement.Declaration) child;
+                    assigned.remove(declaration.getName());
+                    if (LoopAnalysis.isInvariant(declaration.getValue().get(), assigned)) {
+                        statements.add(declaration);
+                        continue;
+                    }
+                    assigned.add(declaration.getName());
+                }
+                body.add(child);
+            }
+            Hoister hoister = new Hoister(assigned);
+            Ast.Expression condition = hoister.visit(loop.getCondition());
+            List<Ast.Statement> hoisted = hoister.visit(body);
+            hoister.hoisted.forEach((expression, variable) -> statements.add(new Ast.Statement.Declaration(
+                    variable.getName(), variable.getType().getJvmName(), Optional.of(expression))));
+            if (condition != loop.getCondition() || hoisted != body || body.size() != loop.getStatements().size()) {
+                statement = new Ast.Statement.While(condition, hoisted);
+            }
+        }
+        statements.add(statement);
+    }
+
+    /**
+     * Replaces invariant expressions in a loop with temporaries, keeping the
+     * expressions to be declared before the loop in order.
+     */
+    private final class Hoister extends Rewriter {
+
+        private final Set<String> assigned;
+        private final Map<Ast.Expression, Ast.Expression.Variable> hoisted = new LinkedHashMap<>();
+
+        private Hoister(Set<String> assigned) {
+            this.assigned = assigned;
+        }
+
+        @Override
+        public Ast visit(Ast.Expression.Binary ast) {
+            if (typeOf(ast) != null && !Stdlib.Type.STRING.equals(typeOf(ast)) && isPure(ast) && LoopAnalysis.isInvariant(ast, assigned)) {
+                return hoisted.computeIfAbsent(ast, expression -> new Ast.Expression.Variable(typeOf(ast), LoopInvariantMotion.this.temporary("licm")));
+            }
+            return super.visit(ast);
+        }
+
+    }
+
+}
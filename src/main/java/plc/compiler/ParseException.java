@@ -5,7 +5,7 @@ public final class ParseException extends RuntimeException {
     private final int index;
 
     public ParseException(String message, int index) {
-        super(message);
+        super(message, null, false, false); //user errors, the stack trace is never useful
         this.index = index;
     }
 
@@ -7,23 +7,68 @@ import java.util.*;
 public final class Parser {
 
     private final TokenStream tokens;
+    private final Diagnostics diagnostics;
 
     public Parser(List<Token> tokens) {
+        this(tokens, null);
+    }
+
+    /**
+     * Creates a parser which reports errors to the given diagnostics and
+     * recovers at the next statement boundary instead of throwing.
+     */
+    public Parser(List<Token> tokens, Diagnostics diagnostics) {
         this.tokens = new TokenStream(tokens);
+        this.diagnostics = diagnostics;
     }
 
     public static Ast parse(List<Token> tokens) throws ParseException {
         return new Parser(tokens).parseSource();
     }
 
+    public static Ast.Source parse(List<Token> tokens, Diagnostics diagnostics) {
+        return new Parser(tokens, diagnostics).parseSource();
+    }
+
     public Ast.Source parseSource() throws ParseException {
         List<Ast.Statement> statements = new ArrayList<Ast.Statement>();
         while(tokens.has(0)){
-            statements.add(parseStatement());
+            parseStatement(statements, false);
         }
         return new Ast.Source(statements);
     }
 
+    /**
+     * Parses a statement into the given list. When collecting diagnostics, a
+     * statement which fails to parse is reported and skipped up to the next
+     * {@code ;}, or up to the {@code END}/{@code ELSE} closing the enclosing
+     * block, so parsing can continue.
+     */
+    private void parseStatement(List<Ast.Statement> statements, boolean block) throws ParseException {
+        int start = tokens.index;
+        try {
+            Ast.Statement statement = parseStatement();
+            if (diagnostics != null) {
+                diagnostics.locate(statement, tokens.offset(start));
+            }
+            statements.add(statement);
+        } catch (ParseException e) {
+            if (diagnostics == null) {
+                throw e;
+            }
+            diagnostics.report(Diagnostic.Phase.PARSE, e.getMessage(), tokens.offset(e.getIndex()));
+            while (tokens.has(0) && !match(";")) {
+                if (peek("END") || peek("ELSE")) {
+                    if (!block) {
+                        tokens.advance();
+                    }
+                    break;
+                }
+                tokens.advance();
+            }
+        }
+    }
+
     public Ast.Statement parseStatement() throws ParseException {
         if (match("LET")) {
             return parseDeclarationStatement();
@@ -105,12 +150,13 @@ public final class Parser {
         }
 
         while (!match("END")) {
-
-            thenStatements.add(parseStatement());
+            requireEnd();
+            parseStatement(thenStatements, true);
 
             if(match("ELSE")){
                 while (!match("END")) {
-                    elseStatements.add(parseStatement());
+                    requireEnd();
+                    parseStatement(elseStatements, true);
                 }
                 break;
             }
@@ -128,7 +174,8 @@ public final class Parser {
         }
 
         while (!match("END")) {
-            statements.add(parseStatement());
+            requireEnd();
+            parseStatement(statements, true);
         }
 
         return new Ast.Statement.While(condition, statements);
@@ -208,6 +255,16 @@ public final class Parser {
         }
     }
 
+    /**
+     * Throws if the input ends inside a block, which would otherwise keep
+     * recovering forever when collecting diagnostics.
+     */
+    private void requireEnd() throws ParseException {
+        if (!tokens.has(0)) {
+            throw new ParseException("block not closed by END", tokens.index);
+        }
+    }
+
     private boolean peek(Object... patterns) {
         for (int i = 0; i < patterns.length; i++) {
             if (!tokens.has(i)) {
@@ -271,6 +328,20 @@ public final class Parser {
             index++;
         }
 
+        /**
+         * Returns the character offset of the token at the given absolute
+         * index, or the end of the input if there is no such token.
+         */
+        public int offset(int index) {
+            if (index < tokens.size()) {
+                return tokens.get(index).getIndex();
+            } else if (!tokens.isEmpty()) {
+                Token last = tokens.get(tokens.size() - 1);
+                return last.getIndex() + last.getLiteral().length();
+            }
+            return 0;
+        }
+
     }
 
 }
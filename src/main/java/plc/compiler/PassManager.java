@@ -0,0 +1,265 @@
+package plc.compiler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Runs a sequence of optimization passes over an analyzed AST. Passes either
+ * rewrite the AST directly or transform the {@link Ir}; consecutive IR passes
+ * share a single lowering, and the result is turned back into an AST for the
+ * {@link Generator}.
+ *
+ * <p>Every run records the wall time and the size of the program before and
+ * after each pass. With a budget set, passes marked as expensive are skipped
+ * once the time spent so far exceeds it, so cheap passes always run.</p>
+ */
+public final class PassManager {
+
+    /**
+     * The optimization presets, as selected by {@code -O0}, {@code -O1} and
+     * {@code -O2}.
+     */
+    public enum Level {
+
+        /**
+         * No optimizations, for the fastest compiles.
+         */
+        O0,
+
+        /**
+         * Cheap local optimizations: constant folding, dead store and dead
+         * code elimination, common subexpression elimination within blocks
+         * and strength reduction.
+         */
+        O1,
+
+        /**
+         * Everything in {@link #O1}, plus loop invariant code motion and the
+         * SSA passes.
+         */
+        O2;
+
+        /**
+         * Returns the level for a command line flag such as {@code -O2}.
+         */
+        public static Level parse(String flag) {
+            for (Level level : values()) {
+                if (flag.equals("-" + level.name())) {
+                    return level;
+                }
+            }
+            throw new IllegalArgumentException("Unknown optimization level " + flag + ".");
+        }
+
+    }
+
+    private final List<Pass> passes = new ArrayList<>();
+    private Optional<Duration> budget = Optional.empty();
+    private final List<Statistics> statistics = new ArrayList<>();
+
+    public static PassManager create(Level level) {
+        PassManager manager = new PassManager();
+        if (level.compareTo(Level.O1) >= 0) {
+            manager.addRewriter("fold", false, ConstantFolder::new);
+            manager.addRewriter("dead-store", false, DeadStoreEliminator::new);
+            manager.addRewriter("dead-code", false, DeadCodeEliminator::new);
+            manager.addRewriter("cse", false, CommonSubexpressionEliminator::new);
+        }
+        if (level.compareTo(Level.O2) >= 0) {
+            manager.addRewriter("licm", true, LoopInvariantMotion::new);
+            manager.addPass(true, ConstantPropagation::new);
+            manager.addPass(true, ValueNumbering::new);
+            manager.addPass(true, DeadInstructionElimination::new);
+        }
+        if (level.compareTo(Level.O1) >= 0) {
+            //shifts are only understood by the generator, so this runs last
+            manager.addRewriter("strength", false, StrengthReducer::new);
+        }
+        return manager;
+    }
+
+    /**
+     * Adds a pass rewriting the AST. A new rewriter is created for every run.
+     */
+    public PassManager addRewriter(String name, boolean expensive, Supplier<? extends Rewriter> rewriter) {
+        passes.add(new Pass(name, expensive, rewriter, null));
+        return this;
+    }
+
+    /**
+     * Adds a pass over the {@link Ir}. A new pass is created for every run.
+     */
+    public PassManager addPass(boolean expensive, Supplier<? extends IrPass> pass) {
+        passes.add(new Pass(pass.get().getName(), expensive, null, pass));
+        return this;
+    }
+
+    /**
+     * Sets the time after which expensive passes are skipped.
+     */
+    public PassManager setBudget(Duration budget) {
+        this.budget = Optional.of(budget);
+        return this;
+    }
+
+    public List<String> getPasses() {
+        List<String> names = new ArrayList<>();
+        passes.forEach(pass -> names.add(pass.name));
+        return names;
+    }
+
+    /**
+     * Returns the statistics of the last run, one entry per pass in order,
+     * plus entries for lowering into and emitting from the IR.
+     */
+    public List<Statistics> getStatistics() {
+        return Collections.unmodifiableList(statistics);
+    }
+
+    public Ast.Source run(Ast.Source ast) {
+        statistics.clear();
+        long start = System.nanoTime();
+        Ir ir = null;
+        for (Pass pass : passes) {
+            if (pass.expensive && budget.isPresent() && System.nanoTime() - start >= budget.get().toNanos()) {
+                statistics.add(new Statistics(pass.name, 0, -1, -1, true));
+                continue;
+            }
+            if (pass.pass != null) {
+                if (ir == null) {
+                    long before = System.nanoTime();
+                    int size = count(ast);
+                    ir = IrBuilder.build(ast);
+                    statistics.add(new Statistics("ir-build", System.nanoTime() - before, size, ir.size(), false));
+                }
+                long before = System.nanoTime();
+                int size = ir.size();
+                pass.pass.get().run(ir);
+                statistics.add(new Statistics(pass.name, System.nanoTime() - before, size, ir.size(), false));
+            } else {
+                if (ir != null) {
+                    ast = emit(ir);
+                    ir = null;
+                }
+                long before = System.nanoTime();
+                int size = count(ast);
+                ast = (Ast.Source) pass.rewriter.get().visit(ast);
+                statistics.add(new Statistics(pass.name, System.nanoTime() - before, size, count(ast), false));
+            }
+        }
+        return ir != null ? emit(ir) : ast;
+    }
+
+    private Ast.Source emit(Ir ir) {
+        long before = System.nanoTime();
+        int size = ir.size();
+        Ast.Source ast = IrEmitter.emit(ir);
+        statistics.add(new Statistics("ir-emit", System.nanoTime() - before, size, count(ast), false));
+        return ast;
+    }
+
+    /**
+     * Returns the number of nodes in the AST.
+     */
+    static int count(Ast ast) {
+        if (ast instanceof Ast.Source) {
+            return 1 + count(((Ast.Source) ast).getStatements());
+        } else if (ast instanceof Ast.Statement.Expression) {
+            return 1 + count(((Ast.Statement.Expression) ast).getExpression());
+        } else if (ast instanceof Ast.Statement.Declaration) {
+            return 1 + ((Ast.Statement.Declaration) ast).getValue().map(PassManager::count).orElse(0);
+        } else if (ast instanceof Ast.Statement.Assignment) {
+            return 1 + count(((Ast.Statement.Assignment) ast).getExpression());
+        } else if (ast instanceof Ast.Statement.If) {
+            Ast.Statement.If statement = (Ast.Statement.If) ast;
+            return 1 + count(statement.getCondition()) + count(statement.getThenStatements()) + count(statement.getElseStatements());
+        } else if (ast instanceof Ast.Statement.While) {
+            return 1 + count(((Ast.Statement.While) ast).getCondition()) + count(((Ast.Statement.While) ast).getStatements());
+        } else if (ast instanceof Ast.Expression.Group) {
+            return 1 + count(((Ast.Expression.Group) ast).getExpression());
+        } else if (ast instanceof Ast.Expression.Binary) {
+            return 1 + count(((Ast.Expression.Binary) ast).getLeft()) + count(((Ast.Expression.Binary) ast).getRight());
+        } else if (ast instanceof Ast.Expression.Function) {
+            return 1 + count(((Ast.Expression.Function) ast).getArguments());
+        } else {
+            return 1;
+        }
+    }
+
+    private static int count(List<? extends Ast> asts) {
+        int count = 0;
+        for (Ast ast : asts) {
+            count += count(ast);
+        }
+        return count;
+    }
+
+    private static final class Pass {
+
+        private final String name;
+        private final boolean expensive;
+        private final Supplier<? extends Rewriter> rewriter;
+        private final Supplier<? extends IrPass> pass;
+
+        private Pass(String name, boolean expensive, Supplier<? extends Rewriter> rewriter, Supplier<? extends IrPass> pass) {
+            this.name = name;
+            this.expensive = expensive;
+            this.rewriter = rewriter;
+            this.pass = pass;
+        }
+
+    }
+
+    /**
+     * The wall time and program size of a single pass. Sizes count AST nodes
+     * for passes over the AST and instructions for passes over the IR.
+     */
+    public static final class Statistics {
+
+        private final String name;
+        private final long nanos;
+        private final int before;
+        private final int after;
+        private final boolean skipped;
+
+        public Statistics(String name, long nanos, int before, int after, boolean skipped) {
+            this.name = name;
+            this.nanos = nanos;
+            this.before = before;
+            this.after = after;
+            this.skipped = skipped;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public int getBefore() {
+            return before;
+        }
+
+        public int getAfter() {
+            return after;
+        }
+
+        public boolean isSkipped() {
+            return skipped;
+        }
+
+        @Override
+        public String toString() {
+            return skipped ? name + ": skipped"
+                    : String.format("%s: %.3fms, %d -> %d", name, nanos / 1e6, before, after);
+        }
+
+    }
+
+}
@@ -0,0 +1,237 @@
+package plc.compiler;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Base class for passes which transform an analyzed AST into an equivalent
+ * one. Every node is rebuilt from its rewritten children, and a node whose
+ * children are unchanged is returned as-is so passes which find nothing to do
+ * don't copy the tree.
+ */
+public abstract class Rewriter implements Ast.Visitor<Ast> {
+
+    private final Set<String> names = new HashSet<>();
+    private int temporaries = 0;
+
+    @Override
+    public Ast visit(Ast.Source ast) {
+        collectNames(ast, names);
+        List<Ast.Statement> statements = visit(ast.getStatements());
+        return statements == ast.getStatements() ? ast : new Ast.Source(statements);
+    }
+
+    protected Ast.Statement visit(Ast.Statement ast) {
+        return (Ast.Statement) visit((Ast) ast);
+    }
+
+    protected Ast.Expression visit(Ast.Expression ast) {
+        return (Ast.Expression) visit((Ast) ast);
+    }
+
+    /**
+     * Rewrites a list of statements, returning the same list if nothing
+     * changed.
+     */
+    protected List<Ast.Statement> visit(List<Ast.Statement> statements) {
+        List<Ast.Statement> rewritten = new ArrayList<>();
+        for (Ast.Statement statement : statements) {
+            rewrite(statement, rewritten);
+        }
+        return same(rewritten, statements) ? statements : rewritten;
+    }
+
+    /**
+     * Adds the rewritten statement to the enclosing block. Passes override
+     * this to remove a statement or replace it with several.
+     */
+    protected void rewrite(Ast.Statement ast, List<Ast.Statement> statements) {
+        statements.add(visit(ast));
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.Expression ast) {
+        Ast.Expression expression = visit(ast.getExpression());
+        return expression == ast.getExpression() ? ast : new Ast.Statement.Expression(expression);
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.Declaration ast) {
+        if (!ast.getValue().isPresent()) {
+            return ast;
+        }
+        Ast.Expression value = visit(ast.getValue().get());
+        return value == ast.getValue().get() ? ast : new Ast.Statement.Declaration(ast.getName(), ast.getType(), Optional.of(value));
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.Assignment ast) {
+        Ast.Expression expression = visit(ast.getExpression());
+        return expression == ast.getExpression() ? ast : new Ast.Statement.Assignment(ast.getName(), expression);
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.If ast) {
+        Ast.Expression condition = visit(ast.getCondition());
+        List<Ast.Statement> thenStatements = visit(ast.getThenStatements());
+        List<Ast.Statement> elseStatements = visit(ast.getElseStatements());
+        if (condition == ast.getCondition() && thenStatements == ast.getThenStatements() && elseStatements == ast.getElseStatements()) {
+            return ast;
+        }
+        return new Ast.Statement.If(condition, thenStatements, elseStatements);
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.While ast) {
+        Ast.Expression condition = visit(ast.getCondition());
+        List<Ast.Statement> statements = visit(ast.getStatements());
+        if (condition == ast.getCondition() && statements == ast.getStatements()) {
+            return ast;
+        }
+        return new Ast.Statement.While(condition, statements);
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Literal ast) {
+        return ast;
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Group ast) {
+        Ast.Expression expression = visit(ast.getExpression());
+        return expression == ast.getExpression() ? ast : new Ast.Expression.Group(typeOf(ast), expression);
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Binary ast) {
+        Ast.Expression left = visit(ast.getLeft());
+        Ast.Expression right = visit(ast.getRight());
+        if (left == ast.getLeft() && right == ast.getRight()) {
+            return ast;
+        }
+        return new Ast.Expression.Binary(typeOf(ast), ast.getOperator(), left, right);
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Variable ast) {
+        return ast;
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Function ast) {
+        List<Ast.Expression> arguments = new ArrayList<>();
+        for (Ast.Expression argument : ast.getArguments()) {
+            arguments.add(visit(argument));
+        }
+        if (same(arguments, ast.getArguments())) {
+            return ast;
+        }
+        return new Ast.Expression.Function(typeOf(ast), ast.getName(), arguments);
+    }
+
+    /**
+     * Returns the type of the expression, or {@code null} if it has not been
+     * analyzed.
+     */
+    protected static Stdlib.Type typeOf(Ast.Expression ast) {
+        return ast.type;
+    }
+
+    /**
+     * Returns a fresh variable name for a temporary introduced by the pass.
+     * Names start with {@code $}, which source identifiers can't contain, and
+     * skip any temporary left in the source by an earlier pass.
+     */
+    protected String temporary(String prefix) {
+        String name;
+        do {
+            name = "$" + prefix + temporaries++;
+        } while (!names.add(name));
+        return name;
+    }
+
+    /**
+     * Returns true if evaluating the expression has no effect other than
+     * producing its value: it calls no functions and can't throw from an
+     * integer division by zero.
+     */
+    protected static boolean isPure(Ast.Expression ast) {
+        if (ast instanceof Ast.Expression.Literal || ast instanceof Ast.Expression.Variable) {
+            return true;
+        } else if (ast instanceof Ast.Expression.Group) {
+            return isPure(((Ast.Expression.Group) ast).getExpression());
+        } else if (ast instanceof Ast.Expression.Binary) {
+            Ast.Expression.Binary binary = (Ast.Expression.Binary) ast;
+            if (binary.getOperator().equals("/") && !Stdlib.Type.DECIMAL.equals(typeOf(binary))) {
+                Object divisor = binary.getRight() instanceof Ast.Expression.Literal
+                        ? ((Ast.Expression.Literal) binary.getRight()).getValue() : null;
+                if (!(divisor instanceof Double || divisor instanceof Integer && (Integer) divisor != 0)) {
+                    return false;
+                }
+            }
+            return isPure(binary.getLeft()) && isPure(binary.getRight());
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Adds the names of all variables read by the AST to the given set.
+     */
+    protected static void collectReads(Ast ast, Set<String> names) {
+        if (ast instanceof Ast.Expression.Variable) {
+            names.add(((Ast.Expression.Variable) ast).getName());
+        } else if (ast instanceof Ast.Expression.Group) {
+            collectReads(((Ast.Expression.Group) ast).getExpression(), names);
+        } else if (ast instanceof Ast.Expression.Binary) {
+            collectReads(((Ast.Expression.Binary) ast).getLeft(), names);
+            collectReads(((Ast.Expression.Binary) ast).getRight(), names);
+        } else if (ast instanceof Ast.Expression.Function) {
+            ((Ast.Expression.Function) ast).getArguments().forEach(argument -> collectReads(argument, names));
+        } else if (ast instanceof Ast.Statement.Expression) {
+            collectReads(((Ast.Statement.Expression) ast).getExpression(), names);
+        } else if (ast instanceof Ast.Statement.Declaration) {
+            ((Ast.Statement.Declaration) ast).getValue().ifPresent(value -> collectReads(value, names));
+        } else if (ast instanceof Ast.Statement.Assignment) {
+            collectReads(((Ast.Statement.Assignment) ast).getExpression(), names);
+        } else if (ast instanceof Ast.Statement.If) {
+            collectReads(((Ast.Statement.If) ast).getCondition(), names);
+            ((Ast.Statement.If) ast).getThenStatements().forEach(statement -> collectReads(statement, names));
+            ((Ast.Statement.If) ast).getElseStatements().forEach(statement -> collectReads(statement, names));
+        } else if (ast instanceof Ast.Statement.While) {
+            collectReads(((Ast.Statement.While) ast).getCondition(), names);
+            ((Ast.Statement.While) ast).getStatements().forEach(statement -> collectReads(statement, names));
+        } else if (ast instanceof Ast.Source) {
+            ((Ast.Source) ast).getStatements().forEach(statement -> collectReads(statement, names));
+        }
+    }
+
+    private static void collectNames(Ast ast, Set<String> names) {
+        if (ast instanceof Ast.Source) {
+            ((Ast.Source) ast).getStatements().forEach(statement -> collectNames(statement, names));
+        } else if (ast instanceof Ast.Statement.Declaration) {
+            names.add(((Ast.Statement.Declaration) ast).getName());
+        } else if (ast instanceof Ast.Statement.If) {
+            ((Ast.Statement.If) ast).getThenStatements().forEach(statement -> collectNames(statement, names));
+            ((Ast.Statement.If) ast).getElseStatements().forEach(statement -> collectNames(statement, names));
+        } else if (ast instanceof Ast.Statement.While) {
+            ((Ast.Statement.While) ast).getStatements().forEach(statement -> collectNames(statement, names));
+        }
+    }
+
+    private static boolean same(List<? extends Ast> rewritten, List<? extends Ast> original) {
+        if (rewritten.size() != original.size()) {
+            return false;
+        }
+        for (int i = 0; i < rewritten.size(); i++) {
+            if (rewritten.get(i) != original.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,311 @@
+package plc.compiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Remembers the analyzed AST and generated code of top level statements, so
+ * a long running compiler can reuse the fragments programs have in common.
+ *
+ * <p>A statement is keyed by its tokens, without their positions, so the
+ * same statement anywhere in any program has the same key. Parsing only
+ * depends on the tokens and is remembered by that key alone, while the
+ * analysis also depends on the types of the variables the statement uses
+ * without declaring, which are looked up in the scope and added to the key.
+ * A top level declaration is replayed into the scope on a hit, so the
+ * statements after it are analyzed as if it had been visited.</p>
+ *
+ * <p>The code is only generated when a {@link Generator} with this cache
+ * writes the statement, and is remembered with the first temporary it
+ * used. Statements without temporaries can be reused anywhere; the others
+ * only where they get the same temporaries again.</p>
+ *
+ * <p>The cache holds up to the given number of statements, evicting the
+ * least recently used one. It is thread safe.</p>
+ */
+public final class StatementCache {
+
+    private final Map<String, CacheEntry> entries;
+    private final Map<Ast.Statement, Fragment> fragments = new IdentityHashMap<>();
+    private long hits = 0;
+    private long misses = 0;
+
+    public StatementCache(int maxStatements) {
+        this.entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                if (size() > maxStatements) {
+                    eldest.getValue().fragments.values().forEach(fragment -> fragments.remove(fragment.statement));
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Parses and analyzes a program in the given scope, like
+     * {@code new Analyzer(scope).visit(Parser.parse(tokens))}, reusing every
+     * statement seen before. Errors are thrown the same way too.
+     */
+    public Ast.Source analyze(List<Token> tokens, Scope scope) throws ParseException, AnalysisException {
+        List<String> keys = new ArrayList<>();
+        List<CacheEntry> parsed = new ArrayList<>();
+        for (List<Token> statement : split(tokens)) {
+            String key = key(statement);
+            CacheEntry entry = get(key);
+            if (entry == null) {
+                Ast.Source source;
+                try {
+                    source = (Ast.Source) Parser.parse(statement);
+                } catch (ParseException e) {
+                    source = null;
+                }
+                if (source == null || source.getStatements().size() != 1) {
+                    //the error is reported at its index in the whole program
+                    return (Ast.Source) new Analyzer(scope).visit(Parser.parse(tokens));
+                }
+                entry = new CacheEntry(source.getStatements().get(0));
+            }
+            keys.add(key);
+            parsed.add(entry);
+        }
+        if (parsed.isEmpty()) {
+            throw new AnalysisException("Source statements empty");
+        }
+        List<Ast.Statement> statements = new ArrayList<>();
+        for (int i = 0; i < parsed.size(); i++) {
+            statements.add(analyze(keys.get(i), parsed.get(i), scope));
+        }
+        return new Ast.Source(statements);
+    }
+
+    private Ast.Statement analyze(String key, CacheEntry entry, Scope scope) throws AnalysisException {
+        List<Stdlib.Type> types = new ArrayList<>();
+        try {
+            for (String name : entry.variables) {
+                types.add(scope.lookup(name));
+            }
+        } catch (AnalysisException e) {
+            //not cached, so the analyzer reports whichever error comes first
+            return (Ast.Statement) new Analyzer(scope).visit(entry.statement);
+        }
+        Fragment fragment;
+        synchronized (this) {
+            fragment = entry.fragments.get(types);
+            if (fragment != null) {
+                hits++;
+            } else {
+                misses++;
+            }
+        }
+        if (fragment != null) {
+            if (fragment.declared != null) {
+                scope.define(((Ast.Statement.Declaration) fragment.statement).getName(), fragment.declared);
+            }
+            return fragment.statement;
+        }
+        Ast.Statement statement = (Ast.Statement) new Analyzer(scope).visit(entry.statement);
+        Stdlib.Type declared = entry.statement instanceof Ast.Statement.Declaration
+                ? Stdlib.getType(((Ast.Statement.Declaration) entry.statement).getType())
+                : null;
+        synchronized (this) {
+            fragment = new Fragment(statement, declared);
+            Fragment previous = entry.fragments.put(types, fragment);
+            if (previous != null) {
+                fragments.remove(previous.statement);
+            }
+            fragments.put(statement, fragment);
+            entries.put(key, entry);
+        }
+        return statement;
+    }
+
+    private synchronized CacheEntry get(String key) {
+        return entries.get(key);
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns whether the statement is one returned by {@link #analyze},
+     * which the generator can remember the code of.
+     */
+    synchronized boolean contains(Ast.Statement statement) {
+        return fragments.containsKey(statement);
+    }
+
+    /**
+     * Returns the lines of code generated for a statement starting at the
+     * given temporary, or {@code null} if there are none to reuse.
+     */
+    synchronized Code getCode(Ast.Statement statement, int temporaries) {
+        Fragment fragment = fragments.get(statement);
+        Code code = fragment == null ? null : fragment.code;
+        return code == null || code.count != 0 && code.temporaries != temporaries ? null : code;
+    }
+
+    synchronized void putCode(Ast.Statement statement, Code code) {
+        Fragment fragment = fragments.get(statement);
+        if (fragment != null) {
+            fragment.code = code;
+        }
+    }
+
+    /**
+     * Splits the tokens into top level statements, each ending with its
+     * {@code ;} or the {@code END} of its block. A program this gets wrong
+     * doesn't parse one statement per part, and is compiled without the
+     * cache.
+     */
+    private static List<List<Token>> split(List<Token> tokens) {
+        List<List<Token>> statements = new ArrayList<>();
+        int start = 0;
+        int depth = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            boolean end = false;
+            if (token.getType() == Token.Type.IDENTIFIER) {
+                if (token.getLiteral().equals("IF") || token.getLiteral().equals("WHILE")) {
+                    depth++;
+                } else if (token.getLiteral().equals("END")) {
+                    end = --depth <= 0;
+                }
+            } else if (token.getType() == Token.Type.OPERATOR && token.getLiteral().equals(";")) {
+                end = depth <= 0;
+            }
+            if (end || i == tokens.size() - 1) {
+                statements.add(tokens.subList(start, i + 1));
+                start = i + 1;
+                depth = 0;
+            }
+        }
+        return statements;
+    }
+
+    /**
+     * Returns the key of a statement, which is its tokens without their
+     * positions. Every literal is prefixed by its length, so no two token
+     * sequences have the same key.
+     */
+    private static String key(List<Token> tokens) {
+        StringBuilder key = new StringBuilder();
+        for (Token token : tokens) {
+            key.append(token.getType().ordinal()).append(token.getLiteral().length()).append(':').append(token.getLiteral());
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns the variables a statement uses before declaring them, in the
+     * order they are first used. A declaration defines its variable before
+     * its value is analyzed, and the variables declared in a block are only
+     * defined until its end.
+     */
+    private static List<String> getFreeVariables(Ast.Statement statement) {
+        Set<String> free = new LinkedHashSet<>();
+        collect(statement, new HashSet<>(), free);
+        return new ArrayList<>(free);
+    }
+
+    private static void collect(Ast ast, Set<String> declared, Set<String> free) {
+        if (ast instanceof Ast.Statement.Expression) {
+            collect(((Ast.Statement.Expression) ast).getExpression(), declared, free);
+        } else if (ast instanceof Ast.Statement.Declaration) {
+            declared.add(((Ast.Statement.Declaration) ast).getName());
+            ((Ast.Statement.Declaration) ast).getValue().ifPresent(value -> collect(value, declared, free));
+        } else if (ast instanceof Ast.Statement.Assignment) {
+            collect(((Ast.Statement.Assignment) ast).getExpression(), declared, free);
+            use(((Ast.Statement.Assignment) ast).getName(), declared, free);
+        } else if (ast instanceof Ast.Statement.If) {
+            collect(((Ast.Statement.If) ast).getCondition(), declared, free);
+            collectBlock(((Ast.Statement.If) ast).getThenStatements(), declared, free);
+            collectBlock(((Ast.Statement.If) ast).getElseStatements(), declared, free);
+        } else if (ast instanceof Ast.Statement.While) {
+            collect(((Ast.Statement.While) ast).getCondition(), declared, free);
+            collectBlock(((Ast.Statement.While) ast).getStatements(), declared, free);
+        } else if (ast instanceof Ast.Expression.Group) {
+            collect(((Ast.Expression.Group) ast).getExpression(), declared, free);
+        } else if (ast instanceof Ast.Expression.Binary) {
+            collect(((Ast.Expression.Binary) ast).getLeft(), declared, free);
+            collect(((Ast.Expression.Binary) ast).getRight(), declared, free);
+        } else if (ast instanceof Ast.Expression.Variable) {
+            use(((Ast.Expression.Variable) ast).getName(), declared, free);
+        } else if (ast instanceof Ast.Expression.Function) {
+            ((Ast.Expression.Function) ast).getArguments().forEach(argument -> collect(argument, declared, free));
+        }
+    }
+
+    private static void collectBlock(List<Ast.Statement> statements, Set<String> declared, Set<String> free) {
+        Set<String> block = new HashSet<>(declared);
+        statements.forEach(statement -> collect(statement, block, free));
+    }
+
+    private static void use(String name, Set<String> declared, Set<String> free) {
+        if (!declared.contains(name)) {
+            free.add(name);
+        }
+    }
+
+    /**
+     * A parsed statement and the fragments analyzed from it, by the types
+     * of its free variables.
+     */
+    private static final class CacheEntry {
+
+        private final Ast.Statement statement;
+        private final List<String> variables;
+        private final Map<List<Stdlib.Type>, Fragment> fragments = new HashMap<>();
+
+        private CacheEntry(Ast.Statement statement) {
+            this.statement = statement;
+            this.variables = getFreeVariables(statement);
+        }
+
+    }
+
+    private static final class Fragment {
+
+        private final Ast.Statement statement;
+        private final Stdlib.Type declared;
+        private Code code;
+
+        private Fragment(Ast.Statement statement, Stdlib.Type declared) {
+            this.statement = statement;
+            this.declared = declared;
+        }
+
+    }
+
+    /**
+     * The code generated for a statement, by line without indentation, and
+     * the temporaries it used.
+     */
+    static final class Code {
+
+        final String[] lines;
+        final int temporaries;
+        final int count;
+
+        Code(String[] lines, int temporaries, int count) {
+            this.lines = lines;
+            this.temporaries = temporaries;
+            this.count = count;
+        }
+
+    }
+
+}
@@ -0,0 +1,262 @@
+package plc.compiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Replaces integer multiplications and divisions with cheaper operations.
+ *
+ * <ul>
+ *     <li>Multiplying by a power of two becomes a left shift, which wraps
+ *     around exactly like the multiplication.</li>
+ *     <li>Dividing a variable by a power of two becomes an arithmetic right
+ *     shift. Java's division rounds towards zero while the shift rounds
+ *     down, so negative dividends are first biased by {@code 2^k - 1}, which
+ *     is computed from the sign bit without a branch:
+ *     {@code (x + (x >> 31 >>> 32 - k)) >> k}.</li>
+ *     <li>In a {@code WHILE} loop whose counter {@code i} is only changed by a
+ *     single {@code i = i + c}, products {@code i * k} are kept in a
+ *     temporary which is initialized before the loop and increased by
+ *     {@code c * k} right after the counter.</li>
+ * </ul>
+ *
+ * <p>Shifts have no source syntax, so this pass should run after any pass
+ * that could fold or reorder them.</p>
+ */
+public final class StrengthReducer extends Rewriter {
+
+    @Override
+    protected void rewrite(Ast.Statement ast, List<Ast.Statement> statements) {
+        if (ast instanceof Ast.Statement.While) {
+            List<Ast.Statement> declarations = new ArrayList<>();
+            ast = reduceInductions((Ast.Statement.While) ast, declarations);
+            for (Ast.Statement declaration : declarations) {
+                statements.add(visit(declaration));
+            }
+        }
+        statements.add(visit(ast));
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Binary ast) {
+        Ast.Expression left = visit(ast.getLeft());
+        Ast.Expression right = visit(ast.getRight());
+        //shifts bind looser than the arithmetic they replaced
+        if (isShift(left)) {
+            left = new Ast.Expression.Group(typeOf(left), left);
+        }
+        if (isShift(right)) {
+            right = new Ast.Expression.Group(typeOf(right), right);
+        }
+        if (Stdlib.Type.INTEGER.equals(typeOf(ast))) {
+            if (ast.getOperator().equals("*")) {
+                int shift = log2(right);
+                if (shift >= 0) {
+                    return shift == 0 ? left : shift(left, "<<", shift);
+                }
+                shift = log2(left);
+                if (shift >= 0) {
+                    return shift == 0 ? right : shift(right, "<<", shift);
+                }
+            } else if (ast.getOperator().equals("/") && left instanceof Ast.Expression.Variable) {
+                int shift = log2(right);
+                if (shift == 0) {
+                    return left;
+                } else if (shift > 0) {
+                    Ast.Expression bias = shift == 1
+                            ? shift(left, ">>>", 31)
+                            : shift(shift(left, ">>", 31), ">>>", 32 - shift);
+                    Ast.Expression biased = new Ast.Expression.Binary(Stdlib.Type.INTEGER, "+",
+                            left, new Ast.Expression.Group(Stdlib.Type.INTEGER, bias));
+                    return shift(new Ast.Expression.Group(Stdlib.Type.INTEGER, biased), ">>", shift);
+                }
+            }
+        }
+        if (left == ast.getLeft() && right == ast.getRight()) {
+            return ast;
+        }
+        return new Ast.Expression.Binary(typeOf(ast), ast.getOperator(), left, right);
+    }
+
+    /**
+     * Replaces the products of induction variables in a loop, adding the
+     * declarations of their temporaries to {@code declarations}.
+     */
+    private Ast.Statement.While reduceInductions(Ast.Statement.While ast, List<Ast.Statement> declarations) {
+        Map<String, Integer> steps = new LinkedHashMap<>();
+        for (Ast.Statement statement : ast.getStatements()) {
+            Integer step = getStep(statement);
+            if (step != null) {
+                String name = ((Ast.Statement.Assignment) statement).getName();
+                steps.put(name, step);
+            }
+        }
+        //the counter may not be declared or changed anywhere else in the loop
+        Map<String, Integer> assignments = new HashMap<>();
+        collectAssignments(ast.getStatements(), assignments);
+        steps.keySet().removeIf(name -> assignments.get(name) != 1);
+        if (steps.isEmpty()) {
+            return ast;
+        }
+        Reducer reducer = new Reducer(steps);
+        Ast.Expression condition = reducer.visit(ast.getCondition());
+        List<Ast.Statement> statements = reducer.visit(ast.getStatements());
+        if (reducer.products.isEmpty()) {
+            return ast;
+        }
+        List<Ast.Statement> body = new ArrayList<>();
+        for (Ast.Statement statement : statements) {
+            body.add(statement);
+            if (statement instanceof Ast.Statement.Assignment && steps.containsKey(((Ast.Statement.Assignment) statement).getName())) {
+                String name = ((Ast.Statement.Assignment) statement).getName();
+                reducer.products.forEach((product, variable) -> {
+                    if (product.name.equals(name)) {
+                        int increment = steps.get(name) * product.factor;
+                        Ast.Expression.Binary update = increment < 0 && increment != Integer.MIN_VALUE
+                                ? new Ast.Expression.Binary(Stdlib.Type.INTEGER, "-", variable, ConstantFolder.literal(-increment))
+                                : new Ast.Expression.Binary(Stdlib.Type.INTEGER, "+", variable, ConstantFolder.literal(increment));
+                        body.add(new Ast.Statement.Assignment(variable.getName(), update));
+                    }
+                });
+            }
+        }
+        reducer.products.forEach((product, variable) -> declarations.add(new Ast.Statement.Declaration(variable.getName(), "int",
+                Optional.of(new Ast.Expression.Binary(Stdlib.Type.INTEGER, "*",
+                        new Ast.Expression.Variable(Stdlib.Type.INTEGER, product.name), ConstantFolder.literal(product.factor))))));
+        return new Ast.Statement.While(condition, body);
+    }
+
+    /**
+     * Returns the constant added by an assignment {@code i = i + c},
+     * {@code i = c + i} or {@code i = i - c}, or {@code null} if the statement
+     * has another form.
+     */
+    private static Integer getStep(Ast.Statement ast) {
+        if (!(ast instanceof Ast.Statement.Assignment)
+                || !(((Ast.Statement.Assignment) ast).getExpression() instanceof Ast.Expression.Binary)) {
+            return null;
+        }
+        String name = ((Ast.Statement.Assignment) ast).getName();
+        Ast.Expression.Binary binary = (Ast.Expression.Binary) ((Ast.Statement.Assignment) ast).getExpression();
+        if (!Stdlib.Type.INTEGER.equals(typeOf(binary))) {
+            return null;
+        }
+        if (isVariable(binary.getLeft(), name) && binary.getRight() instanceof Ast.Expression.Literal) {
+            int constant = (Integer) ((Ast.Expression.Literal) binary.getRight()).getValue();
+            if (binary.getOperator().equals("+")) {
+                return constant;
+            } else if (binary.getOperator().equals("-")) {
+                return -constant;
+            }
+        } else if (binary.getOperator().equals("+") && isVariable(binary.getRight(), name)
+                && binary.getLeft() instanceof Ast.Expression.Literal) {
+            return (Integer) ((Ast.Expression.Literal) binary.getLeft()).getValue();
+        }
+        return null;
+    }
+
+    private static void collectAssignments(List<Ast.Statement> statements, Map<String, Integer> assignments) {
+        for (Ast.Statement statement : statements) {
+            if (statement instanceof Ast.Statement.Assignment) {
+                assignments.merge(((Ast.Statement.Assignment) statement).getName(), 1, Integer::sum);
+            } else if (statement instanceof Ast.Statement.Declaration) {
+                assignments.merge(((Ast.Statement.Declaration) statement).getName(), 2, Integer::sum);
+            } else if (statement instanceof Ast.Statement.If) {
+                collectAssignments(((Ast.Statement.If) statement).getThenStatements(), assignments);
+                collectAssignments(((Ast.Statement.If) statement).getElseStatements(), assignments);
+            } else if (statement instanceof Ast.Statement.While) {
+                collectAssignments(((Ast.Statement.While) statement).getStatements(), assignments);
+            }
+        }
+    }
+
+    private static boolean isVariable(Ast.Expression ast, String name) {
+        return ast instanceof Ast.Expression.Variable && ((Ast.Expression.Variable) ast).getName().equals(name);
+    }
+
+    private static boolean isShift(Ast.Expression ast) {
+        return ast instanceof Ast.Expression.Binary && ((Ast.Expression.Binary) ast).getOperator().matches("<<|>>|>>>");
+    }
+
+    /**
+     * Returns k if the expression is the integer literal 2^k, and -1
+     * otherwise.
+     */
+    private static int log2(Ast.Expression ast) {
+        if (ast instanceof Ast.Expression.Literal && ((Ast.Expression.Literal) ast).getValue() instanceof Integer) {
+            int value = (Integer) ((Ast.Expression.Literal) ast).getValue();
+            if (value > 0 && Integer.bitCount(value) == 1) {
+                return Integer.numberOfTrailingZeros(value);
+            }
+        }
+        return -1;
+    }
+
+    private static Ast.Expression.Binary shift(Ast.Expression ast, String operator, int distance) {
+        return new Ast.Expression.Binary(Stdlib.Type.INTEGER, operator, ast, ConstantFolder.literal(distance));
+    }
+
+    /**
+     * Replaces the products of induction variables and constants with
+     * temporaries.
+     */
+    private final class Reducer extends Rewriter {
+
+        private final Map<String, Integer> steps;
+        private final Map<Product, Ast.Expression.Variable> products = new LinkedHashMap<>();
+
+        private Reducer(Map<String, Integer> steps) {
+            this.steps = steps;
+        }
+
+        @Override
+        public Ast visit(Ast.Expression.Binary ast) {
+            if (ast.getOperator().equals("*") && Stdlib.Type.INTEGER.equals(typeOf(ast))) {
+                Product product = getProduct(ast.getLeft(), ast.getRight());
+                if (product == null) {
+                    product = getProduct(ast.getRight(), ast.getLeft());
+                }
+                if (product != null) {
+                    return products.computeIfAbsent(product, p -> new Ast.Expression.Variable(Stdlib.Type.INTEGER, StrengthReducer.this.temporary("sr")));
+                }
+            }
+            return super.visit(ast);
+        }
+
+        private Product getProduct(Ast.Expression variable, Ast.Expression factor) {
+            if (variable instanceof Ast.Expression.Variable && steps.containsKey(((Ast.Expression.Variable) variable).getName())
+                    && factor instanceof Ast.Expression.Literal && ((Ast.Expression.Literal) factor).getValue() instanceof Integer) {
+                return new Product(((Ast.Expression.Variable) variable).getName(), (Integer) ((Ast.Expression.Literal) factor).getValue());
+            }
+            return null;
+        }
+
+    }
+
+    private static final class Product {
+
+        private final String name;
+        private final int factor;
+
+        private Product(String name, int factor) {
+            this.name = name;
+            this.factor = factor;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Product && name.equals(((Product) obj).name) && factor == ((Product) obj).factor;
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode() * 31 + factor;
+        }
+
+    }
+
+}
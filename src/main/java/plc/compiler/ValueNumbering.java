@@ -0,0 +1,111 @@
+package plc.compiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Global value numbering over the dominator tree. Walking the tree from the
+ * entry, each instruction is keyed by its operation and operands; if an
+ * instruction with the same key dominates it, the value has already been
+ * computed and the instruction is replaced by the earlier one. Phis in the
+ * same block with the same operands are merged the same way.
+ */
+public final class ValueNumbering implements IrPass {
+
+    @Override
+    public String getName() {
+        return "gvn";
+    }
+
+    @Override
+    public void run(Ir ir) {
+        Map<Ir.Block, Ir.Block> dominators = ir.getDominators();
+        Map<Ir.Block, List<Ir.Block>> children = new HashMap<>();
+        dominators.forEach((block, dominator) -> {
+            if (block != dominator) {
+                children.computeIfAbsent(dominator, b -> new ArrayList<>()).add(block);
+            }
+        });
+        Map<Ir.Value, Ir.Value> replacements = new HashMap<>();
+        visit(ir.getEntry(), children, new HashMap<>(), replacements);
+        ir.replace(replacements);
+        ir.removeTrivialPhis();
+    }
+
+    /**
+     * Numbers the instructions of a block and the blocks it dominates, with
+     * {@code available} holding the values computed in the dominating blocks.
+     */
+    private void visit(Ir.Block block, Map<Ir.Block, List<Ir.Block>> children, Map<String, Ir.Value> available, Map<Ir.Value, Ir.Value> replacements) {
+        Map<String, Ir.Value> scope = new HashMap<>(available);
+        for (Iterator<Ir.Phi> iterator = block.getPhis().iterator(); iterator.hasNext(); ) {
+            Ir.Phi phi = iterator.next();
+            if (number(phi, "phi" + block.getId(), scope, replacements)) {
+                iterator.remove();
+            }
+        }
+        for (Iterator<Ir.Instruction> iterator = block.getInstructions().iterator(); iterator.hasNext(); ) {
+            Ir.Instruction instruction = iterator.next();
+            String operation;
+            if (instruction instanceof Ir.Binary && instruction.getType() == Stdlib.Type.STRING) {
+                //every concatenation creates a new string, which == can tell apart
+                continue;
+            } else if (instruction instanceof Ir.Binary) {
+                operation = ((Ir.Binary) instruction).getOperator() + instruction.getType().getName();
+            } else if (instruction instanceof Ir.Convert) {
+                operation = "convert";
+            } else {
+                continue;
+            }
+            if (number(instruction, operation, scope, replacements)) {
+                iterator.remove();
+            }
+        }
+        for (Ir.Block child : children.getOrDefault(block, new ArrayList<>())) {
+            visit(child, children, scope, replacements);
+        }
+    }
+
+    /**
+     * Returns true if an equivalent value is available, in which case the
+     * instruction is replaced with it.
+     */
+    private boolean number(Ir.Instruction instruction, String operation, Map<String, Ir.Value> scope, Map<Ir.Value, Ir.Value> replacements) {
+        List<String> operands = new ArrayList<>();
+        for (Ir.Value operand : instruction.getOperands()) {
+            while (replacements.containsKey(operand)) {
+                operand = replacements.get(operand);
+            }
+            operands.add(operand instanceof Ir.Constant
+                    ? operand.getType().getName() + ":" + operand
+                    : "%" + ((Ir.Instruction) operand).getId());
+        }
+        if (instruction instanceof Ir.Binary && isCommutative((Ir.Binary) instruction)) {
+            operands.sort(null);
+        }
+        String key = operation + operands;
+        Ir.Value existing = scope.putIfAbsent(key, instruction);
+        if (existing != null) {
+            replacements.put(instruction, existing);
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean isCommutative(Ir.Binary binary) {
+        switch (binary.getOperator()) {
+            case "==":
+            case "!=":
+                return true;
+            case "+":
+            case "*":
+                return binary.getType() == Stdlib.Type.INTEGER || binary.getType() == Stdlib.Type.DECIMAL;
+            default:
+                return false;
+        }
+    }
+
+}
@@ -0,0 +1,669 @@
+package plc.compiler;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs an analyzed program on a register machine. The AST is lowered into a
+ * compact instruction set, which is then executed by a single dispatch loop
+ * without generating or compiling any Java.
+ *
+ * <p>Instructions are stored in an {@code int[]}, each an opcode followed by
+ * its operands, which are register numbers, immediate values, indices into
+ * the constant tables or jump targets. There are three register files: a
+ * {@code long[]} for {@code int} and {@code boolean} values, a
+ * {@code double[]} for {@code double} values and an {@code Object[]} for
+ * everything else. Variables are assigned a register for their scope, and
+ * temporaries are reused after every statement.</p>
+ *
+ * <p>To keep the dispatch count low in loops, the common patterns of the
+ * language have their own instructions: arithmetic with an integer literal
+ * ({@code i = i + 1} is a single {@link #ADD_INT_IMM}), and comparisons
+ * which are only used as a condition are fused with the branch. Function
+ * calls go through a {@link CallSite} which resolves the method on its first
+ * call and caches a handle bound to the last receiver.</p>
+ */
+public final class VirtualMachine {
+
+    static final int LOAD_LONG = 0;
+    static final int LOAD_DOUBLE = 1;
+    static final int LOAD_OBJECT = 2;
+    static final int MOVE_LONG = 3;
+    static final int MOVE_DOUBLE = 4;
+    static final int MOVE_OBJECT = 5;
+    static final int INT_TO_DOUBLE = 6;
+    static final int BOX_INT = 7;
+    static final int BOX_BOOLEAN = 8;
+    static final int BOX_DOUBLE = 9;
+    static final int UNBOX_INT = 10;
+    static final int UNBOX_BOOLEAN = 11;
+    static final int UNBOX_DOUBLE = 12;
+    static final int ADD_INT = 13;
+    static final int SUB_INT = 14;
+    static final int MUL_INT = 15;
+    static final int DIV_INT = 16;
+    static final int SHL_INT = 17;
+    static final int SHR_INT = 18;
+    static final int USHR_INT = 19;
+    static final int ADD_INT_IMM = 20;
+    static final int SUB_INT_IMM = 21;
+    static final int MUL_INT_IMM = 22;
+    static final int DIV_INT_IMM = 23;
+    static final int SHL_INT_IMM = 24;
+    static final int SHR_INT_IMM = 25;
+    static final int USHR_INT_IMM = 26;
+    static final int ADD_DOUBLE = 27;
+    static final int SUB_DOUBLE = 28;
+    static final int MUL_DOUBLE = 29;
+    static final int DIV_DOUBLE = 30;
+    static final int EQ_LONG = 31;
+    static final int NE_LONG = 32;
+    static final int EQ_LONG_IMM = 33;
+    static final int NE_LONG_IMM = 34;
+    static final int EQ_DOUBLE = 35;
+    static final int NE_DOUBLE = 36;
+    static final int EQ_OBJECT = 37;
+    static final int NE_OBJECT = 38;
+    static final int CONCAT = 39;
+    static final int CALL = 40;
+    static final int JUMP = 41;
+    static final int JUMP_IF_ZERO = 42;
+    static final int JUMP_IF_NOT_ZERO = 43;
+    static final int JUMP_IF_EQ_LONG = 44;
+    static final int JUMP_IF_NE_LONG = 45;
+    static final int JUMP_IF_EQ_LONG_IMM = 46;
+    static final int JUMP_IF_NE_LONG_IMM = 47;
+    static final int JUMP_IF_EQ_DOUBLE = 48;
+    static final int JUMP_IF_NE_DOUBLE = 49;
+    static final int JUMP_IF_EQ_OBJECT = 50;
+    static final int JUMP_IF_NE_OBJECT = 51;
+    static final int RETURN = 52;
+
+    private static final String[] NAMES = {
+            "LOAD_LONG", "LOAD_DOUBLE", "LOAD_OBJECT", "MOVE_LONG", "MOVE_DOUBLE", "MOVE_OBJECT",
+            "INT_TO_DOUBLE", "BOX_INT", "BOX_BOOLEAN", "BOX_DOUBLE", "UNBOX_INT", "UNBOX_BOOLEAN", "UNBOX_DOUBLE",
+            "ADD_INT", "SUB_INT", "MUL_INT", "DIV_INT", "SHL_INT", "SHR_INT", "USHR_INT",
+            "ADD_INT_IMM", "SUB_INT_IMM", "MUL_INT_IMM", "DIV_INT_IMM", "SHL_INT_IMM", "SHR_INT_IMM", "USHR_INT_IMM",
+            "ADD_DOUBLE", "SUB_DOUBLE", "MUL_DOUBLE", "DIV_DOUBLE",
+            "EQ_LONG", "NE_LONG", "EQ_LONG_IMM", "NE_LONG_IMM", "EQ_DOUBLE", "NE_DOUBLE", "EQ_OBJECT", "NE_OBJECT",
+            "CONCAT", "CALL", "JUMP", "JUMP_IF_ZERO", "JUMP_IF_NOT_ZERO",
+            "JUMP_IF_EQ_LONG", "JUMP_IF_NE_LONG", "JUMP_IF_EQ_LONG_IMM", "JUMP_IF_NE_LONG_IMM",
+            "JUMP_IF_EQ_DOUBLE", "JUMP_IF_NE_DOUBLE", "JUMP_IF_EQ_OBJECT", "JUMP_IF_NE_OBJECT", "RETURN",
+    };
+
+    /**
+     * The number of operands of each instruction, or -1 for {@link #CONCAT}
+     * and {@link #CALL} which have a count operand.
+     */
+    private static final int[] OPERANDS = {
+            2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2,
+            3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3,
+            3, 3, 3, 3, 3, 3, 3, 3,
+            -1, -1, 1, 2, 2, 3, 3, 3, 3, 3, 3, 3, 3, 0,
+    };
+
+    private static final Interpreter.Kind[] KINDS = Interpreter.Kind.values();
+
+    private final int[] code;
+    private final double[] doubles;
+    private final Object[] objects;
+    private final CallSite[] sites;
+    private final int[] registers;
+
+    public VirtualMachine(Ast.Source ast) {
+        Lowering lowering = new Lowering();
+        lowering.block(ast.getStatements());
+        lowering.emit(RETURN);
+        code = Arrays.copyOf(lowering.code, lowering.length);
+        doubles = lowering.doubles.stream().mapToDouble(Double::doubleValue).toArray();
+        objects = lowering.objects.toArray();
+        sites = lowering.sites.toArray(new CallSite[0]);
+        registers = lowering.max;
+    }
+
+    public static void run(Ast.Source ast) {
+        new VirtualMachine(ast).run();
+    }
+
+    public void run() {
+        long[] l = new long[registers[0]];
+        double[] d = new double[registers[1]];
+        Object[] o = new Object[registers[2]];
+        int[] code = this.code;
+        int pc = 0;
+        while (true) {
+            switch (code[pc]) {
+                case LOAD_LONG: l[code[pc + 1]] = code[pc + 2]; pc += 3; break;
+                case LOAD_DOUBLE: d[code[pc + 1]] = doubles[code[pc + 2]]; pc += 3; break;
+                case LOAD_OBJECT: o[code[pc + 1]] = objects[code[pc + 2]]; pc += 3; break;
+                case MOVE_LONG: l[code[pc + 1]] = l[code[pc + 2]]; pc += 3; break;
+                case MOVE_DOUBLE: d[code[pc + 1]] = d[code[pc + 2]]; pc += 3; break;
+                case MOVE_OBJECT: o[code[pc + 1]] = o[code[pc + 2]]; pc += 3; break;
+                case INT_TO_DOUBLE: d[code[pc + 1]] = l[code[pc + 2]]; pc += 3; break;
+                case BOX_INT: o[code[pc + 1]] = (int) l[code[pc + 2]]; pc += 3; break;
+                case BOX_BOOLEAN: o[code[pc + 1]] = l[code[pc + 2]] != 0; pc += 3; break;
+                case BOX_DOUBLE: o[code[pc + 1]] = d[code[pc + 2]]; pc += 3; break;
+                case UNBOX_INT: l[code[pc + 1]] = (Integer) o[code[pc + 2]]; pc += 3; break;
+                case UNBOX_BOOLEAN: l[code[pc + 1]] = (Boolean) o[code[pc + 2]] ? 1 : 0; pc += 3; break;
+                case UNBOX_DOUBLE: d[code[pc + 1]] = (Double) o[code[pc + 2]]; pc += 3; break;
+                //ints are kept sign extended, and wrap around like Java's
+                case ADD_INT: l[code[pc + 1]] = (int) l[code[pc + 2]] + (int) l[code[pc + 3]]; pc += 4; break;
+                case SUB_INT: l[code[pc + 1]] = (int) l[code[pc + 2]] - (int) l[code[pc + 3]]; pc += 4; break;
+                case MUL_INT: l[code[pc + 1]] = (int) l[code[pc + 2]] * (int) l[code[pc + 3]]; pc += 4; break;
+                case DIV_INT: l[code[pc + 1]] = (int) l[code[pc + 2]] / (int) l[code[pc + 3]]; pc += 4; break;
+                case SHL_INT: l[code[pc + 1]] = (int) l[code[pc + 2]] << (int) l[code[pc + 3]]; pc += 4; break;
+                case SHR_INT: l[code[pc + 1]] = (int) l[code[pc + 2]] >> (int) l[code[pc + 3]]; pc += 4; break;
+                case USHR_INT: l[code[pc + 1]] = (int) l[code[pc + 2]] >>> (int) l[code[pc + 3]]; pc += 4; break;
+                case ADD_INT_IMM: l[code[pc + 1]] = (int) l[code[pc + 2]] + code[pc + 3]; pc += 4; break;
+                case SUB_INT_IMM: l[code[pc + 1]] = (int) l[code[pc + 2]] - code[pc + 3]; pc += 4; break;
+                case MUL_INT_IMM: l[code[pc + 1]] = (int) l[code[pc + 2]] * code[pc + 3]; pc += 4; break;
+                case DIV_INT_IMM: l[code[pc + 1]] = (int) l[code[pc + 2]] / code[pc + 3]; pc += 4; break;
+                case SHL_INT_IMM: l[code[pc + 1]] = (int) l[code[pc + 2]] << code[pc + 3]; pc += 4; break;
+                case SHR_INT_IMM: l[code[pc + 1]] = (int) l[code[pc + 2]] >> code[pc + 3]; pc += 4; break;
+                case USHR_INT_IMM: l[code[pc + 1]] = (int) l[code[pc + 2]] >>> code[pc + 3]; pc += 4; break;
+                case ADD_DOUBLE: d[code[pc + 1]] = d[code[pc + 2]] + d[code[pc + 3]]; pc += 4; break;
+                case SUB_DOUBLE: d[code[pc + 1]] = d[code[pc + 2]] - d[code[pc + 3]]; pc += 4; break;
+                case MUL_DOUBLE: d[code[pc + 1]] = d[code[pc + 2]] * d[code[pc + 3]]; pc += 4; break;
+                case DIV_DOUBLE: d[code[pc + 1]] = d[code[pc + 2]] / d[code[pc + 3]]; pc += 4; break;
+                case EQ_LONG: l[code[pc + 1]] = l[code[pc + 2]] == l[code[pc + 3]] ? 1 : 0; pc += 4; break;
+                case NE_LONG: l[code[pc + 1]] = l[code[pc + 2]] != l[code[pc + 3]] ? 1 : 0; pc += 4; break;
+                case EQ_LONG_IMM: l[code[pc + 1]] = l[code[pc + 2]] == code[pc + 3] ? 1 : 0; pc += 4; break;
+                case NE_LONG_IMM: l[code[pc + 1]] = l[code[pc + 2]] != code[pc + 3] ? 1 : 0; pc += 4; break;
+                case EQ_DOUBLE: l[code[pc + 1]] = d[code[pc + 2]] == d[code[pc + 3]] ? 1 : 0; pc += 4; break;
+                case NE_DOUBLE: l[code[pc + 1]] = d[code[pc + 2]] != d[code[pc + 3]] ? 1 : 0; pc += 4; break;
+                case EQ_OBJECT: l[code[pc + 1]] = o[code[pc + 2]] == o[code[pc + 3]] ? 1 : 0; pc += 4; break;
+                case NE_OBJECT: l[code[pc + 1]] = o[code[pc + 2]] != o[code[pc + 3]] ? 1 : 0; pc += 4; break;
+                case CONCAT: pc = concat(code, pc, l, d, o); break;
+                case CALL: pc = call(code, pc, o); break;
+                case JUMP: pc = code[pc + 1]; break;
+                case JUMP_IF_ZERO: pc = l[code[pc + 1]] == 0 ? code[pc + 2] : pc + 3; break;
+                case JUMP_IF_NOT_ZERO: pc = l[code[pc + 1]] != 0 ? code[pc + 2] : pc + 3; break;
+                case JUMP_IF_EQ_LONG: pc = l[code[pc + 1]] == l[code[pc + 2]] ? code[pc + 3] : pc + 4; break;
+                case JUMP_IF_NE_LONG: pc = l[code[pc + 1]] != l[code[pc + 2]] ? code[pc + 3] : pc + 4; break;
+                case JUMP_IF_EQ_LONG_IMM: pc = l[code[pc + 1]] == code[pc + 2] ? code[pc + 3] : pc + 4; break;
+                case JUMP_IF_NE_LONG_IMM: pc = l[code[pc + 1]] != code[pc + 2] ? code[pc + 3] : pc + 4; break;
+                case JUMP_IF_EQ_DOUBLE: pc = d[code[pc + 1]] == d[code[pc + 2]] ? code[pc + 3] : pc + 4; break;
+                case JUMP_IF_NE_DOUBLE: pc = d[code[pc + 1]] != d[code[pc + 2]] ? code[pc + 3] : pc + 4; break;
+                case JUMP_IF_EQ_OBJECT: pc = o[code[pc + 1]] == o[code[pc + 2]] ? code[pc + 3] : pc + 4; break;
+                case JUMP_IF_NE_OBJECT: pc = o[code[pc + 1]] != o[code[pc + 2]] ? code[pc + 3] : pc + 4; break;
+                case RETURN: return;
+                default: throw new AssertionError(code[pc]);
+            }
+        }
+    }
+
+    /**
+     * Executes {@code CONCAT dst, count, (kind, src)...}, where the kind is
+     * the ordinal of the {@link Interpreter.Kind} of the part, and returns
+     * the next pc.
+     */
+    private static int concat(int[] code, int pc, long[] l, double[] d, Object[] o) {
+        int count = code[pc + 2];
+        StringBuilder builder = new StringBuilder();
+        for (int i = pc + 3; i < pc + 3 + 2 * count; i += 2) {
+            int register = code[i + 1];
+            switch (KINDS[code[i]]) {
+                case INT: builder.append(l[register]); break;
+                case BOOLEAN: builder.append(l[register] != 0); break;
+                case DOUBLE: builder.append(d[register]); break;
+                default: builder.append(o[register]);
+            }
+        }
+        o[code[pc + 1]] = builder.toString();
+        return pc + 3 + 2 * count;
+    }
+
+    /**
+     * Executes {@code CALL dst, site, count, src...} and returns the next
+     * pc.
+     */
+    private int call(int[] code, int pc, Object[] o) {
+        int count = code[pc + 3];
+        Object[] arguments = new Object[count];
+        for (int i = 0; i < count; i++) {
+            arguments[i] = o[code[pc + 4 + i]];
+        }
+        o[code[pc + 1]] = sites[code[pc + 2]].invoke(arguments);
+        return pc + 4 + count;
+    }
+
+    /**
+     * Returns the instructions, one per line prefixed by their pc.
+     */
+    List<String> disassemble() {
+        List<String> lines = new ArrayList<>();
+        for (int pc = 0; pc < code.length; ) {
+            int operands = OPERANDS[code[pc]];
+            if (operands < 0) {
+                operands = code[pc] == CONCAT ? 2 + 2 * code[pc + 2] : 3 + code[pc + 3];
+            }
+            StringBuilder line = new StringBuilder().append(pc).append(": ").append(NAMES[code[pc]]);
+            for (int i = 1; i <= operands; i++) {
+                line.append(i == 1 ? " " : ", ").append(code[pc + i]);
+            }
+            lines.add(line.toString());
+            pc += 1 + operands;
+        }
+        return lines;
+    }
+
+    /**
+     * A call to a function with an inline cache. The method is resolved on
+     * the first call, and the handle bound to the receiver is kept until the
+     * receiver changes, which for {@code System.out.println} only happens if
+     * {@code System.setOut} is called.
+     */
+    static final class CallSite {
+
+        private final String name;
+        private final List<Stdlib.Type> arguments;
+        private Field[] fields;
+        private MethodHandle method;
+        private Object receiver;
+        private MethodHandle target;
+
+        CallSite(String name, List<Stdlib.Type> arguments) {
+            this.name = name;
+            this.arguments = arguments;
+        }
+
+        Object invoke(Object[] values) {
+            if (method == null) {
+                link();
+            }
+            Object receiver = null;
+            for (Field field : fields) {
+                try {
+                    receiver = field.get(receiver);
+                } catch (IllegalAccessException e) {
+                    throw new AssertionError(e); //public members only
+                }
+            }
+            if (target == null || receiver != this.receiver) {
+                this.receiver = receiver;
+                target = fields.length == 0 ? method : method.bindTo(receiver);
+                target = target.asType(MethodType.genericMethodType(values.length)).asSpreader(Object[].class, values.length);
+            }
+            try {
+                return (Object) target.invokeExact(values);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void link() {
+            JvmFunction function = JvmFunction.resolve(name, arguments);
+            fields = function.getFields().toArray(new Field[0]);
+            try {
+                method = MethodHandles.publicLookup().unreflect(function.getMethod());
+            } catch (IllegalAccessException e) {
+                throw new AssertionError(e); //public members only
+            }
+        }
+
+    }
+
+    /**
+     * Lowers the AST into instructions. Expressions are compiled into a
+     * destination register, which is only written by their last instruction
+     * so an assignment can target the register of its variable directly.
+     */
+    private static final class Lowering {
+
+        private int[] code = new int[64];
+        private int length = 0;
+        private final List<Double> doubles = new ArrayList<>();
+        private final List<Object> objects = new ArrayList<>();
+        private final Map<Object, Integer> constants = new HashMap<>();
+        private final List<CallSite> sites = new ArrayList<>();
+        private final Deque<Map<String, Slot>> scopes = new ArrayDeque<>();
+        private int[] next = new int[3];
+        private final int[] max = new int[3];
+
+        private void block(List<Ast.Statement> statements) {
+            scopes.push(new HashMap<>());
+            int[] mark = next.clone();
+            for (Ast.Statement statement : statements) {
+                statement(statement);
+            }
+            next = mark;
+            scopes.pop();
+        }
+
+        private void statement(Ast.Statement ast) {
+            int[] mark = next.clone();
+            if (ast instanceof Ast.Statement.Expression) {
+                Ast.Expression expression = ((Ast.Statement.Expression) ast).getExpression();
+                operand(expression, kindOf(expression));
+            } else if (ast instanceof Ast.Statement.Declaration) {
+                Ast.Statement.Declaration declaration = (Ast.Statement.Declaration) ast;
+                Interpreter.Kind kind = Interpreter.Kind.of(declaration.getType());
+                int register = allocate(kind);
+                mark = next.clone();
+                if (declaration.getValue().isPresent()) {
+                    into(declaration.getValue().get(), kind, register);
+                } else if (kind == Interpreter.Kind.DOUBLE) {
+                    emit(LOAD_DOUBLE, register, constant(0.0));
+                } else if (kind == Interpreter.Kind.OBJECT) {
+                    emit(LOAD_OBJECT, register, constant(null));
+                } else {
+                    emit(LOAD_LONG, register, 0);
+                }
+                scopes.peek().put(declaration.getName(), new Slot(kind, register));
+            } else if (ast instanceof Ast.Statement.Assignment) {
+                Ast.Statement.Assignment assignment = (Ast.Statement.Assignment) ast;
+                Slot slot = lookup(assignment.getName());
+                into(assignment.getExpression(), slot.kind, slot.register);
+            } else if (ast instanceof Ast.Statement.If) {
+                Ast.Statement.If branch = (Ast.Statement.If) ast;
+                int otherwise = branch(branch.getCondition(), false);
+                next = mark.clone();
+                block(branch.getThenStatements());
+                if (!branch.getElseStatements().isEmpty()) {
+                    int end = emit(JUMP, -1);
+                    patch(otherwise);
+                    block(branch.getElseStatements());
+                    patch(end);
+                } else {
+                    patch(otherwise);
+                }
+            } else if (ast instanceof Ast.Statement.While) {
+                Ast.Statement.While loop = (Ast.Statement.While) ast;
+                //the condition is checked at the bottom, so an iteration takes one branch
+                int condition = emit(JUMP, -1);
+                int body = length;
+                block(loop.getStatements());
+                patch(condition);
+                int back = branch(loop.getCondition(), true);
+                if (back >= 0) {
+                    code[back] = body;
+                }
+            } else {
+                throw new AssertionError(ast.getClass());
+            }
+            next = mark;
+        }
+
+        /**
+         * Emits a jump taken if the condition is {@code when}, returning the
+         * index of its target operand or -1 if a constant condition needs no
+         * jump.
+         */
+        private int branch(Ast.Expression ast, boolean when) {
+            ast = unwrap(ast);
+            if (ast instanceof Ast.Expression.Literal) {
+                return ((Ast.Expression.Literal) ast).getValue().equals(when) ? emit(JUMP, -1) : -1;
+            } else if (ast instanceof Ast.Expression.Binary && isEquality((Ast.Expression.Binary) ast)) {
+                Ast.Expression.Binary binary = (Ast.Expression.Binary) ast;
+                boolean equal = binary.getOperator().equals("==") == when;
+                Interpreter.Kind kind = comparison(binary);
+                Integer immediate = kind == Interpreter.Kind.INT ? immediate(binary.getRight()) : null;
+                if (immediate != null) {
+                    return emit(equal ? JUMP_IF_EQ_LONG_IMM : JUMP_IF_NE_LONG_IMM, operand(binary.getLeft(), kind), immediate, -1);
+                }
+                int left = operand(binary.getLeft(), kind);
+                int right = operand(binary.getRight(), kind);
+                int opcode = kind == Interpreter.Kind.DOUBLE ? JUMP_IF_EQ_DOUBLE
+                        : kind == Interpreter.Kind.OBJECT ? JUMP_IF_EQ_OBJECT : JUMP_IF_EQ_LONG;
+                return emit(equal ? opcode : opcode + 1, left, right, -1);
+            }
+            return emit(when ? JUMP_IF_NOT_ZERO : JUMP_IF_ZERO, operand(ast, Interpreter.Kind.BOOLEAN), -1);
+        }
+
+        /**
+         * Returns a register holding the value of the expression, which is
+         * the register of a variable if there's no conversion.
+         */
+        private int operand(Ast.Expression ast, Interpreter.Kind kind) {
+            ast = unwrap(ast);
+            if (ast instanceof Ast.Expression.Variable) {
+                Slot slot = lookup(((Ast.Expression.Variable) ast).getName());
+                if (file(slot.kind) == file(kind)) {
+                    return slot.register;
+                }
+            }
+            int register = allocate(kind);
+            into(ast, kind, register);
+            return register;
+        }
+
+        private void into(Ast.Expression ast, Interpreter.Kind kind, int destination) {
+            ast = unwrap(ast);
+            Interpreter.Kind natural = kindOf(ast);
+            if (file(natural) != file(kind)) {
+                int source = operand(ast, natural);
+                if (kind == Interpreter.Kind.DOUBLE) {
+                    emit(natural == Interpreter.Kind.INT ? INT_TO_DOUBLE : UNBOX_DOUBLE, destination, source);
+                } else if (kind == Interpreter.Kind.OBJECT) {
+                    emit(natural == Interpreter.Kind.INT ? BOX_INT : natural == Interpreter.Kind.BOOLEAN ? BOX_BOOLEAN : BOX_DOUBLE, destination, source);
+                } else {
+                    emit(kind == Interpreter.Kind.INT ? UNBOX_INT : UNBOX_BOOLEAN, destination, source);
+                }
+            } else if (ast instanceof Ast.Expression.Literal) {
+                Object value = ((Ast.Expression.Literal) ast).getValue();
+                if (value instanceof Double) {
+                    emit(LOAD_DOUBLE, destination, constant(value));
+                } else if (value instanceof String) {
+                    //string literals are interned in Java, which == can observe
+                    emit(LOAD_OBJECT, destination, constant(((String) value).intern()));
+                } else {
+                    emit(LOAD_LONG, destination, immediate(ast));
+                }
+            } else if (ast instanceof Ast.Expression.Variable) {
+                int source = lookup(((Ast.Expression.Variable) ast).getName()).register;
+                if (source != destination) {
+                    emit(file(kind) == 0 ? MOVE_LONG : file(kind) == 1 ? MOVE_DOUBLE : MOVE_OBJECT, destination, source);
+                }
+            } else if (ast instanceof Ast.Expression.Binary) {
+                binary((Ast.Expression.Binary) ast, destination);
+            } else if (ast instanceof Ast.Expression.Function) {
+                Ast.Expression.Function function = (Ast.Expression.Function) ast;
+                List<Stdlib.Type> types = new ArrayList<>();
+                int[] arguments = new int[function.getArguments().size()];
+                for (int i = 0; i < arguments.length; i++) {
+                    types.add(function.getArguments().get(i).getType());
+                    arguments[i] = operand(function.getArguments().get(i), Interpreter.Kind.OBJECT);
+                }
+                sites.add(new CallSite(function.getName(), types));
+                emit(CALL, destination, sites.size() - 1, arguments.length);
+                emit(arguments);
+            } else {
+                throw new AssertionError(ast.getClass());
+            }
+        }
+
+        private void binary(Ast.Expression.Binary ast, int destination) {
+            String operator = ast.getOperator();
+            if (isEquality(ast)) {
+                boolean equal = operator.equals("==");
+                Interpreter.Kind kind = comparison(ast);
+                Integer immediate = kind == Interpreter.Kind.INT ? immediate(ast.getRight()) : null;
+                if (immediate != null) {
+                    emit(equal ? EQ_LONG_IMM : NE_LONG_IMM, destination, operand(ast.getLeft(), kind), immediate);
+                    return;
+                }
+                int left = operand(ast.getLeft(), kind);
+                int right = operand(ast.getRight(), kind);
+                int opcode = kind == Interpreter.Kind.DOUBLE ? EQ_DOUBLE : kind == Interpreter.Kind.OBJECT ? EQ_OBJECT : EQ_LONG;
+                emit(equal ? opcode : opcode + 1, destination, left, right);
+            } else if (ast.getType() == Stdlib.Type.STRING) {
+                concat(ast, destination);
+            } else if (ast.getType() == Stdlib.Type.DECIMAL) {
+                int left = operand(ast.getLeft(), Interpreter.Kind.DOUBLE);
+                int right = operand(ast.getRight(), Interpreter.Kind.DOUBLE);
+                emit(ADD_DOUBLE + "+-*/".indexOf(operator), destination, left, right);
+            } else if (ast.getType() == Stdlib.Type.INTEGER) {
+                int opcode = Arrays.asList("+", "-", "*", "/", "<<", ">>", ">>>").indexOf(operator);
+                Ast.Expression left = ast.getLeft();
+                Ast.Expression right = ast.getRight();
+                //literals are moved to the right of commutative operators
+                if ((opcode == 0 || opcode == 2) && immediate(left) != null && immediate(right) == null) {
+                    left = ast.getRight();
+                    right = ast.getLeft();
+                }
+                Integer immediate = immediate(right);
+                if (immediate != null) {
+                    emit(ADD_INT_IMM + opcode, destination, operand(left, Interpreter.Kind.INT), immediate);
+                } else {
+                    int l = operand(left, Interpreter.Kind.INT);
+                    int r = operand(right, Interpreter.Kind.INT);
+                    emit(ADD_INT + opcode, destination, l, r);
+                }
+            } else {
+                throw new IllegalStateException("The operator " + operator + " is not supported for " + ast.getType().getName() + ".");
+            }
+        }
+
+        /**
+         * Compiles a chain of concatenations into a single instruction. A
+         * chain of literals is computed and interned, like javac does with
+         * constant expressions.
+         */
+        private void concat(Ast.Expression.Binary ast, int destination) {
+            List<Ast.Expression> parts = new ArrayList<>();
+            Ast.Expression left = ast;
+            while (left instanceof Ast.Expression.Binary && ((Ast.Expression.Binary) left).getType() == Stdlib.Type.STRING
+                    && !isEquality((Ast.Expression.Binary) left)) {
+                parts.add(0, unwrap(((Ast.Expression.Binary) left).getRight()));
+                left = ((Ast.Expression.Binary) left).getLeft();
+            }
+            parts.add(0, unwrap(left));
+            if (parts.stream().allMatch(part -> part instanceof Ast.Expression.Literal)) {
+                StringBuilder builder = new StringBuilder();
+                parts.forEach(part -> builder.append(((Ast.Expression.Literal) part).getValue()));
+                emit(LOAD_OBJECT, destination, constant(builder.toString().intern()));
+                return;
+            }
+            int[] operands = new int[2 * parts.size()];
+            for (int i = 0; i < parts.size(); i++) {
+                Interpreter.Kind kind = kindOf(parts.get(i));
+                operands[2 * i] = kind.ordinal();
+                operands[2 * i + 1] = operand(parts.get(i), kind);
+            }
+            emit(CONCAT, destination, parts.size());
+            emit(operands);
+        }
+
+        private Interpreter.Kind comparison(Ast.Expression.Binary ast) {
+            Interpreter.Kind left = kindOf(ast.getLeft());
+            Interpreter.Kind right = kindOf(ast.getRight());
+            if ((left == Interpreter.Kind.DOUBLE || right == Interpreter.Kind.DOUBLE) && left.isNumeric() && right.isNumeric()) {
+                return Interpreter.Kind.DOUBLE;
+            }
+            return left.isPrimitive() && right.isPrimitive() ? Interpreter.Kind.INT : Interpreter.Kind.OBJECT;
+        }
+
+        private static boolean isEquality(Ast.Expression.Binary ast) {
+            return ast.getOperator().equals("==") || ast.getOperator().equals("!=");
+        }
+
+        /**
+         * Returns the value of an integer or boolean literal as an
+         * immediate, or {@code null} for any other expression.
+         */
+        private static Integer immediate(Ast.Expression ast) {
+            ast = unwrap(ast);
+            if (ast instanceof Ast.Expression.Literal) {
+                Object value = ((Ast.Expression.Literal) ast).getValue();
+                if (value instanceof Integer) {
+                    return (Integer) value;
+                } else if (value instanceof Boolean) {
+                    return (Boolean) value ? 1 : 0;
+                }
+            }
+            return null;
+        }
+
+        private static Ast.Expression unwrap(Ast.Expression ast) {
+            while (ast instanceof Ast.Expression.Group) {
+                ast = ((Ast.Expression.Group) ast).getExpression();
+            }
+            return ast;
+        }
+
+        private static Interpreter.Kind kindOf(Ast.Expression ast) {
+            return Interpreter.Kind.of(ast.getType().getJvmName());
+        }
+
+        /**
+         * Returns the register file of a kind: 0 for {@code long}, 1 for
+         * {@code double} and 2 for {@code Object}, which also holds the
+         * {@code null} results of {@code VOID} functions.
+         */
+        private static int file(Interpreter.Kind kind) {
+            return kind == Interpreter.Kind.INT || kind == Interpreter.Kind.BOOLEAN ? 0 : kind == Interpreter.Kind.DOUBLE ? 1 : 2;
+        }
+
+        private int allocate(Interpreter.Kind kind) {
+            int file = file(kind);
+            int register = next[file]++;
+            max[file] = Math.max(max[file], next[file]);
+            return register;
+        }
+
+        private int constant(Object value) {
+            return constants.computeIfAbsent(value, v -> {
+                List<?> table = v instanceof Double ? doubles : objects;
+                if (v instanceof Double) {
+                    doubles.add((Double) v);
+                } else {
+                    objects.add(v);
+                }
+                return table.size() - 1;
+            });
+        }
+
+        private Slot lookup(String name) {
+            for (Map<String, Slot> scope : scopes) {
+                if (scope.containsKey(name)) {
+                    return scope.get(name);
+                }
+            }
+            throw new IllegalArgumentException("The identifier " + name + " is not defined.");
+        }
+
+        /**
+         * Appends an instruction, returning the index of its last operand
+         * so jumps can be patched.
+         */
+        private int emit(int... values) {
+            if (length + values.length > code.length) {
+                code = Arrays.copyOf(code, Math.max(2 * code.length, length + values.length));
+            }
+            System.arraycopy(values, 0, code, length, values.length);
+            length += values.length;
+            return length - 1;
+        }
+
+        private void patch(int operand) {
+            if (operand >= 0) {
+                code[operand] = length;
+            }
+        }
+
+    }
+
+    private static final class Slot {
+
+        private final Interpreter.Kind kind;
+        private final int register;
+
+        private Slot(Interpreter.Kind kind, int register) {
+            this.kind = kind;
+            this.register = register;
+        }
+
+    }
+
+}
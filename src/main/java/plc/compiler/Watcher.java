@@ -0,0 +1,341 @@
+package plc.compiler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Recompiles the source files below some directories whenever they change,
+ * writing them to the output directory like the {@link BatchCompiler}.
+ *
+ * <p>Events are collected until none arrive for the debounce time, so an
+ * editor saving several files, or one file in several writes, causes a
+ * single recompilation of each file. A file then only goes through the
+ * phases whose input changed: a save which doesn't change the text stops
+ * after reading it, one which doesn't change the tokens stops after lexing,
+ * and one which doesn't change the analyzed AST stops before generating.
+ * Statements are analyzed and generated through a {@link StatementCache},
+ * so an edit only redoes the statements it touched.</p>
+ *
+ * <p>Output files are written to a temporary file and moved into place, so
+ * a program reading them never sees one half written. The output of a
+ * deleted source file is deleted, along with the output directories left
+ * empty, and so are the outputs of every file in a deleted directory. An
+ * output deleted by someone else is written again the next time its source
+ * file changes, even if the code didn't.</p>
+ */
+public final class Watcher implements Closeable {
+
+    private final List<Path> roots;
+    private final Path output;
+    private final WatchService service;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    private final Map<Path, State> states = new HashMap<>();
+    private final StatementCache cache = new StatementCache(1 << 14);
+    private PassManager.Level level = PassManager.Level.O0;
+    private Duration debounce = Duration.ofMillis(20);
+    private Consumer<Update> listener = update -> {};
+
+    public Watcher(List<Path> roots, Path output) throws IOException {
+        this.roots = roots;
+        this.output = output;
+        this.service = FileSystems.getDefault().newWatchService();
+    }
+
+    public Watcher setLevel(PassManager.Level level) {
+        this.level = level;
+        return this;
+    }
+
+    /**
+     * Sets how long no events have to arrive before the changed files are
+     * recompiled.
+     */
+    public Watcher setDebounce(Duration debounce) {
+        this.debounce = debounce;
+        return this;
+    }
+
+    /**
+     * Sets the listener called with the outcome of every file compiled,
+     * on the thread running the watcher.
+     */
+    public Watcher setListener(Consumer<Update> listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Compiles every source file, then recompiles them as they change until
+     * the watcher is closed.
+     */
+    public void run() throws IOException {
+        Set<Path> changed = new LinkedHashSet<>();
+        for (Path root : roots) {
+            register(root, changed);
+        }
+        compile(changed);
+        try {
+            while (true) {
+                changed.clear();
+                collect(service.take(), changed);
+                WatchKey key;
+                while ((key = service.poll(debounce.toNanos(), TimeUnit.NANOSECONDS)) != null) {
+                    collect(key, changed);
+                }
+                compile(changed);
+            }
+        } catch (ClosedWatchServiceException e) {
+            //closed
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        service.close();
+    }
+
+    /**
+     * Watches a directory and every directory below it, adding the source
+     * files found to the changed files.
+     */
+    private void register(Path directory, Set<Path> changed) throws IOException {
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(directory)) {
+            paths = walk.sorted().collect(Collectors.toList());
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        for (Path path : paths) {
+            if (Files.isDirectory(path)) {
+                WatchKey key = path.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                directories.put(key, path);
+            } else if (path.toString().endsWith(BatchCompiler.EXTENSION)) {
+                changed.add(path);
+            }
+        }
+    }
+
+    private void collect(WatchKey key, Set<Path> changed) throws IOException {
+        Path directory = directories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                //events were lost, so everything is checked again
+                for (Path root : roots) {
+                    register(root, changed);
+                }
+                changed.addAll(states.keySet());
+            } else if (directory != null) {
+                Path path = directory.resolve((Path) event.context());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                    register(path, changed);
+                } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                    //a deleted or moved directory takes the files below it along
+                    states.keySet().stream().filter(source -> source.startsWith(path)).forEach(changed::add);
+                    directories.entrySet().removeIf(entry -> {
+                        if (!entry.getValue().startsWith(path)) {
+                            return false;
+                        }
+                        entry.getKey().cancel();
+                        return true;
+                    });
+                    if (path.toString().endsWith(BatchCompiler.EXTENSION)) {
+                        changed.add(path);
+                    }
+                } else if (path.toString().endsWith(BatchCompiler.EXTENSION)) {
+                    changed.add(path);
+                }
+            }
+        }
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+    }
+
+    private void compile(Set<Path> changed) {
+        for (Path source : changed) {
+            long start = System.nanoTime();
+            Update update;
+            try {
+                update = compile(source);
+            } catch (IOException e) {
+                update = new Update(source, Stage.READ, Collections.singletonList(new Diagnostic(Diagnostic.Phase.IO, String.valueOf(e.getMessage()), -1)));
+            }
+            update.nanos = System.nanoTime() - start;
+            listener.accept(update);
+        }
+    }
+
+    private Update compile(Path source) throws IOException {
+        Path root = roots.stream().filter(source::startsWith).findFirst().orElseThrow(AssertionError::new);
+        String className = BatchCompiler.getClassName(source);
+        Path target = output.resolve(root.relativize(source)).resolveSibling(className + ".java");
+        State state = states.computeIfAbsent(source, path -> new State());
+        String text;
+        try {
+            text = new String(Files.readAllBytes(source), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            states.remove(source);
+            Files.deleteIfExists(target);
+            for (Path parent = target.getParent(); !parent.equals(output); parent = parent.getParent()) {
+                try {
+                    Files.delete(parent);
+                } catch (DirectoryNotEmptyException | NoSuchFileException ignored) {
+                    break;
+                }
+            }
+            return new Update(source, Stage.DELETE, Collections.emptyList());
+        }
+        if (state.code != null && !Files.exists(target)) {
+            //the output was deleted, so it is written again even if nothing changed
+            state.text = null;
+            state.tokens = null;
+            state.analyzed = null;
+            state.code = null;
+        }
+        if (text.equals(state.text)) {
+            return new Update(source, Stage.READ, state.diagnostics);
+        }
+        state.text = text;
+        List<Token> tokens;
+        try {
+            tokens = Lexer.lex(text);
+        } catch (ParseException e) {
+            return state.fail(source, Stage.LEX, new Diagnostic(Diagnostic.Phase.PARSE, e.getMessage(), e.getIndex()));
+        }
+        List<String> literals = new ArrayList<>();
+        tokens.forEach(token -> literals.add(token.getType() + token.getLiteral()));
+        //diagnostics have positions, which may have moved even if the tokens didn't
+        if (literals.equals(state.tokens) && state.diagnostics.isEmpty()) {
+            return new Update(source, Stage.LEX, state.diagnostics);
+        }
+        state.tokens = literals;
+        Ast.Source ast;
+        try {
+            ast = cache.analyze(tokens, new Scope(null));
+        } catch (ParseException | AnalysisException e) {
+            //compiled again to report every error, not just the first
+            Diagnostics diagnostics = new Diagnostics();
+            BatchCompiler.generate(text, className, level, diagnostics);
+            state.analyzed = null;
+            state.diagnostics = diagnostics.getDiagnostics();
+            return new Update(source, Stage.ANALYZE, state.diagnostics);
+        }
+        state.diagnostics = Collections.emptyList();
+        if (ast.equals(state.analyzed)) {
+            return new Update(source, Stage.ANALYZE, state.diagnostics);
+        }
+        state.analyzed = ast;
+        Emitter emitter = new Emitter();
+        new Generator(emitter, className).setStatementCache(cache).visit(PassManager.create(level).run(ast));
+        byte[] code = emitter.toByteArray();
+        if (Arrays.equals(code, state.code) && Files.exists(target)) {
+            return new Update(source, Stage.GENERATE, state.diagnostics);
+        }
+        Files.createDirectories(target.getParent());
+        Path temporary = target.resolveSibling("." + target.getFileName() + ".tmp");
+        Files.write(temporary, code);
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        state.code = code;
+        return new Update(source, Stage.WRITE, state.diagnostics);
+    }
+
+    /**
+     * What is known about a source file from the last time it was
+     * compiled, used to skip the phases whose input didn't change.
+     */
+    private static final class State {
+
+        private String text;
+        private List<String> tokens;
+        private Ast.Source analyzed;
+        private byte[] code;
+        private List<Diagnostic> diagnostics = Collections.emptyList();
+
+        private Update fail(Path source, Stage stage, Diagnostic diagnostic) {
+            tokens = null;
+            analyzed = null;
+            diagnostics = Collections.singletonList(diagnostic);
+            return new Update(source, stage, diagnostics);
+        }
+
+    }
+
+    /**
+     * The last phase run for a file, after which nothing had changed or
+     * there were errors.
+     */
+    public enum Stage {
+        READ,
+        LEX,
+        ANALYZE,
+        GENERATE,
+        WRITE,
+        DELETE
+    }
+
+    /**
+     * The outcome of recompiling a single file.
+     */
+    public static final class Update {
+
+        private final Path source;
+        private final Stage stage;
+        private final List<Diagnostic> diagnostics;
+        private long nanos;
+
+        private Update(Path source, Stage stage, List<Diagnostic> diagnostics) {
+            this.source = source;
+            this.stage = stage;
+            this.diagnostics = diagnostics;
+        }
+
+        public Path getSource() {
+            return source;
+        }
+
+        public Stage getStage() {
+            return stage;
+        }
+
+        public List<Diagnostic> getDiagnostics() {
+            return diagnostics;
+        }
+
+        /**
+         * Returns the time from picking up the change to writing the output.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+    }
+
+}
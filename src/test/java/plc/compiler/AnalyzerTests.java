@@ -1,6 +1,7 @@
 package plc.compiler;
 
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -196,6 +197,17 @@ public final class AnalyzerTests {
         );
     }
 
+    @Test
+    public void testDiagnostics() {
+        Diagnostics diagnostics = new Diagnostics();
+        Ast.Source source = Parser.parse(Lexer.lex("LET x : VOID;\nLET y : INTEGER = 1;\nz = y;\nPRINT(y);"), diagnostics);
+        new Analyzer(new Scope(null), diagnostics).visit(source);
+        Assertions.assertEquals(Arrays.asList(
+                new Diagnostic(Diagnostic.Phase.ANALYSIS, "Unknown type VOID.", 0),
+                new Diagnostic(Diagnostic.Phase.ANALYSIS, "The identifier z is not defined.", 35)
+        ), diagnostics.getDiagnostics());
+    }
+
     private static <T extends Ast> Analyzer test(T ast, T expected, Map<String, Stdlib.Type> map) {
         Analyzer analyzer = new Analyzer(new Scope(null));
         map.forEach(analyzer.scope::define);
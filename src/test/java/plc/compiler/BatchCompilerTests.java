@@ -0,0 +1,94 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+final class BatchCompilerTests {
+
+    @Test
+    void testDirectory(@TempDir Path directory) throws IOException {
+        Path sources = directory.resolve("src");
+        Files.createDirectories(sources.resolve("nested"));
+        for (int i = 0; i < 50; i++) {
+            Files.write(sources.resolve((i % 2 == 0 ? "" : "nested/") + "Program" + i + ".plc"), program(i).getBytes(StandardCharsets.UTF_8));
+        }
+        Files.write(sources.resolve("Broken.plc"), "PRINT(x);".getBytes(StandardCharsets.UTF_8));
+        Files.write(sources.resolve("notes.txt"), "PRINT(1);".getBytes(StandardCharsets.UTF_8));
+        BatchCompiler.Result result = new BatchCompiler(directory.resolve("out")).setParallelism(4).compile(Collections.singletonList(sources));
+        Assertions.assertEquals(51, result.getFiles().size());
+        Assertions.assertEquals(1, result.getFailed());
+        Assertions.assertEquals(Collections.singleton(sources.resolve("Broken.plc")), result.getDiagnostics().keySet());
+        Assertions.assertEquals(Diagnostic.Phase.ANALYSIS, result.getDiagnostics().get(sources.resolve("Broken.plc")).get(0).getPhase());
+        for (int i = 0; i < 50; i++) {
+            Path output = directory.resolve("out").resolve((i % 2 == 0 ? "" : "nested/") + "Program" + i + ".java");
+            Assertions.assertEquals(TestUtils.generate(program(i), "Program" + i), new String(Files.readAllBytes(output), StandardCharsets.UTF_8));
+        }
+        Assertions.assertFalse(Files.exists(directory.resolve("out").resolve("Broken.java")));
+        Assertions.assertFalse(Files.exists(directory.resolve("out").resolve("notes.java")));
+    }
+
+    @Test
+    void testCache(@TempDir Path directory) throws IOException {
+        Path source = directory.resolve("Main.plc");
+        Files.write(source, program(1).getBytes(StandardCharsets.UTF_8));
+        BatchCompiler compiler = new BatchCompiler(directory.resolve("out"))
+                .setCompilationCache(new CompilationCache(directory.resolve("cache"), 1 << 20));
+        Assertions.assertEquals(0, compiler.compile(Collections.singletonList(source)).getCached());
+        Files.delete(directory.resolve("out").resolve("Main.java"));
+        BatchCompiler.Result result = compiler.compile(Collections.singletonList(source));
+        Assertions.assertEquals(1, result.getCached());
+        Assertions.assertEquals(TestUtils.generate(program(1), "Main"), new String(Files.readAllBytes(directory.resolve("out").resolve("Main.java")), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testMissingFile(@TempDir Path directory) throws IOException {
+        BatchCompiler.Result result = new BatchCompiler(directory).compile(Collections.singletonList(directory.resolve("Missing.plc")));
+        Assertions.assertEquals(Diagnostic.Phase.IO, result.getFiles().get(0).getDiagnostics().get(0).getPhase());
+    }
+
+    @Test
+    void testClassName() {
+        Assertions.assertEquals("Main", BatchCompiler.getClassName(Paths.get("dir", "Main.plc")));
+        Assertions.assertEquals("_1st_program", BatchCompiler.getClassName(Paths.get("1st-program.plc")));
+        Assertions.assertEquals("class_", BatchCompiler.getClassName(Paths.get("class.plc")));
+        Assertions.assertEquals("var_", BatchCompiler.getClassName(Paths.get("var.plc")));
+        Assertions.assertEquals("String_", BatchCompiler.getClassName(Paths.get("String.plc")));
+    }
+
+    @Test
+    void testCollision(@TempDir Path directory) throws IOException {
+        Path first = directory.resolve("a").resolve("Main.plc");
+        Path second = directory.resolve("b").resolve("Main.plc");
+        Path third = directory.resolve("b").resolve("Other.plc");
+        for (Path source : Arrays.asList(first, second, third)) {
+            Files.createDirectories(source.getParent());
+            Files.write(source, program(1).getBytes(StandardCharsets.UTF_8));
+        }
+        BatchCompiler.Result result = new BatchCompiler(directory.resolve("out")).compile(Arrays.asList(first, second, third));
+        Assertions.assertEquals(2, result.getFailed());
+        Assertions.assertEquals(new HashSet<>(Arrays.asList(first, second)), result.getDiagnostics().keySet());
+        Assertions.assertFalse(Files.exists(directory.resolve("out").resolve("Main.java")));
+        Assertions.assertTrue(Files.exists(directory.resolve("out").resolve("Other.java")));
+    }
+
+    private static String program(int i) {
+        return String.join(System.lineSeparator(),
+                "LET i : INTEGER = 0;",
+                "WHILE i != " + i + " DO",
+                "    PRINT(i);",
+                "    i = i + 1;",
+                "END"
+        );
+    }
+
+}
@@ -0,0 +1,93 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.util.stream.Stream;
+
+final class BytecodeGeneratorTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testSource(String test, String input, String expected) throws Exception {
+        Ast.Source ast = (Ast.Source) new Analyzer(new Scope(null)).visit(Parser.parse(Lexer.lex(input)));
+        Assertions.assertEquals(expected.replace("\n", System.lineSeparator()), run(BytecodeGenerator.generate(ast)));
+    }
+
+    private static Stream<Arguments> testSource() {
+        return Stream.of(
+                Arguments.of("Print",
+                        "PRINT(\"Hello, World!\");",
+                        "Hello, World!\n"
+                ),
+                Arguments.of("Literals",
+                        "PRINT(TRUE); PRINT(0 - 1); PRINT(100); PRINT(1000); PRINT(100000); PRINT(0.0); PRINT(2.5);",
+                        "true\n-1\n100\n1000\n100000\n0.0\n2.5\n"
+                ),
+                Arguments.of("Arithmetic",
+                        "LET x : INTEGER = 7; LET y : DECIMAL = x / 2; PRINT(x * 3 - 1); PRINT(y + x / 2.0);",
+                        "20\n6.5\n"
+                ),
+                Arguments.of("Overflow",
+                        "LET x : INTEGER = 2147483647; PRINT(x + 1);",
+                        "-2147483648\n"
+                ),
+                Arguments.of("Concatenation",
+                        "LET x : INTEGER = 1; LET b : BOOLEAN = x == 1; PRINT(\"x=\" + x + \", \" + 2.5 + b);",
+                        "x=1, 2.5true\n"
+                ),
+                Arguments.of("Constant Concatenation",
+                        "LET s : STRING = \"xyz\"; PRINT((\"xyz\" + \"\") == \"xyz\"); PRINT((\"x\" + (1 + 2)) == \"x3\"); PRINT((s + \"\") == s);",
+                        "true\ntrue\nfalse\n"
+                ),
+                Arguments.of("Equality",
+                        "LET x : DECIMAL = 1; PRINT(x == 1); PRINT(1 != 1); PRINT(\"a\" == \"a\");",
+                        "true\nfalse\ntrue\n"
+                ),
+                Arguments.of("If Else",
+                        "LET x : INTEGER = 2; IF x == 1 THEN PRINT(1); ELSE LET y : DECIMAL = 1.5; PRINT(y); END PRINT(x);",
+                        "1.5\n2\n"
+                ),
+                Arguments.of("While",
+                        "LET i : INTEGER = 0; LET s : STRING = \"\"; WHILE i != 3 DO LET d : DECIMAL = i; s = s + d; i = i + 1; END PRINT(s);",
+                        "0.01.02.0\n"
+                ),
+                Arguments.of("Nested",
+                        "LET i : INTEGER = 0; WHILE i != 2 DO LET j : INTEGER = 0; WHILE j != 2 DO IF i == j THEN PRINT(i); END j = j + 1; END i = i + 1; END",
+                        "0\n1\n"
+                ),
+                Arguments.of("Uninitialized",
+                        "LET x : STRING; IF TRUE THEN x = \"a\"; ELSE x = \"b\"; END PRINT(x);",
+                        "a\n"
+                ),
+                Arguments.of("Any",
+                        "LET x : ANY = 1; PRINT(x); LET y : ANY = \"a\"; PRINT(y == x);",
+                        "1\nfalse\n"
+                )
+        );
+    }
+
+    private static String run(byte[] bytes) throws Exception {
+        Class<?> main = new ClassLoader(BytecodeGeneratorTests.class.getClassLoader()) {
+            {
+                defineClass("Main", bytes, 0, bytes.length);
+            }
+        }.loadClass("Main");
+        Method method = main.getMethod("main", String[].class);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(output, true));
+        try {
+            method.invoke(null, (Object) new String[0]);
+        } finally {
+            System.setOut(out);
+        }
+        return output.toString();
+    }
+
+}
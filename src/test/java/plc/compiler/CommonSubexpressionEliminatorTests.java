@@ -0,0 +1,67 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.stream.Stream;
+
+final class CommonSubexpressionEliminatorTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testSource(String test, String input, String expected) {
+        Ast ast = new Analyzer(new Scope(null)).visit(Parser.parse(Lexer.lex(input)));
+        StringWriter writer = new StringWriter();
+        Generator generator = new Generator(new PrintWriter(writer));
+        for (Ast.Statement statement : ((Ast.Source) new CommonSubexpressionEliminator().visit(ast)).getStatements()) {
+            generator.visit(statement);
+            writer.write(" ");
+        }
+        Assertions.assertEquals(expected, writer.toString().trim());
+    }
+
+    private static Stream<Arguments> testSource() {
+        return Stream.of(
+                Arguments.of("Repeated",
+                        "LET a : INTEGER = 1; LET b : INTEGER = 2; PRINT(a * b); PRINT(a * b + 1);",
+                        "int a = 1; int b = 2; int $cse0 = a * b; System.out.println($cse0); System.out.println($cse0 + 1);"
+                ),
+                Arguments.of("Commutative",
+                        "LET a : INTEGER = 1; LET b : INTEGER = 2; PRINT(a + b); PRINT(b + a);",
+                        "int a = 1; int b = 2; int $cse0 = a + b; System.out.println($cse0); System.out.println($cse0);"
+                ),
+                Arguments.of("String Not Commutative",
+                        "LET a : STRING = \"a\"; LET b : STRING = \"b\"; PRINT(a + b); PRINT(b + a);",
+                        "String a = \"a\"; String b = \"b\"; System.out.println(a + b); System.out.println(b + a);"
+                ),
+                Arguments.of("String Identity",
+                        "LET s : STRING = \"xyz\" + 1; IF (s + FALSE) != (s + FALSE) THEN PRINT(\"neq\"); ELSE PRINT(\"eq\"); END",
+                        "String s = \"xyz\" + 1; if ((s + false) != (s + false)) {" + System.lineSeparator()
+                                + "    System.out.println(\"neq\");" + System.lineSeparator() + "} else {" + System.lineSeparator()
+                                + "    System.out.println(\"eq\");" + System.lineSeparator() + "}"
+                ),
+                Arguments.of("Largest Expression",
+                        "LET a : INTEGER = 1; LET b : INTEGER = 2; PRINT(a * b - 1); PRINT(a * b - 1);",
+                        "int a = 1; int b = 2; int $cse0 = a * b - 1; System.out.println($cse0); System.out.println($cse0);"
+                ),
+                Arguments.of("Assignment Invalidates",
+                        "LET a : INTEGER = 1; PRINT(a * 2); a = a * 2; PRINT(a * 2);",
+                        "int a = 1; int $cse0 = a * 2; System.out.println($cse0); a = $cse0; System.out.println(a * 2);"
+                ),
+                Arguments.of("Nested Assignment Invalidates",
+                        "LET a : INTEGER = 1; PRINT(a * 2); IF a == 1 THEN a = 2; END PRINT(a * 2);",
+                        "int a = 1; System.out.println(a * 2); if (a == 1) {" + System.lineSeparator()
+                                + "    a = 2;" + System.lineSeparator() + "} System.out.println(a * 2);"
+                ),
+                Arguments.of("Unsafe Division",
+                        "LET a : INTEGER = 1; PRINT(a / 0 + 1); PRINT(a / 0 + 1);",
+                        "int a = 1; System.out.println(a / 0 + 1); System.out.println(a / 0 + 1);"
+                )
+        );
+    }
+
+}
@@ -0,0 +1,89 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+final class CompilationCacheTests {
+
+    @Test
+    void testKey() {
+        String key = CompilationCache.key("PRINT(1);", Collections.singletonList("-O2"));
+        Assertions.assertEquals(64, key.length());
+        Assertions.assertEquals(key, CompilationCache.key("PRINT(1);", Collections.singletonList("-O2")));
+        Assertions.assertNotEquals(key, CompilationCache.key("PRINT(1);", Collections.singletonList("-O1")));
+        Assertions.assertNotEquals(key, CompilationCache.key("PRINT(2);", Collections.singletonList("-O2")));
+        Assertions.assertNotEquals(CompilationCache.key("", Arrays.asList("a", "b")), CompilationCache.key("", Collections.singletonList("ab")));
+    }
+
+    @Test
+    void testVersion() {
+        //hashed from the class files, which the tests load from a directory or a jar
+        Assertions.assertTrue(CompilationCache.VERSION.matches("[0-9a-f]{64}"), CompilationCache.VERSION);
+    }
+
+    @Test
+    void testHit(@TempDir Path directory) throws IOException {
+        CompilationCache cache = new CompilationCache(directory.resolve("cache"), 1 << 20);
+        AtomicInteger compilations = new AtomicInteger();
+        Function<String, Map<String, byte[]>> compiler = source -> {
+            compilations.incrementAndGet();
+            return Collections.singletonMap("Main.java", TestUtils.generate(source, "Main").getBytes(StandardCharsets.UTF_8));
+        };
+        Assertions.assertFalse(cache.compile("PRINT(1);", Collections.emptyList(), compiler, directory.resolve("first")));
+        Assertions.assertTrue(cache.compile("PRINT(1);", Collections.emptyList(), compiler, directory.resolve("second")));
+        Assertions.assertFalse(cache.compile("PRINT(1);", Collections.singletonList("-O2"), compiler, directory.resolve("third")));
+        Assertions.assertEquals(2, compilations.get());
+        Assertions.assertEquals(1L, cache.getHits());
+        Assertions.assertEquals(2L, cache.getMisses());
+        Assertions.assertEquals(TestUtils.generate("PRINT(1);", "Main"), new String(Files.readAllBytes(directory.resolve("second").resolve("Main.java")), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testEviction(@TempDir Path directory) throws Exception {
+        CompilationCache cache = new CompilationCache(directory, 250);
+        byte[] artifact = new byte[100];
+        cache.put("a", Collections.singletonMap("Main.class", artifact));
+        Thread.sleep(20);
+        cache.put("b", Collections.singletonMap("Main.class", artifact));
+        Thread.sleep(20);
+        Assertions.assertTrue(cache.get("a", directory.resolve("output")));
+        Thread.sleep(20);
+        cache.put("c", Collections.singletonMap("Main.class", artifact));
+        Assertions.assertTrue(Files.exists(directory.resolve("a")));
+        Assertions.assertFalse(Files.exists(directory.resolve("b")));
+        Assertions.assertTrue(Files.exists(directory.resolve("c")));
+        Assertions.assertFalse(cache.get("b", directory.resolve("output")));
+    }
+
+    @Test
+    void testSharedEviction(@TempDir Path directory) throws Exception {
+        byte[] artifact = new byte[100];
+        CompilationCache first = new CompilationCache(directory, 250);
+        first.put("a", Collections.singletonMap("Main.class", artifact));
+        Thread.sleep(20);
+        first.put("b", Collections.singletonMap("Main.class", artifact));
+        Thread.sleep(20);
+        new CompilationCache(directory, 250).put("c", Collections.singletonMap("Main.class", artifact));
+        Assertions.assertFalse(Files.exists(directory.resolve("a")));
+        Assertions.assertTrue(Files.exists(directory.resolve("b")));
+        Assertions.assertTrue(Files.exists(directory.resolve("c")));
+    }
+
+    @Test
+    void testArtifactName(@TempDir Path directory) throws IOException {
+        CompilationCache cache = new CompilationCache(directory, 1 << 20);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> cache.put("a", Collections.singletonMap("../Main.class", new byte[0])));
+    }
+
+}
@@ -0,0 +1,53 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+final class CompilerDaemonTests {
+
+    @Test
+    void testCompile(@TempDir Path directory) throws IOException {
+        Path socket = directory.resolve("compiler.sock");
+        try (CompilerDaemon daemon = new CompilerDaemon(socket)) {
+            daemon.start(10);
+            try (CompilerDaemon.Client client = new CompilerDaemon.Client(socket)) {
+                for (int i = 0; i < 3; i++) {
+                    CompilerDaemon.Response response = client.compile("Program" + i, PassManager.Level.O0, "PRINT(" + i + ");");
+                    Assertions.assertTrue(response.isSuccess());
+                    Assertions.assertEquals(TestUtils.generate("PRINT(" + i + ");", "Program" + i), response.getOutput());
+                }
+                CompilerDaemon.Response response = client.compile("Main", PassManager.Level.O1, "PRINT(x);");
+                Assertions.assertFalse(response.isSuccess());
+                Assertions.assertTrue(response.getOutput().startsWith("ANALYSIS"));
+            }
+            try (CompilerDaemon.Client client = new CompilerDaemon.Client(socket)) {
+                Assertions.assertTrue(client.compile("Main", PassManager.Level.O2, "PRINT(1);").isSuccess());
+            }
+        }
+        Assertions.assertFalse(Files.exists(socket));
+    }
+
+    @Test
+    void testTooLong(@TempDir Path directory) throws IOException {
+        Path socket = directory.resolve("compiler.sock");
+        try (CompilerDaemon daemon = new CompilerDaemon(socket)) {
+            daemon.start(0);
+            try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+                channel.write(ByteBuffer.allocate(4).putInt(0, CompilerDaemon.MAX_LENGTH + 1));
+                Assertions.assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+            }
+            try (CompilerDaemon.Client client = new CompilerDaemon.Client(socket)) {
+                Assertions.assertTrue(client.compile("Main", PassManager.Level.O0, "PRINT(1);").isSuccess());
+            }
+        }
+    }
+
+}
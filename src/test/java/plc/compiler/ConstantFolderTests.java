@@ -0,0 +1,103 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+final class ConstantFolderTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testExpression(String test, Ast.Expression ast, Ast.Expression expected) {
+        test(ast, expected);
+    }
+
+    private static Stream<Arguments> testExpression() {
+        return Stream.of(
+                Arguments.of("Integer Arithmetic",
+                        binary(Stdlib.Type.INTEGER, "*", binary(Stdlib.Type.INTEGER, "*", literal(60), literal(60)), literal(24)),
+                        literal(86400)
+                ),
+                Arguments.of("Integer Overflow",
+                        binary(Stdlib.Type.INTEGER, "+", literal(Integer.MAX_VALUE), literal(1)),
+                        literal(Integer.MIN_VALUE)
+                ),
+                Arguments.of("Integer Division Truncates",
+                        binary(Stdlib.Type.INTEGER, "/", literal(-7), literal(2)),
+                        literal(-3)
+                ),
+                Arguments.of("Division By Zero",
+                        binary(Stdlib.Type.INTEGER, "/", literal(1), literal(0)),
+                        binary(Stdlib.Type.INTEGER, "/", literal(1), literal(0))
+                ),
+                Arguments.of("Mixed Arithmetic",
+                        binary(Stdlib.Type.DECIMAL, "+", literal(0.1), literal(1)),
+                        literal(1.1)
+                ),
+                Arguments.of("Decimal Infinity",
+                        binary(Stdlib.Type.DECIMAL, "/", literal(1.0), literal(0)),
+                        binary(Stdlib.Type.DECIMAL, "/", literal(1.0), literal(0))
+                ),
+                Arguments.of("String Concatenation",
+                        binary(Stdlib.Type.STRING, "+", binary(Stdlib.Type.STRING, "+", literal("a"), literal(1)), literal(2.5)),
+                        literal("a12.5")
+                ),
+                Arguments.of("Group",
+                        binary(Stdlib.Type.STRING, "+", literal("a"), new Ast.Expression.Group(Stdlib.Type.INTEGER,
+                                binary(Stdlib.Type.INTEGER, "+", literal(1), literal(2)))),
+                        literal("a3")
+                ),
+                Arguments.of("Equality",
+                        binary(Stdlib.Type.BOOLEAN, "==", literal(1), literal(1.0)),
+                        literal(true)
+                ),
+                Arguments.of("Variable Operand",
+                        binary(Stdlib.Type.INTEGER, "+", new Ast.Expression.Variable(Stdlib.Type.INTEGER, "x"),
+                                binary(Stdlib.Type.INTEGER, "-", literal(1), literal(2))),
+                        binary(Stdlib.Type.INTEGER, "+", new Ast.Expression.Variable(Stdlib.Type.INTEGER, "x"), literal(-1))
+                )
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testStatement(String test, Ast.Statement ast, Ast.Statement expected) {
+        test(ast, expected);
+    }
+
+    private static Stream<Arguments> testStatement() {
+        return Stream.of(
+                Arguments.of("Declaration",
+                        new Ast.Statement.Declaration("x", "int", Optional.of(
+                                binary(Stdlib.Type.INTEGER, "*", literal(60), literal(60)))),
+                        new Ast.Statement.Declaration("x", "int", Optional.of(literal(3600)))
+                ),
+                Arguments.of("Print",
+                        new Ast.Statement.Expression(new Ast.Expression.Function(Stdlib.Type.VOID, "System.out.println", Arrays.asList(
+                                binary(Stdlib.Type.INTEGER, "+", binary(Stdlib.Type.INTEGER, "+", literal(1), literal(2)), literal(3))
+                        ))),
+                        new Ast.Statement.Expression(new Ast.Expression.Function(Stdlib.Type.VOID, "System.out.println", Arrays.asList(
+                                literal(6)
+                        )))
+                )
+        );
+    }
+
+    private static Ast.Expression.Binary binary(Stdlib.Type type, String operator, Ast.Expression left, Ast.Expression right) {
+        return new Ast.Expression.Binary(type, operator, left, right);
+    }
+
+    private static Ast.Expression.Literal literal(Object value) {
+        return ConstantFolder.literal(value);
+    }
+
+    private static void test(Ast ast, Ast expected) {
+        Assertions.assertEquals(expected, new ConstantFolder().visit(ast));
+    }
+
+}
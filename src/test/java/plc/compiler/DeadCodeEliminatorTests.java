@@ -0,0 +1,60 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.stream.Stream;
+
+final class DeadCodeEliminatorTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testSource(String test, String input, String expected) {
+        Assertions.assertEquals(analyze(expected), optimize(input));
+    }
+
+    private static Stream<Arguments> testSource() {
+        return Stream.of(
+                Arguments.of("If True",
+                        "IF TRUE THEN PRINT(1); ELSE PRINT(2); END",
+                        "PRINT(1);"
+                ),
+                Arguments.of("If False",
+                        "IF 1 == 2 THEN PRINT(1); ELSE PRINT(2); END",
+                        "PRINT(2);"
+                ),
+                Arguments.of("If Scoped Declaration",
+                        "IF FALSE THEN PRINT(1); ELSE LET x : INTEGER = 1; PRINT(x); END",
+                        "IF TRUE THEN LET x : INTEGER = 1; PRINT(x); END"
+                ),
+                Arguments.of("While False",
+                        "PRINT(0); WHILE FALSE DO PRINT(1); END",
+                        "PRINT(0);"
+                ),
+                Arguments.of("Unread Declaration",
+                        "LET x : INTEGER = 1; LET y : INTEGER = x + 1; y = 2; PRINT(0);",
+                        "PRINT(0);"
+                ),
+                Arguments.of("Read Declaration",
+                        "LET x : INTEGER = 1; WHILE x != 10 DO x = x + 1; END",
+                        "LET x : INTEGER = 1; WHILE x != 10 DO x = x + 1; END"
+                ),
+                Arguments.of("Side Effect Initializer",
+                        "LET x : INTEGER = 1 / 0; PRINT(0);",
+                        "LET x : INTEGER = 1 / 0; PRINT(0);"
+                )
+        );
+    }
+
+    private static Ast analyze(String input) {
+        return new Analyzer(new Scope(null)).visit(Parser.parse(Lexer.lex(input)));
+    }
+
+    private static Ast optimize(String input) {
+        Ast ast = new ConstantFolder().visit(analyze(input));
+        return new DeadCodeEliminator().visit(ast);
+    }
+
+}
@@ -0,0 +1,59 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.stream.Stream;
+
+final class DeadStoreEliminatorTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testSource(String test, String input, String expected) {
+        Assertions.assertEquals(analyze(expected), new DeadStoreEliminator().visit(analyze(input)));
+    }
+
+    private static Stream<Arguments> testSource() {
+        return Stream.of(
+                Arguments.of("Overwritten Assignment",
+                        "LET x : INTEGER = 1; x = 2; x = 3; PRINT(x);",
+                        "LET x : INTEGER; x = 3; PRINT(x);"
+                ),
+                Arguments.of("Unread Assignment",
+                        "LET x : INTEGER = 1; PRINT(x); x = x + 1;",
+                        "LET x : INTEGER = 1; PRINT(x);"
+                ),
+                Arguments.of("Side Effect",
+                        "LET x : INTEGER = 1; LET y : INTEGER = 0; x = 1 / y; x = 2; PRINT(x);",
+                        "LET x : INTEGER; LET y : INTEGER = 0; x = 1 / y; x = 2; PRINT(x);"
+                ),
+                Arguments.of("Both Branches",
+                        "LET x : STRING = \"\"; IF TRUE THEN x = \"a\"; ELSE x = \"b\"; END PRINT(x);",
+                        "LET x : STRING; IF TRUE THEN x = \"a\"; ELSE x = \"b\"; END PRINT(x);"
+                ),
+                Arguments.of("One Branch",
+                        "LET x : STRING = \"\"; IF TRUE THEN x = \"a\"; END PRINT(x);",
+                        "LET x : STRING = \"\"; IF TRUE THEN x = \"a\"; END PRINT(x);"
+                ),
+                Arguments.of("Loop Carried",
+                        "LET i : INTEGER = 0; LET x : INTEGER = 0; WHILE i != 10 DO PRINT(x); x = i; i = i + 1; END",
+                        "LET i : INTEGER = 0; LET x : INTEGER = 0; WHILE i != 10 DO PRINT(x); x = i; i = i + 1; END"
+                ),
+                Arguments.of("Loop Overwritten",
+                        "LET i : INTEGER = 0; LET x : INTEGER = 0; WHILE i != 10 DO x = i; PRINT(x); x = 0; i = i + 1; END",
+                        "LET i : INTEGER = 0; LET x : INTEGER; WHILE i != 10 DO x = i; PRINT(x); i = i + 1; END"
+                ),
+                Arguments.of("Chained",
+                        "LET x : INTEGER = 1; LET y : INTEGER = 2; y = x; y = 3; PRINT(y);",
+                        "LET x : INTEGER; LET y : INTEGER; y = 3; PRINT(y);"
+                )
+        );
+    }
+
+    private static Ast analyze(String input) {
+        return new Analyzer(new Scope(null)).visit(Parser.parse(Lexer.lex(input)));
+    }
+
+}
@@ -0,0 +1,86 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+final class EmitterTests {
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "ascii", "caf\u00e9", "\u20ac100", "\ud83d\ude00", "lone \ud800 surrogate"})
+    void testString(String string) {
+        Assertions.assertArrayEquals(string.getBytes(StandardCharsets.UTF_8), new Emitter().write(string).toByteArray());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 7, -7, 10, 999999999, 1000000000, Integer.MAX_VALUE, Integer.MIN_VALUE})
+    void testInt(int value) {
+        Assertions.assertEquals(Integer.toString(value), new Emitter().write(value).toString());
+    }
+
+    @Test
+    void testNewline() {
+        Emitter emitter = new Emitter().write('a').newline(2).write('b').newline(0).newline(12);
+        String separator = System.lineSeparator();
+        Assertions.assertEquals("a" + separator + "        b" + separator + separator + String.join("", Collections.nCopies(12, "    ")), emitter.toString());
+    }
+
+    @Test
+    void testChunks() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Emitter emitter = Emitter.of(output);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            emitter.write("\u00e9").write(i);
+            expected.append("\u00e9").append(i);
+        }
+        Assertions.assertTrue(output.size() > 0, "full chunks are written before flushing");
+        emitter.flush();
+        Assertions.assertEquals(0, emitter.size());
+        Assertions.assertEquals(expected.toString(), new String(output.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testChannel() throws IOException {
+        Ast.Source ast = (Ast.Source) new Analyzer(new Scope(null)).visit(Parser.parse(Lexer.lex(
+                "LET i : INTEGER = 0; WHILE i != 3 DO PRINT(\"caf\u00e9\" + i); i = i + 1; END")));
+        StringWriter writer = new StringWriter();
+        new Generator(new PrintWriter(writer)).visit(ast);
+        Path file = Files.createTempFile("Main", ".java");
+        try {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                new Generator(Emitter.of(channel), "Main").visit(ast);
+            }
+            Assertions.assertEquals(writer.toString(), new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testAppend() {
+        Emitter first = new Emitter().write("a");
+        List<Emitter> emitters = new ArrayList<>();
+        emitters.add(first);
+        emitters.add(new Emitter().write(1));
+        Emitter joined = new Emitter();
+        emitters.forEach(joined::write);
+        Assertions.assertEquals("a1", joined.toString());
+        Assertions.assertEquals("a", first.toString());
+    }
+
+}
@@ -511,6 +511,119 @@ public class GeneratorTests {
         test(ast, expected);
     }
 
+    @Test
+    void testSourcePackage() {
+        Ast.Source ast = new Ast.Source(Arrays.asList(
+                new Ast.Statement.Expression(new Ast.Expression.Function("print", Arrays.asList(
+                        new Ast.Expression.Literal("Hello, World!")
+                )))
+        ));
+        String expected = String.join(System.lineSeparator(),
+                "package programs;",
+                "",
+                "public final class Hello {",
+                "",
+                "    public static void main(String[] args) {",
+                "        print(\"Hello, World!\");",
+                "    }",
+                "",
+                "}",
+                ""
+        );
+        StringWriter writer = new StringWriter();
+        new Generator(new PrintWriter(writer), "programs.Hello").visit(ast);
+        Assertions.assertEquals(expected, writer.toString());
+    }
+
+    @Test
+    void testStringAccumulator() {
+        Ast ast = ((Ast.Source) new Analyzer(new Scope(null)).visit(Parser.parse(Lexer.lex(String.join(System.lineSeparator(),
+                "LET s : STRING = \"\";",
+                "LET i : INTEGER = 0;",
+                "WHILE i != 10 DO",
+                "    s = s + i + \", \";",
+                "    i = i + 1;",
+                "END",
+                "PRINT(s);"
+        ))))).getStatements().get(2);
+        String expected = String.join(System.lineSeparator(),
+                "StringBuilder $sb0 = new StringBuilder(s.length() + 208).append(s);",
+                "while (i != 10) {",
+                "    $sb0.append(i).append(\", \");",
+                "    i = i + 1;",
+                "}",
+                "s = $sb0.toString();"
+        );
+        test(ast, expected);
+    }
+
+    @Test
+    void testStringAccumulatorRead() {
+        Ast ast = ((Ast.Source) new Analyzer(new Scope(null)).visit(Parser.parse(Lexer.lex(String.join(System.lineSeparator(),
+                "LET s : STRING = \"\";",
+                "WHILE s != \"aaa\" DO",
+                "    s = s + \"a\";",
+                "END"
+        ))))).getStatements().get(1);
+        String expected = String.join(System.lineSeparator(),
+                "while (s != \"aaa\") {",
+                "    s = s + \"a\";",
+                "}"
+        );
+        test(ast, expected);
+    }
+
+    @Test
+    void testOutlining() {
+        Ast.Source ast = (Ast.Source) new Analyzer(new Scope(null)).visit(Parser.parse(Lexer.lex(
+                "LET x : INTEGER = 1; LET y : INTEGER = 2; PRINT(y); PRINT(x);")));
+        String expected = String.join(System.lineSeparator(),
+                "public final class Main {",
+                "",
+                "    private static int x;",
+                "",
+                "    public static void main(String[] args) {",
+                "        main0();",
+                "        main1();",
+                "    }",
+                "",
+                "    private static void main0() {",
+                "        x = 1;",
+                "        int y = 2;",
+                "        System.out.println(y);",
+                "    }",
+                "",
+                "    private static void main1() {",
+                "        System.out.println(x);",
+                "    }",
+                "",
+                "}",
+                ""
+        );
+        StringWriter writer = new StringWriter();
+        new Generator(new PrintWriter(writer)).setMethodBudget(30).visit(ast);
+        Assertions.assertEquals(expected, writer.toString());
+    }
+
+    @Test
+    void testParallel() {
+        StringBuilder source = new StringBuilder("LET t : STRING = \"\";");
+        for (int i = 0; i < 1000; i++) {
+            source.append(" LET s").append(i).append(" : STRING = \"\"; LET n").append(i).append(" : INTEGER = 0;")
+                    .append(" WHILE n").append(i).append(" != 3 DO s").append(i).append(" = s").append(i).append(" + n").append(i).append(";")
+                    .append(" LET m : INTEGER = 0; WHILE m != 2 DO t = t + m; m = m + 1; END")
+                    .append(" n").append(i).append(" = n").append(i).append(" + 1; END PRINT(s").append(i).append(");");
+        }
+        Ast.Source ast = (Ast.Source) new Analyzer(new Scope(null)).visit(Parser.parse(Lexer.lex(source.toString())));
+        for (int budget : new int[] {0, Generator.DEFAULT_METHOD_BUDGET}) {
+            StringWriter sequential = new StringWriter();
+            new Generator(new PrintWriter(sequential)).setMethodBudget(budget).visit(ast);
+            Emitter parallel = new Emitter();
+            new Generator(parallel, "Main").setMethodBudget(budget).setParallel(true).visit(ast);
+            Assertions.assertEquals(sequential.toString(), parallel.toString());
+        }
+    }
+
     private static void test(Ast ast, String expected) {
         StringWriter writer = new StringWriter();
         new Generator(new PrintWriter(writer)).visit(ast);
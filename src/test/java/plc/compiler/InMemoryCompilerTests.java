@@ -0,0 +1,94 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+final class InMemoryCompilerTests {
+
+    @Test
+    void testCompile() throws Exception {
+        Ast.Source ast = (Ast.Source) new Analyzer(new Scope(null)).visit(Parser.parse(Lexer.lex(String.join(System.lineSeparator(),
+                "LET i : INTEGER = 0;",
+                "WHILE i != 3 DO",
+                "    PRINT(i);",
+                "    i = i + 1;",
+                "END"
+        ))));
+        Assertions.assertEquals(String.join(System.lineSeparator(), "0", "1", "2", ""), run(InMemoryCompiler.compile(ast)));
+    }
+
+    @Test
+    void testSeparateLoaders() {
+        Ast.Source ast = (Ast.Source) new Analyzer(new Scope(null)).visit(Parser.parse(Lexer.lex("PRINT(1);")));
+        Class<?> first = InMemoryCompiler.compile(ast);
+        Class<?> second = InMemoryCompiler.compile(ast);
+        Assertions.assertNotSame(first, second);
+        Assertions.assertNotSame(first.getClassLoader(), second.getClassLoader());
+    }
+
+    @Test
+    void testBatch() throws Exception {
+        List<Ast.Source> programs = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            programs.add((Ast.Source) new Analyzer(new Scope(null)).visit(Parser.parse(Lexer.lex("PRINT(" + i + ");"))));
+        }
+        List<Class<?>> classes = InMemoryCompiler.compile(programs);
+        Assertions.assertEquals(10, classes.size());
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertEquals("Main" + i, classes.get(i).getName());
+            Assertions.assertEquals(i + System.lineSeparator(), run(classes.get(i)));
+        }
+    }
+
+    @Test
+    void testOutlined() throws Exception {
+        StringBuilder source = new StringBuilder("LET x : INTEGER = 0;");
+        for (int i = 0; i < 2000; i++) {
+            source.append(" x = x + 1;");
+        }
+        source.append(" PRINT(x);");
+        Ast.Source ast = (Ast.Source) new Analyzer(new Scope(null)).visit(Parser.parse(Lexer.lex(source.toString())));
+        Class<?> main = InMemoryCompiler.compile(ast);
+        Assertions.assertTrue(main.getDeclaredMethods().length > 2);
+        Assertions.assertEquals("2000" + System.lineSeparator(), run(main));
+    }
+
+    @Test
+    void testAccumulator() throws Exception {
+        Ast.Source ast = (Ast.Source) new Analyzer(new Scope(null)).visit(Parser.parse(Lexer.lex(String.join(System.lineSeparator(),
+                "LET s : STRING = \"ab\";",
+                "LET i : INTEGER = 0;",
+                "WHILE i != 2 DO",
+                "    s = s + i;",
+                "    i = i + 1;",
+                "END",
+                "PRINT(s);"
+        ))));
+        Assertions.assertEquals("ab01" + System.lineSeparator(), run(InMemoryCompiler.compile(ast)));
+    }
+
+    @Test
+    void testCompileError() {
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> InMemoryCompiler.compile(Collections.singletonMap("Main", "public final class Main { int x = \"\"; }")));
+    }
+
+    private static String run(Class<?> main) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(output, true));
+        try {
+            main.getMethod("main", String[].class).invoke(null, (Object) new String[0]);
+        } finally {
+            System.setOut(out);
+        }
+        return output.toString();
+    }
+
+}
@@ -0,0 +1,124 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.stream.Stream;
+
+final class InterpreterTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testSource(String test, String input, String expected) {
+        Ast.Source ast = (Ast.Source) new Analyzer(new Scope(null)).visit(Parser.parse(Lexer.lex(input)));
+        Assertions.assertEquals(expected.replace("\n", System.lineSeparator()), run(new Interpreter(ast)));
+    }
+
+    private static Stream<Arguments> testSource() {
+        return Stream.of(
+                Arguments.of("Print",
+                        "PRINT(\"Hello, World!\");",
+                        "Hello, World!\n"
+                ),
+                Arguments.of("Arithmetic",
+                        "LET x : INTEGER = 7; LET y : DECIMAL = x / 2; PRINT(x * 3 - 1); PRINT(y + x / 2.0);",
+                        "20\n6.5\n"
+                ),
+                Arguments.of("Overflow",
+                        "LET x : INTEGER = 2147483647; PRINT(x + 1);",
+                        "-2147483648\n"
+                ),
+                Arguments.of("Concatenation",
+                        "LET x : INTEGER = 1; LET b : BOOLEAN = x == 1; PRINT(\"x=\" + x + \", \" + 2.5 + b);",
+                        "x=1, 2.5true\n"
+                ),
+                Arguments.of("Equality",
+                        "LET x : DECIMAL = 1; PRINT(x == 1); PRINT(1 != 1); PRINT(\"a\" == \"a\"); PRINT(\"a\" + 1 == \"a1\");",
+                        "true\nfalse\ntrue\ntrue\n"
+                ),
+                Arguments.of("Shadowed Slots",
+                        "LET x : INTEGER = 2; IF x == 1 THEN LET y : INTEGER = 1; ELSE LET y : DECIMAL = 1.5; LET z : INTEGER = 3; PRINT(y + z); END PRINT(x);",
+                        "4.5\n2\n"
+                ),
+                Arguments.of("While",
+                        "LET i : INTEGER = 0; LET s : STRING = \"\"; WHILE i != 3 DO LET d : DECIMAL = i; s = s + d; i = i + 1; END PRINT(s);",
+                        "0.01.02.0\n"
+                ),
+                Arguments.of("Uninitialized",
+                        "LET x : STRING; LET n : INTEGER; LET b : BOOLEAN; PRINT(n); PRINT(b); IF TRUE THEN x = \"a\"; END PRINT(x);",
+                        "0\nfalse\na\n"
+                ),
+                Arguments.of("Any",
+                        "LET x : ANY = 1; PRINT(x); LET y : ANY = \"a\"; PRINT(y == x);",
+                        "1\nfalse\n"
+                ),
+                Arguments.of("Polymorphic",
+                        "LET i : INTEGER = 0; LET x : ANY = 1; LET d : ANY = 2.5; LET b : ANY = TRUE; LET s : STRING = \"\"; "
+                                + "WHILE i != 4 DO s = s + x + \",\"; IF i == 1 THEN x = d; END IF i == 2 THEN x = b; END i = i + 1; END PRINT(s); PRINT(x);",
+                        "1,1,2.5,true,\ntrue\n"
+                ),
+                Arguments.of("Unboxed Arguments",
+                        "LET i : INTEGER = 0; WHILE i != 2 DO PRINT(i); PRINT(i == 0); PRINT(i / 2.0); i = i + 1; END",
+                        "0\ntrue\n0.0\n1\nfalse\n0.5\n"
+                )
+        );
+    }
+
+    @Test
+    void testShifts() {
+        Ast.Source ast = (Ast.Source) new StrengthReducer().visit(new Analyzer(new Scope(null)).visit(Parser.parse(Lexer.lex(
+                "LET x : INTEGER = 0 - 7; PRINT(x / 4); PRINT(x * 8); PRINT(x / 2);"))));
+        Assertions.assertEquals("-1\n-56\n-3\n".replace("\n", System.lineSeparator()), run(new Interpreter(ast)));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testTiered(String test, String input, int compiled) {
+        Ast.Source ast = (Ast.Source) new Analyzer(new Scope(null)).visit(Parser.parse(Lexer.lex(input)));
+        Interpreter interpreter = new Interpreter(ast, 10, Runnable::run);
+        Assertions.assertEquals(run(new Interpreter(ast)), run(interpreter));
+        Assertions.assertEquals(compiled, interpreter.getCompiledLoops());
+    }
+
+    private static Stream<Arguments> testTiered() {
+        return Stream.of(
+                Arguments.of("Cold",
+                        "LET i : INTEGER = 0; WHILE i != 5 DO PRINT(i); i = i + 1; END",
+                        0
+                ),
+                Arguments.of("Hot",
+                        "LET i : INTEGER = 0; LET d : DECIMAL = 0; LET b : BOOLEAN = FALSE; LET s : STRING = \"\"; "
+                                + "WHILE i != 100 DO d = d + 0.5; b = i == 50; IF b THEN s = s + i; END i = i + 1; END "
+                                + "PRINT(i); PRINT(d); PRINT(b); PRINT(s);",
+                        1
+                ),
+                Arguments.of("Nested",
+                        "LET i : INTEGER = 0; LET n : INTEGER = 0; WHILE i != 4 DO LET j : INTEGER = 0; "
+                                + "WHILE j != 5 DO n = n + i * j; j = j + 1; END i = i + 1; PRINT(n); END",
+                        1
+                ),
+                Arguments.of("Shadowed",
+                        "LET x : INTEGER = 1; LET i : INTEGER = 0; WHILE i != 20 DO LET x : DECIMAL = i; PRINT(x); i = i + 1; END",
+                        1
+                )
+        );
+    }
+
+    private static String run(Interpreter interpreter) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(output, true));
+        try {
+            interpreter.run();
+        } finally {
+            System.setOut(out);
+        }
+        return output.toString();
+    }
+
+}
@@ -0,0 +1,123 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+final class LoopInvariantMotionTests {
+
+    @Test
+    void testHoist() {
+        String input = String.join(System.lineSeparator(),
+                "LET a : INTEGER = 2;",
+                "LET i : INTEGER = 0;",
+                "WHILE i != a * 10 DO",
+                "    PRINT(i + a * 10);",
+                "    i = i + 1;",
+                "END"
+        );
+        String expected = String.join(System.lineSeparator(),
+                "int a = 2;",
+                "int i = 0;",
+                "int $licm0 = a * 10;",
+                "while (i != $licm0) {",
+                "    System.out.println(i + $licm0);",
+                "    i = i + 1;",
+                "}"
+        );
+        test(input, expected);
+    }
+
+    @Test
+    void testNested() {
+        String input = String.join(System.lineSeparator(),
+                "LET a : DECIMAL = 2.0;",
+                "LET i : INTEGER = 0;",
+                "WHILE i != 10 DO",
+                "    LET j : INTEGER = 0;",
+                "    WHILE j != 10 DO",
+                "        PRINT(a * a + j);",
+                "        PRINT(i * 2);",
+                "        j = j + 1;",
+                "    END",
+                "    i = i + 1;",
+                "END"
+        );
+        String expected = String.join(System.lineSeparator(),
+                "double a = 2.0;",
+                "int i = 0;",
+                "double $licm0 = a * a;",
+                "while (i != 10) {",
+                "    int j = 0;",
+                "    int $licm1 = i * 2;",
+                "    while (j != 10) {",
+                "        System.out.println($licm0 + j);",
+                "        System.out.println($licm1);",
+                "        j = j + 1;",
+                "    }",
+                "    i = i + 1;",
+                "}"
+        );
+        test(input, expected);
+    }
+
+    @Test
+    void testSideEffect() {
+        String input = String.join(System.lineSeparator(),
+                "LET a : INTEGER = 0;",
+                "WHILE FALSE DO",
+                "    PRINT(1 / a);",
+                "END"
+        );
+        String expected = String.join(System.lineSeparator(),
+                "int a = 0;",
+                "while (false) {",
+                "    System.out.println(1 / a);",
+                "}"
+        );
+        test(input, expected);
+    }
+
+    @Test
+    void testConcatenation() {
+        String input = String.join(System.lineSeparator(),
+                "LET s : STRING = \"a\";",
+                "LET last : STRING = \"\";",
+                "LET i : INTEGER = 0;",
+                "WHILE i != 3 DO",
+                "    LET t : STRING = s + \"x\";",
+                "    PRINT(t == last);",
+                "    last = t;",
+                "    i = i + 1;",
+                "END"
+        );
+        String expected = String.join(System.lineSeparator(),
+                "String s = \"a\";",
+                "String last = \"\";",
+                "int i = 0;",
+                "while (i != 3) {",
+                "    String t = s + \"x\";",
+                "    System.out.println(t == last);",
+                "    last = t;",
+                "    i = i + 1;",
+                "}"
+        );
+        test(input, expected);
+    }
+
+    private static void test(String input, String expected) {
+        Ast ast = new Analyzer(new Scope(null)).visit(Parser.parse(Lexer.lex(input)));
+        StringWriter writer = new StringWriter();
+        Generator generator = new Generator(new PrintWriter(writer));
+        for (Ast.Statement statement : ((Ast.Source) new LoopInvariantMotion().visit(ast)).getStatements()) {
+            if (writer.getBuffer().length() > 0) {
+                writer.write(System.lineSeparator());
+            }
+            generator.visit(statement);
+        }
+        Assertions.assertEquals(expected, writer.toString());
+    }
+
+}
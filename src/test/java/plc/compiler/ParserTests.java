@@ -508,6 +508,41 @@ final class ParserTests {
         test(input, expected, Parser::parseSource);
     }
 
+    @Test
+    void testRecovery() {
+        /* x = ;
+         * WHILE x DO
+         *   PRINT(;
+         *   y = 1;
+         * END
+         * stmt;
+         */
+        Diagnostics diagnostics = new Diagnostics();
+        Ast.Source source = Parser.parse(Lexer.lex("x = ;\nWHILE x DO\n  PRINT(;\n  y = 1;\nEND\nstmt;"), diagnostics);
+        Assertions.assertEquals(new Ast.Source(Arrays.asList(
+                new Ast.Statement.While(
+                        new Ast.Expression.Variable("x"),
+                        Arrays.asList(
+                                new Ast.Statement.Assignment("y", new Ast.Expression.Literal(BigInteger.ONE))
+                        )
+                ),
+                new Ast.Statement.Expression(new Ast.Expression.Variable("stmt"))
+        )), source);
+        Assertions.assertEquals(Arrays.asList(
+                new Diagnostic(Diagnostic.Phase.PARSE, "invalid primary expression token", 4),
+                new Diagnostic(Diagnostic.Phase.PARSE, "invalid primary expression token", 25)
+        ), diagnostics.getDiagnostics());
+    }
+
+    @Test
+    void testRecoveryUnclosedBlock() {
+        Diagnostics diagnostics = new Diagnostics();
+        Parser.parse(Lexer.lex("IF x THEN PRINT(x);"), diagnostics);
+        Assertions.assertEquals(Arrays.asList(
+                new Diagnostic(Diagnostic.Phase.PARSE, "block not closed by END", 19)
+        ), diagnostics.getDiagnostics());
+    }
+
     /**
      * Standard test function. If expected is null, a ParseException is expected
      * to be thrown (not used in the provided tests).
@@ -0,0 +1,279 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+final class PassManagerTests {
+
+    @Test
+    void testConstantLoop() {
+        String input = String.join(System.lineSeparator(),
+                "LET x : INTEGER = 1;",
+                "LET y : INTEGER = x;",
+                "WHILE x != 1 DO",
+                "    x = x + 1;",
+                "END",
+                "PRINT(x + y);"
+        );
+        String expected = String.join(System.lineSeparator(),
+                "System.out.println(2);"
+        );
+        test(input, expected);
+    }
+
+    @Test
+    void testConstantBranch() {
+        String input = String.join(System.lineSeparator(),
+                "LET x : INTEGER = 1;",
+                "IF x == 1 THEN",
+                "    x = 2;",
+                "ELSE",
+                "    x = 3;",
+                "END",
+                "PRINT(x);"
+        );
+        String expected = String.join(System.lineSeparator(),
+                "System.out.println(2);"
+        );
+        test(input, expected);
+    }
+
+    @Test
+    void testLoop() {
+        String input = String.join(System.lineSeparator(),
+                "LET i : INTEGER = 0;",
+                "LET sum : DECIMAL = 0;",
+                "WHILE i != 10 DO",
+                "    sum = sum + i * 2;",
+                "    i = i + 1;",
+                "END",
+                "PRINT(sum);"
+        );
+        String expected = String.join(System.lineSeparator(),
+                "int i$0 = 0;",
+                "double sum$2 = 0.0;",
+                "while (i$0 != 10) {",
+                "    sum$2 = sum$2 + i$0 * 2;",
+                "    i$0 = i$0 + 1;",
+                "}",
+                "System.out.println(sum$2);"
+        );
+        test(input, expected);
+    }
+
+    @Test
+    void testSwap() {
+        String input = String.join(System.lineSeparator(),
+                "LET a : INTEGER = 0;",
+                "LET b : INTEGER = 1;",
+                "WHILE a != 10 DO",
+                "    LET t : INTEGER = a;",
+                "    a = b;",
+                "    b = t + b;",
+                "END",
+                "PRINT(a);"
+        );
+        String expected = String.join(System.lineSeparator(),
+                "int a$0 = 0;",
+                "int b$2 = 1;",
+                "while (a$0 != 10) {",
+                "    int $0$0 = b$2;",
+                "    b$2 = a$0 + b$2;",
+                "    a$0 = $0$0;",
+                "}",
+                "System.out.println(a$0);"
+        );
+        test(input, expected);
+    }
+
+    @Test
+    void testValueNumbering() {
+        String input = String.join(System.lineSeparator(),
+                "LET i : INTEGER = 0;",
+                "WHILE i != 10 DO",
+                "    PRINT(i * 2);",
+                "    IF i == 5 THEN",
+                "        PRINT(2 * i + 1);",
+                "    END",
+                "    i = i + 1;",
+                "END"
+        );
+        String expected = String.join(System.lineSeparator(),
+                "int i$0 = 0;",
+                "while (i$0 != 10) {",
+                "    int $2 = i$0 * 2;",
+                "    System.out.println($2);",
+                "    if (i$0 == 5) {",
+                "        System.out.println($2 + 1);",
+                "    }",
+                "    i$0 = i$0 + 1;",
+                "}"
+        );
+        test(input, expected);
+    }
+
+    @Test
+    void testMerge() {
+        String input = String.join(System.lineSeparator(),
+                "LET i : INTEGER = 0;",
+                "WHILE i != 10 DO",
+                "    LET x : STRING = \"odd\";",
+                "    IF i / 2 * 2 == i THEN",
+                "        x = \"even\";",
+                "    END",
+                "    PRINT(x);",
+                "    i = i + 1;",
+                "END"
+        );
+        String expected = String.join(System.lineSeparator(),
+                "int i$0 = 0;",
+                "while (i$0 != 10) {",
+                "    String x$5;",
+                "    if (i$0 / 2 * 2 == i$0) {",
+                "        x$5 = \"even\";",
+                "    } else {",
+                "        x$5 = \"odd\";",
+                "    }",
+                "    System.out.println(x$5);",
+                "    i$0 = i$0 + 1;",
+                "}"
+        );
+        test(input, expected);
+    }
+
+    @Test
+    void testConcatenation() {
+        String input = String.join(System.lineSeparator(),
+                "LET s : STRING = \"a\";",
+                "PRINT((s + \"x\") == \"ax\");",
+                "PRINT((s + \"x\") == (s + \"x\"));",
+                "PRINT((\"a\" + 1 + \"b\") == \"a1b\");"
+        );
+        String expected = String.join(System.lineSeparator(),
+                "String $constant$0 = \"a\";",
+                "System.out.println($constant$0 + \"x\" == \"ax\");",
+                "System.out.println($constant$0 + \"x\" == $constant$0 + \"x\");",
+                "System.out.println(\"a1b\" == \"a1b\");"
+        );
+        test(input, expected);
+    }
+
+    @Test
+    void testAny() {
+        String input = String.join(System.lineSeparator(),
+                "LET x : ANY = 1;",
+                "PRINT(x == \"a\");"
+        );
+        Ast.Source ast = PassManager.create(PassManager.Level.O2).run(analyze(input));
+        Assertions.assertEquals(String.join(System.lineSeparator(),
+                "Object $constant$0 = 1;",
+                "System.out.println($constant$0 == \"a\");"
+        ), generate(ast));
+        Assertions.assertDoesNotThrow(() -> InMemoryCompiler.compile(ast));
+    }
+
+    @Test
+    void testLevels() {
+        String input = String.join(System.lineSeparator(),
+                "LET a : INTEGER = 2 * 3;",
+                "LET i : INTEGER = 0;",
+                "WHILE i != a * 10 DO",
+                "    PRINT(i + a * 10);",
+                "    i = i + 1;",
+                "END"
+        );
+        Assertions.assertEquals(String.join(System.lineSeparator(),
+                "int a = 2 * 3;",
+                "int i = 0;",
+                "while (i != a * 10) {",
+                "    System.out.println(i + a * 10);",
+                "    i = i + 1;",
+                "}"
+        ), generate(PassManager.create(PassManager.Level.O0).run(analyze(input))));
+        Assertions.assertEquals(String.join(System.lineSeparator(),
+                "int a = 6;",
+                "int i = 0;",
+                "while (i != a * 10) {",
+                "    System.out.println(i + a * 10);",
+                "    i = i + 1;",
+                "}"
+        ), generate(PassManager.create(PassManager.Level.O1).run(analyze(input))));
+        Assertions.assertEquals(String.join(System.lineSeparator(),
+                "int i$1 = 0;",
+                "while (i$1 != 60) {",
+                "    System.out.println(i$1 + 60);",
+                "    i$1 = i$1 + 1;",
+                "}"
+        ), generate(PassManager.create(PassManager.Level.O2).run(analyze(input))));
+    }
+
+    @Test
+    void testBudget() {
+        String input = String.join(System.lineSeparator(),
+                "LET a : INTEGER = 2 * 3;",
+                "PRINT(a);"
+        );
+        PassManager manager = PassManager.create(PassManager.Level.O2).setBudget(Duration.ZERO);
+        Assertions.assertEquals(String.join(System.lineSeparator(),
+                "int a = 6;",
+                "System.out.println(a);"
+        ), generate(manager.run(analyze(input))));
+        List<String> skipped = new ArrayList<>();
+        for (PassManager.Statistics statistics : manager.getStatistics()) {
+            if (statistics.isSkipped()) {
+                skipped.add(statistics.getName());
+            }
+        }
+        Assertions.assertEquals(Arrays.asList("licm", "sccp", "gvn", "dce"), skipped);
+    }
+
+    @Test
+    void testStatistics() {
+        PassManager manager = PassManager.create(PassManager.Level.O2);
+        manager.run(analyze("PRINT(1 + 2);"));
+        List<String> names = new ArrayList<>();
+        manager.getStatistics().forEach(statistics -> names.add(statistics.getName()));
+        Assertions.assertEquals(Arrays.asList("fold", "dead-store", "dead-code", "cse", "licm", "ir-build", "sccp", "gvn", "dce", "ir-emit", "strength"), names);
+        Assertions.assertEquals(6, manager.getStatistics().get(0).getBefore());
+        Assertions.assertEquals(4, manager.getStatistics().get(0).getAfter());
+    }
+
+    @Test
+    void testParseLevel() {
+        Assertions.assertEquals(PassManager.Level.O1, PassManager.Level.parse("-O1"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> PassManager.Level.parse("-O3"));
+    }
+
+    private static void test(String input, String expected) {
+        Ast.Source ast = analyze(input);
+        PassManager manager = new PassManager()
+                .addPass(true, ConstantPropagation::new)
+                .addPass(true, ValueNumbering::new)
+                .addPass(true, DeadInstructionElimination::new);
+        Assertions.assertEquals(expected, generate(manager.run(ast)));
+    }
+
+    private static Ast.Source analyze(String input) {
+        return (Ast.Source) new Analyzer(new Scope(null)).visit(Parser.parse(Lexer.lex(input)));
+    }
+
+    private static String generate(Ast.Source ast) {
+        StringWriter writer = new StringWriter();
+        Generator generator = new Generator(new PrintWriter(writer));
+        for (Ast.Statement statement : ast.getStatements()) {
+            if (writer.getBuffer().length() > 0) {
+                writer.write(System.lineSeparator());
+            }
+            generator.visit(statement);
+        }
+        return writer.toString();
+    }
+
+}
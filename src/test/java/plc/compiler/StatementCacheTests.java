@@ -0,0 +1,92 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+final class StatementCacheTests {
+
+    @Test
+    void testReuse() {
+        StatementCache cache = new StatementCache(100);
+        Ast.Source first = cache.analyze(Lexer.lex("LET x : INTEGER = 1; PRINT(x);"), new Scope(null));
+        Ast.Source second = cache.analyze(Lexer.lex("LET x : INTEGER = 2;\n    PRINT(x);"), new Scope(null));
+        Assertions.assertEquals(analyze("LET x : INTEGER = 2; PRINT(x);"), second);
+        Assertions.assertSame(first.getStatements().get(1), second.getStatements().get(1));
+        Assertions.assertEquals(1L, cache.getHits());
+        Assertions.assertEquals(3L, cache.getMisses());
+    }
+
+    @Test
+    void testFreeVariableTypes() {
+        StatementCache cache = new StatementCache(100);
+        Ast.Source first = cache.analyze(Lexer.lex("LET x : INTEGER = 1; PRINT(x);"), new Scope(null));
+        Ast.Source second = cache.analyze(Lexer.lex("LET x : DECIMAL = 1.0; PRINT(x);"), new Scope(null));
+        Assertions.assertEquals(analyze("LET x : DECIMAL = 1.0; PRINT(x);"), second);
+        Assertions.assertNotEquals(first.getStatements().get(1), second.getStatements().get(1));
+        Assertions.assertEquals(0L, cache.getHits());
+    }
+
+    @Test
+    void testDeclarationReplayed() {
+        StatementCache cache = new StatementCache(100);
+        cache.analyze(Lexer.lex("LET x : STRING = \"a\"; PRINT(x);"), new Scope(null));
+        Scope scope = new Scope(null);
+        cache.analyze(Lexer.lex("LET x : STRING = \"a\";"), scope);
+        Assertions.assertEquals(Stdlib.Type.STRING, scope.lookup("x"));
+        Assertions.assertThrows(AnalysisException.class, () -> cache.analyze(Lexer.lex("LET x : STRING = \"a\";"), scope));
+    }
+
+    @Test
+    void testErrors() {
+        StatementCache cache = new StatementCache(100);
+        Assertions.assertThrows(AnalysisException.class, () -> cache.analyze(Lexer.lex("PRINT(x);"), new Scope(null)));
+        Assertions.assertThrows(ParseException.class, () -> cache.analyze(Lexer.lex("PRINT(1); PRINT(2)"), new Scope(null)));
+        Assertions.assertThrows(AnalysisException.class, () -> cache.analyze(Lexer.lex(""), new Scope(null)));
+    }
+
+    @Test
+    void testEviction() {
+        StatementCache cache = new StatementCache(1);
+        Ast.Source first = cache.analyze(Lexer.lex("PRINT(1);"), new Scope(null));
+        cache.analyze(Lexer.lex("PRINT(2);"), new Scope(null));
+        Ast.Source second = cache.analyze(Lexer.lex("PRINT(1);"), new Scope(null));
+        Assertions.assertNotSame(first.getStatements().get(0), second.getStatements().get(0));
+        Assertions.assertEquals(0L, cache.getHits());
+    }
+
+    @Test
+    void testGenerate() {
+        String source = String.join(System.lineSeparator(),
+                "LET s : STRING = \"\";",
+                "LET i : INTEGER = 0;",
+                "WHILE i != 3 DO",
+                "    s = s + \"a\";",
+                "    i = i + 1;",
+                "END",
+                "WHILE i != 6 DO",
+                "    s = s + \"b\";",
+                "    i = i + 1;",
+                "END",
+                "PRINT(s);"
+        );
+        String expected = generate(analyze(source), null);
+        StatementCache cache = new StatementCache(100);
+        Assertions.assertEquals(expected, generate(cache.analyze(Lexer.lex(source), new Scope(null)), cache));
+        Assertions.assertEquals(expected, generate(cache.analyze(Lexer.lex(source), new Scope(null)), cache));
+        Assertions.assertEquals(5L, cache.getHits());
+    }
+
+    private static Ast.Source analyze(String source) {
+        return (Ast.Source) new Analyzer(new Scope(null)).visit(Parser.parse(Lexer.lex(source)));
+    }
+
+    private static String generate(Ast.Source ast, StatementCache cache) {
+        StringWriter writer = new StringWriter();
+        new Generator(new PrintWriter(writer)).setStatementCache(cache).visit(ast);
+        return writer.toString();
+    }
+
+}
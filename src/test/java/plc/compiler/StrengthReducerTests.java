@@ -0,0 +1,128 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.stream.Stream;
+
+final class StrengthReducerTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testExpression(String test, String input, String expected) {
+        test("LET x : INTEGER = 7;" + System.lineSeparator() + input,
+                "int x = 7;" + System.lineSeparator() + expected);
+    }
+
+    private static Stream<Arguments> testExpression() {
+        return Stream.of(
+                Arguments.of("Multiplication", "PRINT(x * 8);", "System.out.println(x << 3);"),
+                Arguments.of("Multiplication Left", "PRINT(4 * x + 1);", "System.out.println((x << 2) + 1);"),
+                Arguments.of("Multiplication By One", "PRINT(x * 1);", "System.out.println(x);"),
+                Arguments.of("Not Power Of Two", "PRINT(x * 6);", "System.out.println(x * 6);"),
+                Arguments.of("Division", "PRINT(x / 8);", "System.out.println((x + (x >> 31 >>> 29)) >> 3);"),
+                Arguments.of("Division By Two", "PRINT(x / 2);", "System.out.println((x + (x >>> 31)) >> 1);"),
+                Arguments.of("Division Of Expression", "PRINT((x + 1) / 8);", "System.out.println((x + 1) / 8);"),
+                Arguments.of("Decimal", "PRINT(x * 2.0);", "System.out.println(x * 2.0);")
+        );
+    }
+
+    @Test
+    void testDivisionRounding() {
+        for (int x : new int[] {-9, -8, -7, -1, 0, 1, 7, 8, 9, Integer.MIN_VALUE, Integer.MAX_VALUE}) {
+            for (int k = 1; k < 31; k++) {
+                Assertions.assertEquals(x / (1 << k), (x + (x >> 31 >>> 32 - k)) >> k, x + " / 2^" + k);
+            }
+        }
+    }
+
+    @Test
+    void testInduction() {
+        String input = String.join(System.lineSeparator(),
+                "LET i : INTEGER = 0;",
+                "WHILE i * 3 != 30 DO",
+                "    PRINT(i * 3 + i * 8);",
+                "    i = i + 1;",
+                "    PRINT(3 * i);",
+                "END"
+        );
+        String expected = String.join(System.lineSeparator(),
+                "int i = 0;",
+                "int $sr0 = i * 3;",
+                "int $sr1 = i << 3;",
+                "while ($sr0 != 30) {",
+                "    System.out.println($sr0 + $sr1);",
+                "    i = i + 1;",
+                "    $sr0 = $sr0 + 3;",
+                "    $sr1 = $sr1 + 8;",
+                "    System.out.println($sr0);",
+                "}"
+        );
+        test(input, expected);
+    }
+
+    @Test
+    void testInductionDecrement() {
+        String input = String.join(System.lineSeparator(),
+                "LET i : INTEGER = 10;",
+                "WHILE i != 0 DO",
+                "    i = i - 2;",
+                "    PRINT(i * 5);",
+                "END"
+        );
+        String expected = String.join(System.lineSeparator(),
+                "int i = 10;",
+                "int $sr0 = i * 5;",
+                "while (i != 0) {",
+                "    i = i - 2;",
+                "    $sr0 = $sr0 - 10;",
+                "    System.out.println($sr0);",
+                "}"
+        );
+        test(input, expected);
+    }
+
+    @Test
+    void testConditionalUpdate() {
+        String input = String.join(System.lineSeparator(),
+                "LET i : INTEGER = 0;",
+                "WHILE i != 10 DO",
+                "    PRINT(i * 5);",
+                "    i = i + 1;",
+                "    IF i == 5 THEN",
+                "        i = i + 1;",
+                "    END",
+                "END"
+        );
+        String expected = String.join(System.lineSeparator(),
+                "int i = 0;",
+                "while (i != 10) {",
+                "    System.out.println(i * 5);",
+                "    i = i + 1;",
+                "    if (i == 5) {",
+                "        i = i + 1;",
+                "    }",
+                "}"
+        );
+        test(input, expected);
+    }
+
+    private static void test(String input, String expected) {
+        Ast ast = new Analyzer(new Scope(null)).visit(Parser.parse(Lexer.lex(input)));
+        StringWriter writer = new StringWriter();
+        Generator generator = new Generator(new PrintWriter(writer));
+        for (Ast.Statement statement : ((Ast.Source) new StrengthReducer().visit(ast)).getStatements()) {
+            if (writer.getBuffer().length() > 0) {
+                writer.write(System.lineSeparator());
+            }
+            generator.visit(statement);
+        }
+        Assertions.assertEquals(expected, writer.toString());
+    }
+
+}
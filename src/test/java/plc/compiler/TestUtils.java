@@ -0,0 +1,23 @@
+package plc.compiler;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Helpers shared by the tests of the drivers writing generated programs.
+ */
+final class TestUtils {
+
+    private TestUtils() {}
+
+    /**
+     * Returns the Java source generated for the program without any
+     * optimizations, which is what the drivers write at {@code -O0}.
+     */
+    static String generate(String source, String className) {
+        StringWriter writer = new StringWriter();
+        new Generator(new PrintWriter(writer), className).visit(new Analyzer(new Scope(null)).visit(Parser.parse(Lexer.lex(source))));
+        return writer.toString();
+    }
+
+}
@@ -0,0 +1,100 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+final class VirtualMachineTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testSource(String test, String input, String expected) {
+        Ast.Source ast = (Ast.Source) new Analyzer(new Scope(null)).visit(Parser.parse(Lexer.lex(input)));
+        Assertions.assertEquals(expected.replace("\n", System.lineSeparator()), run(new VirtualMachine(ast)));
+    }
+
+    private static Stream<Arguments> testSource() {
+        return Stream.of(
+                Arguments.of("Print",
+                        "PRINT(\"Hello, World!\");",
+                        "Hello, World!\n"
+                ),
+                Arguments.of("Arithmetic",
+                        "LET x : INTEGER = 7; LET y : DECIMAL = x / 2; PRINT(x * 3 - 1); PRINT(y + x / 2.0);",
+                        "20\n6.5\n"
+                ),
+                Arguments.of("Overflow",
+                        "LET x : INTEGER = 2147483647; PRINT(x + 1);",
+                        "-2147483648\n"
+                ),
+                Arguments.of("Concatenation",
+                        "LET x : INTEGER = 1; LET b : BOOLEAN = x == 1; PRINT(\"x=\" + x + \", \" + 2.5 + b);",
+                        "x=1, 2.5true\n"
+                ),
+                Arguments.of("Equality",
+                        "LET x : DECIMAL = 1; PRINT(x == 1); PRINT(1 != 1); PRINT(\"a\" == \"a\"); PRINT(\"a\" + 1 == \"a1\");",
+                        "true\nfalse\ntrue\ntrue\n"
+                ),
+                Arguments.of("Shadowed Slots",
+                        "LET x : INTEGER = 2; IF x == 1 THEN LET y : INTEGER = 1; ELSE LET y : DECIMAL = 1.5; LET z : INTEGER = 3; PRINT(y + z); END PRINT(x);",
+                        "4.5\n2\n"
+                ),
+                Arguments.of("While",
+                        "LET i : INTEGER = 0; LET s : STRING = \"\"; WHILE i != 3 DO LET d : DECIMAL = i; s = s + d; i = i + 1; END PRINT(s);",
+                        "0.01.02.0\n"
+                ),
+                Arguments.of("Uninitialized",
+                        "LET x : STRING; LET n : INTEGER; LET b : BOOLEAN; PRINT(n); PRINT(b); IF TRUE THEN x = \"a\"; END PRINT(x);",
+                        "0\nfalse\na\n"
+                ),
+                Arguments.of("Any",
+                        "LET x : ANY = 1; PRINT(x); LET y : ANY = \"a\"; PRINT(y == x);",
+                        "1\nfalse\n"
+                )
+        );
+    }
+
+    @Test
+    void testShifts() {
+        Ast.Source ast = (Ast.Source) new StrengthReducer().visit(new Analyzer(new Scope(null)).visit(Parser.parse(Lexer.lex(
+                "LET x : INTEGER = 0 - 7; PRINT(x / 4); PRINT(x * 8); PRINT(x / 2);"))));
+        Assertions.assertEquals("-1\n-56\n-3\n".replace("\n", System.lineSeparator()), run(new VirtualMachine(ast)));
+    }
+
+    @Test
+    void testSuperinstructions() {
+        Ast.Source ast = (Ast.Source) new Analyzer(new Scope(null)).visit(Parser.parse(Lexer.lex(
+                "LET i : INTEGER = 0; LET n : INTEGER = 10; WHILE i != n DO i = 2 * i + 1; END PRINT(i);")));
+        Assertions.assertEquals(Arrays.asList(
+                "0: LOAD_LONG 0, 0",
+                "3: LOAD_LONG 1, 10",
+                "6: JUMP 16",
+                "8: MUL_INT_IMM 2, 0, 2",
+                "12: ADD_INT_IMM 0, 2, 1",
+                "16: JUMP_IF_NE_LONG 0, 1, 8",
+                "20: BOX_INT 1, 0",
+                "23: CALL 0, 0, 1, 1",
+                "28: RETURN"
+        ), new VirtualMachine(ast).disassemble());
+    }
+
+    private static String run(VirtualMachine machine) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(output, true));
+        try {
+            machine.run();
+        } finally {
+            System.setOut(out);
+        }
+        return output.toString();
+    }
+
+}
@@ -0,0 +1,106 @@
+package plc.compiler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+final class WatcherTests {
+
+    @Test
+    void testWatch(@TempDir Path directory) throws Exception {
+        Path sources = directory.resolve("src");
+        Path output = directory.resolve("out");
+        Files.createDirectories(sources);
+        write(sources.resolve("First.plc"), "PRINT(1);");
+        BlockingQueue<Watcher.Update> updates = new LinkedBlockingQueue<>();
+        Watcher watcher = new Watcher(Collections.singletonList(sources), output).setListener(updates::add);
+        Thread thread = new Thread(() -> {
+            try {
+                watcher.run();
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        });
+        thread.start();
+        try {
+            Assertions.assertEquals(Watcher.Stage.WRITE, next(updates).getStage());
+            Assertions.assertEquals(TestUtils.generate("PRINT(1);", "First"), read(output.resolve("First.java")));
+
+            write(sources.resolve("First.plc"), "PRINT(1);\nPRINT(2);");
+            Assertions.assertEquals(Watcher.Stage.WRITE, next(updates).getStage());
+            Assertions.assertEquals(TestUtils.generate("PRINT(1); PRINT(2);", "First"), read(output.resolve("First.java")));
+
+            write(sources.resolve("First.plc"), "PRINT(1);   PRINT(2);");
+            Assertions.assertEquals(Watcher.Stage.LEX, next(updates).getStage());
+
+            write(sources.resolve("First.plc"), "PRINT(x);");
+            Watcher.Update update = next(updates);
+            Assertions.assertEquals(Watcher.Stage.ANALYZE, update.getStage());
+            Assertions.assertEquals(Diagnostic.Phase.ANALYSIS, update.getDiagnostics().get(0).getPhase());
+            Assertions.assertEquals(TestUtils.generate("PRINT(1); PRINT(2);", "First"), read(output.resolve("First.java")));
+            int index = update.getDiagnostics().get(0).getIndex();
+
+            write(sources.resolve("First.plc"), "  PRINT(x);");
+            update = next(updates);
+            Assertions.assertEquals(Watcher.Stage.ANALYZE, update.getStage());
+            Assertions.assertEquals(index + 2, update.getDiagnostics().get(0).getIndex());
+
+            write(sources.resolve("First.plc"), "PRINT(3);");
+            Assertions.assertEquals(Watcher.Stage.WRITE, next(updates).getStage());
+            Files.delete(output.resolve("First.java"));
+            write(sources.resolve("First.plc"), "PRINT(3);");
+            Assertions.assertEquals(Watcher.Stage.WRITE, next(updates).getStage());
+            Assertions.assertEquals(TestUtils.generate("PRINT(3);", "First"), read(output.resolve("First.java")));
+
+            Files.createDirectories(sources.resolve("nested"));
+            Thread.sleep(100);
+            write(sources.resolve("nested").resolve("Second.plc"), "PRINT(2);");
+            Assertions.assertEquals(Watcher.Stage.WRITE, next(updates).getStage());
+            Assertions.assertEquals(TestUtils.generate("PRINT(2);", "Second"), read(output.resolve("nested").resolve("Second.java")));
+
+            Files.delete(sources.resolve("nested").resolve("Second.plc"));
+            Assertions.assertEquals(Watcher.Stage.DELETE, next(updates).getStage());
+            Assertions.assertFalse(Files.exists(output.resolve("nested")));
+
+            write(sources.resolve("nested").resolve("Third.plc"), "PRINT(3);");
+            Assertions.assertEquals(Watcher.Stage.WRITE, next(updates).getStage());
+            Files.move(sources.resolve("nested"), directory.resolve("moved"));
+            Assertions.assertEquals(Watcher.Stage.DELETE, next(updates).getStage());
+            Assertions.assertFalse(Files.exists(output.resolve("nested")));
+        } finally {
+            watcher.close();
+            thread.join();
+        }
+    }
+
+    /**
+     * Returns the next update which read a changed file, skipping the ones
+     * for events which arrived after the debounce time.
+     */
+    private static Watcher.Update next(BlockingQueue<Watcher.Update> updates) throws InterruptedException {
+        Watcher.Update update;
+        do {
+            update = updates.poll(10, TimeUnit.SECONDS);
+            Assertions.assertNotNull(update);
+        } while (update.getStage() == Watcher.Stage.READ);
+        return update;
+    }
+
+    private static void write(Path path, String source) throws IOException {
+        Files.write(path, source.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(Path path) throws IOException {
+        return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    }
+
+}